@@ -0,0 +1,230 @@
+import java.util.Arrays;
+import java.util.Objects;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Evaluación por lotes de una expresión compilada con instrucciones SIMD, usando la Vector API
+ * ({@code jdk.incubator.vector}). Ejecuta el programa de pila por columnas, igual que el
+ * intérprete por lotes, pero cada columna se procesa en vectores del ancho preferido del
+ * procesador (4 double con AVX2, 8 con AVX-512).
+ * <p>
+ * La suma, resta, multiplicación, división, fma, raíz y cambio de signo usan operaciones
+ * vectoriales exactas; sin, cos, tan, exp, log y pow usan las versiones vectoriales de la Vector API, con
+ * un error de a lo sumo 1 ulp respecto de Math, también en el modo de matemática rápida. Las
+ * instrucciones sin equivalente vectorial, como las llamadas a funciones registradas, se
+ * ejecutan de forma escalar.
+ * <p>
+ * El módulo es opcional: esta clase está en su propia carpeta de fuentes (src-vector), la única
+ * que se compila con {@code --add-modules jdk.incubator.vector}, y solo se carga por reflexión
+ * si la JVM se inició con el módulo (ver {@link ExpressionEvaluator#vectorized()}).
+ * No es thread-safe: la pila de columnas pertenece al evaluador.
+ */
+final class VectorEvaluator implements CompiledFunction {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private final ExpressionEvaluator evaluator;
+    private final ExpressionProgram program;
+    private double[][] stack;
+
+    VectorEvaluator(ExpressionEvaluator evaluator) {
+        this.evaluator = evaluator;
+        this.program = evaluator.getProgram();
+    }
+
+    @Override
+    public double applyAsDouble(double x) {
+        return evaluator.applyAsDouble(x);
+    }
+
+    @Override
+    public void evaluate(double[] xs, int xsOffset, double[] out, int outOffset, int length) {
+        Objects.checkFromIndexSize(xsOffset, length, xs.length);
+        Objects.checkFromIndexSize(outOffset, length, out.length);
+        if (stack == null) {
+            stack = program.newBatchStack();
+        }
+        int result = program.getLocals();
+        for (int start = 0; start < length; start += ExpressionProgram.BATCH_SIZE) {
+            int n = Math.min(ExpressionProgram.BATCH_SIZE, length - start);
+            executeBlock(xs, xsOffset + start, n);
+            System.arraycopy(stack[result], 0, out, outOffset + start, n);
+        }
+    }
+
+    private void executeBlock(double[] xs, int offset, int n) {
+        final int[] code = program.code();
+        final double[] constants = program.constants();
+        final double[][] stack = this.stack;
+        int sp = program.getLocals() - 1;
+
+        for (int pc = 0; pc < code.length; pc++) {
+            int opcode = code[pc];
+            switch (opcode) {
+                case ExpressionProgram.CONST:
+                    Arrays.fill(stack[++sp], 0, n, constants[code[++pc]]);
+                    break;
+                case ExpressionProgram.LOAD_X:
+                    System.arraycopy(xs, offset, stack[++sp], 0, n);
+                    break;
+                case ExpressionProgram.LOAD_VAR:
+                    ExpressionProgram.unboundVariable(code[pc + 1]);
+                    break;
+                case ExpressionProgram.CALL1:
+                    FunctionRegistry.Definition function = program.functions()[code[++pc]];
+                    if (function.getApproximated() != null) {
+                        nativeFunction(function.getApproximated().getOpcode(), stack[sp], n);
+                    } else {
+                        ExpressionProgram.callColumn(function, stack[sp], n);
+                    }
+                    break;
+                case ExpressionProgram.CALL2:
+                    sp--;
+                    ExpressionProgram.callColumns(program.functions()[code[++pc]], stack[sp], stack[sp + 1], n);
+                    break;
+                case ExpressionProgram.STORE:
+                    System.arraycopy(stack[sp], 0, stack[code[++pc]], 0, n);
+                    break;
+                case ExpressionProgram.LOAD:
+                    System.arraycopy(stack[code[++pc]], 0, stack[++sp], 0, n);
+                    break;
+                case ExpressionProgram.ADD: sp--; add(stack[sp], stack[sp + 1], n); break;
+                case ExpressionProgram.SUB: sp--; subtract(stack[sp], stack[sp + 1], n); break;
+                case ExpressionProgram.MUL: sp--; multiply(stack[sp], stack[sp + 1], n); break;
+                case ExpressionProgram.DIV: sp--; divide(stack[sp], stack[sp + 1], n); break;
+                case ExpressionProgram.POW: sp--; power(stack[sp], stack[sp + 1], n); break;
+                case ExpressionProgram.FMA: sp -= 2; fma(stack[sp], stack[sp + 1], stack[sp + 2], n); break;
+                case ExpressionProgram.NEG: negate(stack[sp], n); break;
+                case ExpressionProgram.SQRT: sqrt(stack[sp], n); break;
+                case ExpressionProgram.SIN: sin(stack[sp], n); break;
+                case ExpressionProgram.COS: cos(stack[sp], n); break;
+                case ExpressionProgram.TAN: tan(stack[sp], n); break;
+                case ExpressionProgram.LOG: log(stack[sp], n); break;
+                case ExpressionProgram.EXP: exp(stack[sp], n); break;
+                default:
+                    // Sin equivalente vectorial: se ejecuta de forma escalar
+                    ExpressionProgram.unaryColumn(opcode, stack[sp], n);
+            }
+        }
+    }
+
+    /**
+     * Las aproximaciones de la matemática rápida se reemplazan por las versiones vectoriales de
+     * las funciones nativas, más rápidas que cualquier cálculo escalar.
+     */
+    private static void nativeFunction(int opcode, double[] a, int n) {
+        switch (opcode) {
+            case ExpressionProgram.SIN: sin(a, n); break;
+            case ExpressionProgram.COS: cos(a, n); break;
+            case ExpressionProgram.TAN: tan(a, n); break;
+            case ExpressionProgram.LOG: log(a, n); break;
+            case ExpressionProgram.EXP: exp(a, n); break;
+            default: ExpressionProgram.unaryColumn(opcode, a, n);
+        }
+    }
+
+    // Un método por operación, para que el operador sea constante al inlinear binary/unary
+    // y el JIT pueda reemplazarlo por la instrucción vectorial
+
+    private static void add(double[] a, double[] b, int n) {
+        binary(VectorOperators.ADD, a, b, n);
+    }
+
+    private static void subtract(double[] a, double[] b, int n) {
+        binary(VectorOperators.SUB, a, b, n);
+    }
+
+    private static void multiply(double[] a, double[] b, int n) {
+        binary(VectorOperators.MUL, a, b, n);
+    }
+
+    private static void divide(double[] a, double[] b, int n) {
+        binary(VectorOperators.DIV, a, b, n);
+    }
+
+    private static void power(double[] a, double[] b, int n) {
+        binary(VectorOperators.POW, a, b, n);
+    }
+
+    private static void negate(double[] a, int n) {
+        unary(VectorOperators.NEG, a, n);
+    }
+
+    private static void sqrt(double[] a, int n) {
+        unary(VectorOperators.SQRT, a, n);
+    }
+
+    private static void sin(double[] a, int n) {
+        unary(VectorOperators.SIN, a, n);
+    }
+
+    private static void cos(double[] a, int n) {
+        unary(VectorOperators.COS, a, n);
+    }
+
+    private static void tan(double[] a, int n) {
+        unary(VectorOperators.TAN, a, n);
+    }
+
+    private static void log(double[] a, int n) {
+        unary(VectorOperators.LOG, a, n);
+    }
+
+    private static void exp(double[] a, int n) {
+        unary(VectorOperators.EXP, a, n);
+    }
+
+    private static void fma(double[] a, double[] b, double[] c, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, i)
+                    .lanewise(VectorOperators.FMA, DoubleVector.fromArray(SPECIES, b, i), DoubleVector.fromArray(SPECIES, c, i))
+                    .intoArray(a, i);
+        }
+        // Resto con máscara (solo en el último bloque de un lote)
+        if (i < n) {
+            VectorMask<Double> mask = SPECIES.indexInRange(i, n);
+            DoubleVector.fromArray(SPECIES, a, i, mask)
+                    .lanewise(VectorOperators.FMA, DoubleVector.fromArray(SPECIES, b, i, mask),
+                            DoubleVector.fromArray(SPECIES, c, i, mask))
+                    .intoArray(a, i, mask);
+        }
+    }
+
+    private static void binary(VectorOperators.Binary operator, double[] a, double[] b, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, i)
+                    .lanewise(operator, DoubleVector.fromArray(SPECIES, b, i))
+                    .intoArray(a, i);
+        }
+        // Resto con máscara (solo en el último bloque de un lote)
+        if (i < n) {
+            VectorMask<Double> mask = SPECIES.indexInRange(i, n);
+            DoubleVector.fromArray(SPECIES, a, i, mask)
+                    .lanewise(operator, DoubleVector.fromArray(SPECIES, b, i, mask))
+                    .intoArray(a, i, mask);
+        }
+    }
+
+    private static void unary(VectorOperators.Unary operator, double[] a, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, i).lanewise(operator).intoArray(a, i);
+        }
+        // Resto con máscara (solo en el último bloque de un lote)
+        if (i < n) {
+            VectorMask<Double> mask = SPECIES.indexInRange(i, n);
+            DoubleVector.fromArray(SPECIES, a, i, mask).lanewise(operator).intoArray(a, i, mask);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return evaluator.toString();
+    }
+}
@@ -0,0 +1,1205 @@
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.LongSupplier;
+
+/**
+ * Mediciones de rendimiento del motor de expresiones.
+ * Se ejecuta como programa independiente: {@code java Benchmark [seccion]}.
+ * Sin argumentos ejecuta todas las secciones.
+ */
+public class Benchmark {
+
+    private static final String[] EXPRESSIONS = {
+            "x^3 - 2*x - 5",
+            "(x^2 + 2)/3",
+            "cos(x) - x/2",
+            "sqrt(10 - x^2)",
+            "2*exp(x^2) - 5*x + sin(x)/x"
+    };
+
+    private static final String[] FAST_PATH_EXPRESSIONS = {
+            "x^3-x-2",
+            "cos(x)-x",
+            "2*exp(x^2)-5*x"
+    };
+
+    private static final String[] SIMPLIFIABLE_EXPRESSIONS = {
+            "2*pi*x",
+            "x^1 + 0*1",
+            "0+x",
+            "exp(0)*x",
+            "x*2*pi - (-3) + 1",
+            "-(-x)/4",
+            "(x^2 + 2)/3"
+    };
+
+    private static final String[] REPEATED_EXPRESSIONS = {
+            "(exp(x^2) + 1)/(exp(x^2) - 1)",
+            "sin(x)*cos(x) + sin(x)^2 - sin(x)",
+            "sqrt(1 + x^2) + x/sqrt(1 + x^2)"
+    };
+
+    private static final String[] POLYNOMIAL_EXPRESSIONS = {
+            "x^2 - 4",
+            "x^3 - x - 2",
+            "x^5 - 3*x^3 + x - 1",
+            "3*x^4 - 2*x^3 + x - 7",
+            "x^2 + 1/x^2 + x^0.5"
+    };
+
+    private static final String[] EXPANDED_POLYNOMIALS = {
+            "x^3 - 2*x - 5",
+            "3*x^4 - 2*x^3 + x - 7",
+            "x^5 - 3*x^3 + x - 1",
+            "x^8/40320 - x^6/720 + x^4/24 - x^2/2 + 1",
+            "2*x^7 - x^6 + 5*x^4 - 3*x^3 + x^2 - 4*x + 9"
+    };
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 5;
+    private static final int CALLS_PER_ROUND = 1_000_000;
+    private static final int GRID_POINTS = 1_000_000;
+    // Ejecuciones previas a medir memoria, suficientes para que el JIT compile con C2
+    private static final int ALLOCATION_WARMUP = 20_000;
+
+    // Evita que el JIT elimine los cálculos medidos
+    private static volatile double sink;
+
+    public static void main(String[] args) {
+        String section = args.length > 0 ? args[0] : "";
+
+        if (section.isEmpty() || section.equals("simplificacion")) {
+            reportSimplification();
+        }
+        if (section.isEmpty() || section.equals("subexpresiones")) {
+            benchmarkCommonSubexpressions();
+        }
+        if (section.isEmpty() || section.equals("potencias")) {
+            benchmarkIntegerPowers();
+        }
+        if (section.isEmpty() || section.equals("horner")) {
+            benchmarkHornerForm();
+        }
+        if (section.isEmpty() || section.equals("evaluacion")) {
+            benchmarkEvaluation();
+        }
+        if (section.isEmpty() || section.equals("lotes")) {
+            benchmarkBatch();
+        }
+        if (section.isEmpty() || section.equals("simd")) {
+            benchmarkVector();
+        }
+        if (section.isEmpty() || section.equals("cache")) {
+            benchmarkExpressionCache();
+        }
+        if (section.isEmpty() || section.equals("asignaciones")) {
+            checkAllocations();
+        }
+        if (section.isEmpty() || section.equals("derivadas")) {
+            benchmarkDerivatives();
+        }
+        if (section.isEmpty() || section.equals("intervalos")) {
+            benchmarkSubdivision();
+        }
+        if (section.isEmpty() || section.equals("variables")) {
+            benchmarkParameterSweep();
+        }
+        if (section.isEmpty() || section.equals("funciones")) {
+            benchmarkRegisteredFunctions();
+        }
+        if (section.isEmpty() || section.equals("matematica")) {
+            benchmarkFastMath();
+        }
+        if (section.isEmpty() || section.equals("niveles")) {
+            benchmarkTiers();
+        }
+        if (section.isEmpty() || section.equals("analisis")) {
+            benchmarkParsing();
+        }
+        if (section.isEmpty() || section.equals("evaluaciones")) {
+            benchmarkEvaluationCache();
+        }
+        if (section.isEmpty() || section.equals("compartida")) {
+            benchmarkSharedCache();
+        }
+        if (section.isEmpty() || section.equals("estrategias")) {
+            benchmarkEvaluationStrategies();
+        }
+    }
+
+    /**
+     * Caché compartida: cada hilo bisecciona la misma función sobre los mismos 200 intervalos
+     * vecinos (como un servicio que repite resoluciones), con una caché privada por búsqueda o
+     * con la caché compartida de la función. Con un hilo la caché compartida solo ahorra los
+     * extremos comunes; con varios, cada hilo reutiliza lo que calcularon los demás.
+     */
+    private static void benchmarkSharedCache() {
+        final int intervals = 200;
+        final double tolerance = 1e-12;
+        // Al menos cuatro hilos, aunque haya menos procesadores, para que se vea la reutilización
+        final int threadCounts = Math.max(4, Math.min(8, Runtime.getRuntime().availableProcessors()));
+        String[] expressions = {"sin(10*x)", "atan(sinh(sin(10*x))) + exp(sin(10*x)) - 1"};
+
+        System.out.println("Bisecciones de " + intervals + " intervalos vecinos por hilo (ms)");
+        System.out.println("===================================================");
+        System.out.printf("%-44s %7s %10s %10s %10s%n", "Expresión", "Hilos", "Privada", "Compartida", "Aciertos");
+        for (String expression : expressions) {
+            CompiledFunction f = Biseccion.parseFunction(expression);
+            for (int threads = 1; threads <= threadCounts; threads *= 2) {
+                double privateCost = Double.MAX_VALUE;
+                double sharedCost = Double.MAX_VALUE;
+                double hitRate = 0;
+                for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+                    long start = System.nanoTime();
+                    solveNeighbours(threads, () -> {
+                        double sum = 0;
+                        for (int k = 1; k <= intervals; k++) {
+                            sum += new Biseccion(f, (k - 0.5) * Math.PI / 10, (k + 0.5) * Math.PI / 10, tolerance)
+                                    .findRoot();
+                        }
+                        sink = sum;
+                    });
+                    double privateElapsed = (System.nanoTime() - start) / 1e6;
+
+                    SharedEvaluationCache cache = new SharedEvaluationCache(f);
+                    start = System.nanoTime();
+                    solveNeighbours(threads, () -> {
+                        double sum = 0;
+                        for (int k = 1; k <= intervals; k++) {
+                            sum += new Biseccion(cache, (k - 0.5) * Math.PI / 10, (k + 0.5) * Math.PI / 10,
+                                    tolerance).findRoot();
+                        }
+                        sink = sum;
+                    });
+                    double sharedElapsed = (System.nanoTime() - start) / 1e6;
+                    if (round >= WARMUP_ROUNDS) {
+                        privateCost = Math.min(privateCost, privateElapsed);
+                        sharedCost = Math.min(sharedCost, sharedElapsed);
+                        hitRate = cache.getStatistics().getHitRate();
+                    }
+                }
+                System.out.printf("%-44s %7d %10.2f %10.2f %9.1f%%%n", expression, threads, privateCost, sharedCost,
+                        hitRate * 100);
+            }
+        }
+        System.out.println();
+    }
+
+    /**
+     * Estrategias de evaluación de la bisección (ver {@link EvaluationCache}): sin caché, con
+     * claves exactas y con claves cuantizadas (la estrategia por omisión), para una función
+     * barata y una cara (una integral por Simpson de mil pasos). "Nueva" crea el método en cada
+     * resolución, como hace quien resuelve una sola vez; "Repetida" vuelve a resolver con el
+     * mismo método, de modo que la caché ya tiene todos los puntos. Las dos últimas columnas son
+     * las estadísticas de la última resolución repetida (ver
+     * {@link Biseccion#getSolveStatistics()}): la proporción de aciertos y la memoria de la caché.
+     */
+    private static void benchmarkEvaluationStrategies() {
+        final int solves = 200;
+        final double tolerance = 1e-10;
+        DoubleUnaryOperator cheap = Biseccion.parseFunction("x^3-x-2");
+        DoubleUnaryOperator costly = x -> {
+            // Integral de cos entre 0 y x menos 1/2: la raíz es asin(1/2)
+            int steps = 1000;
+            double h = x / steps;
+            double sum = Math.cos(0) + Math.cos(x);
+            for (int i = 1; i < steps; i++) {
+                sum += (i % 2 == 0 ? 2 : 4) * Math.cos(i * h);
+            }
+            return sum * h / 3 - 0.5;
+        };
+        String[] names = {"x^3-x-2", "Simpson de cos(t), 1000 pasos"};
+        DoubleUnaryOperator[] functions = {cheap, costly};
+        double[][] intervals = {{1, 2}, {0, 1}};
+        String[] strategies = {"Sin caché", "Exacta", "Cuantizada"};
+
+        System.out.println("Bisección con cada estrategia de evaluación (µs por resolución)");
+        System.out.println("===============================================================");
+        System.out.printf("%-30s %-12s %10s %10s %9s %8s%n", "Función", "Estrategia", "Nueva", "Repetida",
+                "Aciertos", "Bytes");
+        for (int i = 0; i < functions.length; i++) {
+            DoubleUnaryOperator f = functions[i];
+            double a = intervals[i][0];
+            double b = intervals[i][1];
+            for (int strategy = 0; strategy < strategies.length; strategy++) {
+                double fresh = Double.MAX_VALUE;
+                double repeated = Double.MAX_VALUE;
+                EvaluationCache.Statistics statistics = null;
+                for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+                    double sum = 0;
+                    long start = System.nanoTime();
+                    for (int k = 0; k < solves; k++) {
+                        sum += new Biseccion(evaluationStrategy(strategy, f, tolerance), a, b, tolerance).findRoot();
+                    }
+                    double freshElapsed = (System.nanoTime() - start) / 1e3 / solves;
+
+                    Biseccion solver = new Biseccion(evaluationStrategy(strategy, f, tolerance), a, b, tolerance);
+                    sum += solver.findRoot();
+                    start = System.nanoTime();
+                    for (int k = 0; k < solves; k++) {
+                        sum += solver.findRoot();
+                    }
+                    double repeatedElapsed = (System.nanoTime() - start) / 1e3 / solves;
+                    statistics = solver.getSolveStatistics();
+                    sink = sum;
+                    if (round >= WARMUP_ROUNDS) {
+                        fresh = Math.min(fresh, freshElapsed);
+                        repeated = Math.min(repeated, repeatedElapsed);
+                    }
+                }
+                System.out.printf("%-30s %-12s %10.2f %10.2f %8.1f%% %8d%n", names[i], strategies[strategy], fresh,
+                        repeated, statistics.getHitRate() * 100, statistics.getBytes());
+            }
+        }
+        System.out.println();
+    }
+
+    private static EvaluationCache evaluationStrategy(int strategy, DoubleUnaryOperator f, double tolerance) {
+        switch (strategy) {
+            case 0:
+                return EvaluationCache.none(f);
+            case 1:
+                return EvaluationCache.exact(f, Biseccion.DEFAULT_CACHE_CAPACITY);
+            default:
+                return EvaluationCache.quantized(f, tolerance * 0.01, Biseccion.DEFAULT_CACHE_CAPACITY);
+        }
+    }
+
+    /**
+     * Ejecuta la misma tarea en la cantidad de hilos indicada y espera a que terminen.
+     */
+    private static void solveNeighbours(int threads, Runnable task) {
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(task);
+            workers[i].start();
+        }
+        try {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Medición interrumpida", e);
+        }
+    }
+
+    /**
+     * Caché de evaluaciones de los métodos numéricos: Map&lt;Double, Double&gt; con containsKey y
+     * get, {@link DoubleMap} con containsKey y get, y DoubleMap con un único sondeo
+     * (computeIfAbsent). Se miden por separado los aciertos (todas las claves guardadas) y los
+     * fallos (cada clave se calcula y se inserta en una caché nueva, como en una resolución), en
+     * ns y bytes reservados por consulta. Los fallos incluyen crear la caché. Luego, una corrida
+     * larga de punto fijo con la caché acotada a distintas capacidades.
+     */
+    private static void benchmarkEvaluationCache() {
+        final int keys = 64;
+        final int lookups = 1 << 20;
+        double[] xs = new double[keys];
+        for (int i = 0; i < keys; i++) {
+            xs[i] = 1 + i * 0.0123456789;
+        }
+        DoubleUnaryOperator function = x -> x * 0.5;
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        Map<Double, Double> boxed = new HashMap<>();
+        DoubleMap primitive = new DoubleMap(keys);
+        for (double x : xs) {
+            boxed.put(x, function.applyAsDouble(x));
+            primitive.put(x, function.applyAsDouble(x));
+        }
+        LongSupplier[] hits = {
+                () -> {
+                    double sum = 0;
+                    for (int i = 0; i < lookups; i++) {
+                        double x = xs[i & (keys - 1)];
+                        sum += boxed.containsKey(x) ? boxed.get(x) : function.applyAsDouble(x);
+                    }
+                    return (long) sum;
+                },
+                () -> {
+                    double sum = 0;
+                    for (int i = 0; i < lookups; i++) {
+                        double x = xs[i & (keys - 1)];
+                        sum += primitive.containsKey(x) ? primitive.get(x) : function.applyAsDouble(x);
+                    }
+                    return (long) sum;
+                },
+                () -> {
+                    double sum = 0;
+                    for (int i = 0; i < lookups; i++) {
+                        sum += primitive.computeIfAbsent(xs[i & (keys - 1)], function);
+                    }
+                    return (long) sum;
+                }
+        };
+        LongSupplier[] misses = {
+                () -> {
+                    double sum = 0;
+                    for (int solve = 0; solve < lookups / keys; solve++) {
+                        Map<Double, Double> cache = new HashMap<>();
+                        for (double x : xs) {
+                            if (cache.containsKey(x)) {
+                                sum += cache.get(x);
+                            } else {
+                                double y = function.applyAsDouble(x);
+                                cache.put(x, y);
+                                sum += y;
+                            }
+                        }
+                    }
+                    return (long) sum;
+                },
+                () -> {
+                    double sum = 0;
+                    for (int solve = 0; solve < lookups / keys; solve++) {
+                        DoubleMap cache = new DoubleMap(keys);
+                        for (double x : xs) {
+                            if (cache.containsKey(x)) {
+                                sum += cache.get(x);
+                            } else {
+                                double y = function.applyAsDouble(x);
+                                cache.put(x, y);
+                                sum += y;
+                            }
+                        }
+                    }
+                    return (long) sum;
+                },
+                () -> {
+                    double sum = 0;
+                    for (int solve = 0; solve < lookups / keys; solve++) {
+                        DoubleMap cache = new DoubleMap(keys);
+                        for (double x : xs) {
+                            sum += cache.computeIfAbsent(x, function);
+                        }
+                    }
+                    return (long) sum;
+                }
+        };
+        String[] names = {"Map<Double, Double>", "DoubleMap contains/get", "DoubleMap computeIfAbsent"};
+
+        System.out.println("Caché de evaluaciones, " + keys + " claves (ns y bytes por consulta)");
+        System.out.println("=========================================================");
+        System.out.printf("%-32s %10s %10s %10s %10s%n", "Caché", "Acierto", "Bytes", "Fallo", "Bytes");
+        for (int i = 0; i < names.length; i++) {
+            double[] hit = measureLookups(threads, hits[i], lookups);
+            double[] miss = measureLookups(threads, misses[i], lookups);
+            System.out.printf("%-32s %10.2f %10.1f %10.2f %10.1f%n", names[i], hit[0], hit[1], miss[0], miss[1]);
+        }
+        System.out.println();
+
+        // Una corrida de punto fijo que no converge visita un x nuevo por iteración: sin límite
+        // la caché guarda todos; con límite descarta los que no se volvieron a pedir
+        final int iterations = 1_000_000;
+        DoubleUnaryOperator drift = x -> x + 1e-7;
+        System.out.println("Punto fijo sin convergencia, " + iterations + " iteraciones");
+        System.out.println("==================================================");
+        System.out.printf("%-32s %10s %12s %12s %12s%n", "Capacidad", "ns/iter", "Guardadas", "Descartes", "MB");
+        for (int capacity : new int[]{256, PuntoFijo.DEFAULT_CACHE_CAPACITY, Integer.MAX_VALUE}) {
+            PuntoFijo solver = null;
+            long elapsed = 0;
+            long bytes = 0;
+            for (int round = 0; round < 3; round++) {
+                long allocated = threads.getCurrentThreadAllocatedBytes();
+                long start = System.nanoTime();
+                solver = new PuntoFijo(drift, 0, iterations, 1e-12, capacity);
+                sink = solver.findFixedPoint();
+                elapsed = System.nanoTime() - start;
+                bytes = threads.getCurrentThreadAllocatedBytes() - allocated;
+            }
+            System.out.printf("%-32s %10.1f %12d %12d %12.1f%n",
+                    capacity == Integer.MAX_VALUE ? "sin límite" : String.valueOf(capacity),
+                    (double) elapsed / iterations, solver.getCacheSize(), solver.getCacheEvictions(), bytes / 1e6);
+        }
+        System.out.println();
+    }
+
+    /**
+     * Mide una serie de consultas a una caché.
+     *
+     * @return Los ns por consulta de la mejor ronda y los bytes reservados por consulta en la última
+     */
+    private static double[] measureLookups(com.sun.management.ThreadMXBean threads, LongSupplier action,
+                                           int lookups) {
+        double best = Double.MAX_VALUE;
+        long bytes = 0;
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            long allocated = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            sink = action.getAsLong();
+            long elapsed = System.nanoTime() - start;
+            bytes = threads.getCurrentThreadAllocatedBytes() - allocated;
+            if (round >= WARMUP_ROUNDS) {
+                best = Math.min(best, (double) elapsed / lookups);
+            }
+        }
+        return new double[]{best, (double) bytes / lookups};
+    }
+
+    /**
+     * Expresiones cortas analizadas por segundo en un hilo, todas con texto distinto (cada una
+     * de las expresiones de siempre más un número), solo el análisis sintáctico y el análisis
+     * completo que precede a compilar (Horner, simplificación y subexpresiones comunes).
+     */
+    private static void benchmarkParsing() {
+        final int distinct = 10_000;
+        final int passes = 20;
+        String[] expressions = new String[distinct];
+        for (int i = 0; i < distinct; i++) {
+            expressions[i] = EXPRESSIONS[i % EXPRESSIONS.length] + " + " + i * 0.25;
+        }
+
+        System.out.println("Análisis de " + distinct + " expresiones distintas (millones por segundo)");
+        System.out.println("==================================================================");
+        double parsing = 0;
+        double analyzing = 0;
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            long start = System.nanoTime();
+            int hash = 0;
+            for (int pass = 0; pass < passes; pass++) {
+                for (String expression : expressions) {
+                    hash += ExpressionParser.parse(expression).hashCode();
+                }
+            }
+            double parsed = (double) distinct * passes / (System.nanoTime() - start) * 1e3;
+
+            start = System.nanoTime();
+            for (String expression : expressions) {
+                hash += ExpressionEvaluator.analyze(expression, ExpressionParser.DEFAULT_VARIABLES).hashCode();
+            }
+            double analyzed = (double) distinct / (System.nanoTime() - start) * 1e3;
+            sink = hash;
+            if (round >= WARMUP_ROUNDS) {
+                parsing = Math.max(parsing, parsed);
+                analyzing = Math.max(analyzing, analyzed);
+            }
+        }
+        System.out.printf("%-32s %12.2f%n", "Análisis sintáctico", parsing);
+        System.out.printf("%-32s %12.2f%n", "Análisis completo", analyzing);
+        System.out.println();
+    }
+
+    /**
+     * Ejecución escalonada: costo total de analizar una forma nueva de cada expresión y evaluarla
+     * en n puntos, generando el bytecode al compilar, solo interpretando o con el evaluador
+     * escalonado (umbral por omisión de la caché). Con pocos puntos, como en una resolución
+     * aislada, el escalonado cuesta lo que el intérprete; con muchos, lo que el bytecode. Luego
+     * el costo por llamada una vez promovido, que agrega una indirección al bytecode.
+     */
+    private static void benchmarkTiers() {
+        final int[] points = {50, 1_000, 10_000, 100_000, 1_000_000};
+        final long threshold = ExpressionCache.DEFAULT_PROMOTION_THRESHOLD;
+
+        System.out.println("Ejecución escalonada, umbral " + threshold + " (µs por forma nueva, incluido analizar)");
+        System.out.println("=======================================================================");
+        System.out.printf("%-12s %12s %12s %12s%n", "Puntos", "Bytecode", "Intérprete", "Escalonado");
+        for (int n : points) {
+            double[] costs = new double[3];
+            int spellings = Math.max(5, 20_000 / n);
+            for (int round = 0; round < WARMUP_ROUNDS + 1; round++) {
+                for (int mode = 0; mode < costs.length; mode++) {
+                    double elapsed = 0;
+                    for (String expression : EXPRESSIONS) {
+                        elapsed += microsPerSolve(expression, mode, threshold, n, round * spellings, spellings);
+                    }
+                    costs[mode] = elapsed / EXPRESSIONS.length;
+                }
+            }
+            System.out.printf("%-12d %12.1f %12.1f %12.1f%n", n, costs[0], costs[1], costs[2]);
+        }
+        System.out.println();
+
+        System.out.println("Llamadas una vez promovido (ns por llamada)");
+        System.out.println("===========================================");
+        System.out.printf("%-32s %12s %12s%n", "Expresión", "Bytecode", "Escalonado");
+        for (String expression : EXPRESSIONS) {
+            ExpressionEvaluator tiered = ExpressionEvaluator.tiered(expression, threshold);
+            double tieredCost = nanosPerCall(tiered);
+            if (tiered.getTier() != ExpressionEvaluator.Tier.COMPILED) {
+                throw new IllegalStateException("No se promovió: " + expression);
+            }
+            System.out.printf("%-32s %12.2f %12.2f%n", expression,
+                    nanosPerCall(ExpressionEvaluator.compile(expression)), tieredCost);
+        }
+        System.out.println();
+    }
+
+    /**
+     * Analiza formas nuevas de una expresión (expresion+0*1, expresion+0*2...) y evalúa cada una
+     * en n puntos.
+     *
+     * @param mode 0 genera el bytecode al compilar, 1 solo interpreta, 2 escalona
+     * @return Los µs por forma
+     */
+    private static double microsPerSolve(String expression, int mode, long threshold, int n, int first,
+                                         int spellings) {
+        long start = System.nanoTime();
+        for (int i = 0; i < spellings; i++) {
+            String spelling = expression + "+0*" + (first + i);
+            ExpressionEvaluator evaluator = mode == 0 ? ExpressionEvaluator.compile(spelling)
+                    : mode == 1 ? ExpressionEvaluator.interpret(spelling)
+                    : ExpressionEvaluator.tiered(spelling, threshold);
+            double sum = 0;
+            for (int j = 0; j < n; j++) {
+                sum += evaluator.applyAsDouble(1.0 + j * 1e-6);
+            }
+            sink = sum;
+        }
+        return (System.nanoTime() - start) / 1e3 / spellings;
+    }
+
+    /**
+     * Matemática rápida: error máximo de cada aproximación de {@link FastMath} frente a StrictMath
+     * (absoluto o relativo, según lo que documenta la clase) y costo por punto de la función
+     * compilada con y sin la opción, evaluando lotes para que el JIT inlinee la función; luego
+     * las expresiones de siempre.
+     */
+    private static void benchmarkFastMath() {
+        double[] xs = new double[GRID_POINTS];
+        double[] out = new double[GRID_POINTS];
+        for (int i = 0; i < GRID_POINTS; i++) {
+            xs[i] = 1.0 + i * 1e-6;
+        }
+        CompilerOptions fast = CompilerOptions.DEFAULT.withFastMath(true);
+
+        System.out.println("Matemática rápida: error frente a StrictMath y costo (ns por punto)");
+        System.out.println("===================================================================");
+        System.out.printf("%-8s %-24s %10s %10s %10s %10s%n", "Función", "Rango", "Error", "Tipo", "Exacta", "Rápida");
+        reportApproximation("sin", -1e3, 1e3, false, FastMath::sin, StrictMath::sin);
+        reportApproximation("cos", -1e3, 1e3, false, FastMath::cos, StrictMath::cos);
+        reportApproximation("exp", -700, 700, true, FastMath::exp, StrictMath::exp);
+        reportApproximation("log", 1e-300, 1e300, false, FastMath::log, StrictMath::log);
+        for (String name : new String[]{"sin", "cos", "exp", "log"}) {
+            String expression = name + "(x)";
+            System.out.printf("%-8s %-24s %10s %10s %10.2f %10.2f%n", expression, "[1, 2]", "", "",
+                    nanosPerPoint(xs, out, ExpressionEvaluator.compile(expression), true),
+                    nanosPerPoint(xs, out, ExpressionEvaluator.compile(expression, fast), true));
+        }
+        System.out.println();
+
+        System.out.println("Expresiones con matemática rápida (ns por punto)");
+        System.out.println("================================================");
+        System.out.printf("%-32s %10s %10s%n", "Expresión", "Exacta", "Rápida");
+        for (String expression : EXPRESSIONS) {
+            System.out.printf("%-32s %10.2f %10.2f%n", expression,
+                    nanosPerPoint(xs, out, ExpressionEvaluator.compile(expression), true),
+                    nanosPerPoint(xs, out, ExpressionEvaluator.compile(expression, fast), true));
+        }
+        System.out.println();
+    }
+
+    /**
+     * Informa el error máximo de una aproximación en un millón de puntos al azar del rango
+     * (distribuidos en escala logarítmica si el rango es positivo y abarca muchos órdenes).
+     */
+    private static void reportApproximation(String name, double lo, double hi, boolean relative,
+                                            DoubleUnaryOperator approximation, DoubleUnaryOperator exact) {
+        final int points = 1_000_000;
+        boolean logarithmic = lo > 0 && hi / lo > 1e6;
+        Random random = new Random(42);
+        double worst = 0;
+        for (int i = 0; i < points; i++) {
+            double u = random.nextDouble();
+            double x = logarithmic ? Math.exp(Math.log(lo) + u * (Math.log(hi) - Math.log(lo))) : lo + u * (hi - lo);
+            double expected = exact.applyAsDouble(x);
+            double error = Math.abs(approximation.applyAsDouble(x) - expected);
+            worst = Math.max(worst, relative ? error / Math.abs(expected) : error);
+        }
+        System.out.printf("%-8s %-24s %10.2e %10s%n", name, "[" + lo + ", " + hi + "]", worst,
+                relative ? "relativo" : "absoluto");
+    }
+
+    /**
+     * Funciones de {@link FunctionRegistry}: una función de Math registrada (sinh) y una lambda
+     * propia (la sigmoide) frente a la misma expresión escrita con funciones nativas y frente a
+     * una lambda escrita a mano.
+     */
+    private static void benchmarkRegisteredFunctions() {
+        if (FunctionRegistry.lookupFunction("sigmoide") == null) {
+            FunctionRegistry.defineFunction("sigmoide", x -> 1 / (1 + Math.exp(-x)), "sigmoide(x)*(1-sigmoide(x))", true);
+        }
+        System.out.println("Funciones registradas (ns por llamada)");
+        System.out.println("======================================");
+        System.out.printf("%-32s %10s %10s %10s%n", "Expresión", "Pila", "Bytecode", "Lambda");
+        reportRegistered("sinh(x) + x", "(exp(x) - exp(-x))/2 + x", x -> Math.sinh(x) + x);
+        reportRegistered("sigmoide(x) + x", "1/(1 + exp(-x)) + x", x -> 1 / (1 + Math.exp(-x)) + x);
+        reportRegistered("max(x, 1.5)*min(x, 2)", null, x -> Math.max(x, 1.5) * Math.min(x, 2));
+        System.out.println();
+    }
+
+    private static void reportRegistered(String expression, String nativeForm, DoubleUnaryOperator handwritten) {
+        System.out.printf("%-32s %10.2f %10.2f %10.2f%n", expression,
+                nanosPerCall(ExpressionEvaluator.interpret(expression)),
+                nanosPerCall(ExpressionEvaluator.compile(expression)), nanosPerCall(handwritten));
+        if (nativeForm != null) {
+            System.out.printf("%-32s %10.2f %10.2f%n", nativeForm,
+                    nanosPerCall(ExpressionEvaluator.interpret(nativeForm)),
+                    nanosPerCall(ExpressionEvaluator.compile(nativeForm)));
+        }
+    }
+
+    /**
+     * Barrido de un parámetro: la raíz de x^3 - k*x - 5 para muchos valores de k, compilando
+     * una expresión por valor (reemplazando k por el número) frente a compilar una sola vez con
+     * k como variable y cambiar su valor en el arreglo de variables.
+     */
+    private static void benchmarkParameterSweep() {
+        final int values = 2_000;
+        final double tolerance = 1e-10;
+        ExpressionEvaluator parameterized = ExpressionEvaluator.compile("x^3 - k*x - 5", "x", "k");
+        double[] variables = new double[2];
+        CompiledFunction bound = parameterized.bind(variables, "x");
+
+        double recompiling = Double.MAX_VALUE;
+        double binding = Double.MAX_VALUE;
+        double difference = 0;
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            double sum = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < values; i++) {
+                double k = i * 1e-3;
+                CompiledFunction f = ExpressionEvaluator.compile("x^3 - " + k + "*x - 5");
+                sum += new Biseccion(f, 0, 10, tolerance).findRoot();
+            }
+            long recompiled = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < values; i++) {
+                variables[1] = i * 1e-3;
+                sum -= new Biseccion(bound, 0, 10, tolerance).findRoot();
+            }
+            long rebound = System.nanoTime() - start;
+            difference = Math.abs(sum);
+            if (round >= WARMUP_ROUNDS) {
+                recompiling = Math.min(recompiling, (double) recompiled / values / 1e3);
+                binding = Math.min(binding, (double) rebound / values / 1e3);
+            }
+        }
+
+        System.out.println("Barrido de un parámetro: raíz de x^3 - k*x - 5 para " + values + " valores de k (µs por valor)");
+        System.out.println("==========================================================================================");
+        System.out.printf("%-32s %10.2f%n", "Compilando cada valor", recompiling);
+        System.out.printf("%-32s %10.2f%n", "Variable k en el arreglo", binding);
+        System.out.printf("%-32s %10.1e%n", "Diferencia entre las raíces", difference);
+        System.out.println();
+    }
+
+    /**
+     * Búsqueda de todas las raíces en un intervalo amplio: muestreo denso con bisección en cada
+     * cambio de signo frente a subdivisión con aritmética de intervalos.
+     */
+    private static void benchmarkSubdivision() {
+        final String[] expressions = {"x^3 - 2*x - 5", "cos(x) - x/2", "sin(10*x)", "exp(-x^2)*sin(x) - 0.1"};
+        final double a = -100;
+        final double b = 100;
+        final double tolerance = 1e-10;
+        double[] xs = new double[GRID_POINTS + 1];
+        double[] ys = new double[xs.length];
+        for (int i = 0; i <= GRID_POINTS; i++) {
+            xs[i] = a + (b - a) * i / GRID_POINTS;
+        }
+
+        System.out.println("Todas las raíces en [" + a + ", " + b + "] (µs por búsqueda)");
+        System.out.println("==============================================");
+        System.out.printf("%-32s %10s %8s %12s %8s %14s%n", "Expresión",
+                "Muestreo", "Raíces", "Subdivisión", "Raíces", "Evaluaciones");
+        for (String expression : expressions) {
+            SymbolicFunction f = Biseccion.parseFunction(expression);
+            int sampledRoots = 0;
+            int subdividedRoots = 0;
+            double sampling = Double.MAX_VALUE;
+            double subdivision = Double.MAX_VALUE;
+            Subdivision finder = new Subdivision(f, a, b, tolerance);
+            for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+                long start = System.nanoTime();
+                sampledRoots = 0;
+                f.evaluate(xs, ys);
+                for (int i = 0; i < GRID_POINTS; i++) {
+                    if (ys[i] * ys[i + 1] < 0) {
+                        sink = new Biseccion(f, xs[i], xs[i + 1], tolerance).findRoot();
+                        sampledRoots++;
+                    }
+                }
+                long sampled = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                subdividedRoots = finder.findRoots().size();
+                long subdivided = System.nanoTime() - start;
+                if (round >= WARMUP_ROUNDS) {
+                    sampling = Math.min(sampling, sampled / 1e3);
+                    subdivision = Math.min(subdivision, subdivided / 1e3);
+                }
+            }
+            System.out.printf("%-32s %10.1f %8d %12.1f %8d %14d%n", expression, sampling, sampledRoots,
+                    subdivision, subdividedRoots, finder.getIntervalEvaluations());
+        }
+        System.out.println();
+    }
+
+    /**
+     * Formas de obtener f(x) y f'(x): derivada simbólica compilada (dos llamadas), diferencias
+     * centrales (tres llamadas) y números duales (una pasada). Informa el costo por punto y la
+     * mayor diferencia relativa de las diferencias centrales respecto de la derivada exacta.
+     */
+    private static void benchmarkDerivatives() {
+        final double h = 1e-6;
+        System.out.println("Valor y derivada: simbólica, diferencias centrales y duales (ns por punto)");
+        System.out.println("==========================================================================");
+        System.out.printf("%-32s %10s %10s %10s %12s  %s%n", "Expresión",
+                "Simbólica", "Diferencia", "Duales", "Discrepancia", "Derivada");
+        for (String expression : EXPRESSIONS) {
+            SymbolicFunction f = Biseccion.parseFunction(expression);
+            SymbolicFunction df = f.derivative();
+            DualEvaluator dual = f.dual();
+            DoubleUnaryOperator symbolic = x -> f.applyAsDouble(x) + df.applyAsDouble(x);
+            DoubleUnaryOperator central = x -> f.applyAsDouble(x)
+                    + (f.applyAsDouble(x + h) - f.applyAsDouble(x - h)) / (2 * h);
+            DoubleUnaryOperator forward = x -> dual.evaluate(x) + dual.getDerivative();
+            double discrepancy = 0;
+            for (double x = 1; x <= 2; x += 1.0 / 64) {
+                double exact = df.applyAsDouble(x);
+                double approximation = (f.applyAsDouble(x + h) - f.applyAsDouble(x - h)) / (2 * h);
+                discrepancy = Math.max(discrepancy, Math.abs(approximation - exact) / Math.max(1, Math.abs(exact)));
+            }
+            System.out.printf("%-32s %10.2f %10.2f %10.2f %12.1e  %s%n", expression, nanosPerCall(symbolic),
+                    nanosPerCall(central), nanosPerCall(forward), discrepancy, df);
+        }
+        System.out.println();
+    }
+
+    /**
+     * Verifica que la evaluación de expresiones compiladas y los ciclos de findRoot y
+     * findFixedPoint no reserven memoria, midiendo los bytes reservados por el hilo con
+     * ThreadMXBean después de calentar el JIT.
+     *
+     * @throws IllegalStateException si alguna medición reserva memoria
+     */
+    private static void checkAllocations() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            System.out.println("Asignaciones: la JVM no mide la memoria reservada por hilo");
+            System.out.println();
+            return;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        double[] xs = new double[ExpressionProgram.BATCH_SIZE * 4 + 3];
+        double[] out = new double[xs.length];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = 1.0 + i * 1e-3;
+        }
+
+        System.out.println("Memoria reservada en el camino de evaluación (bytes por medición)");
+        System.out.println("================================================================");
+        System.out.printf("%-32s %10s %10s %10s %10s %10s%n", "Expresión",
+                "Pila", "Pila/lote", "Bytecode", "Byte/lote", "Duales");
+        boolean allocates = false;
+        for (String expression : EXPRESSIONS) {
+            ExpressionEvaluator interpreted = ExpressionEvaluator.interpret(expression);
+            ExpressionEvaluator compiled = ExpressionEvaluator.compile(expression);
+            DualEvaluator dual = compiled.dual();
+            long[] bytes = {
+                    allocatedBytes(threads, () -> {
+                        double sum = 0;
+                        for (int i = 0; i < 1_000; i++) sum += interpreted.applyAsDouble(i * 1e-6);
+                        return (long) sum;
+                    }),
+                    allocatedBytes(threads, () -> {
+                        interpreted.evaluate(xs, out);
+                        return (long) out[0];
+                    }),
+                    allocatedBytes(threads, () -> {
+                        double sum = 0;
+                        for (int i = 0; i < 1_000; i++) sum += compiled.applyAsDouble(i * 1e-6);
+                        return (long) sum;
+                    }),
+                    allocatedBytes(threads, () -> {
+                        compiled.evaluate(xs, out);
+                        return (long) out[0];
+                    }),
+                    allocatedBytes(threads, () -> {
+                        double sum = 0;
+                        for (int i = 0; i < 1_000; i++) sum += dual.evaluate(i * 1e-6) + dual.getDerivative();
+                        return (long) sum;
+                    })
+            };
+            System.out.printf("%-32s %10d %10d %10d %10d %10d%n", expression,
+                    bytes[0], bytes[1], bytes[2], bytes[3], bytes[4]);
+            for (long b : bytes) allocates |= b != 0;
+        }
+        System.out.println();
+
+        // Los métodos numéricos se construyen fuera de la medición: solo se mide el ciclo
+        CompiledFunction f = Biseccion.parseFunction("x^3 - 2*x - 5");
+        CompiledFunction g = PuntoFijo.parseFunction("cos(x)");
+        Biseccion[] bisections = new Biseccion[ALLOCATION_WARMUP + 1];
+        PuntoFijo[] fixedPoints = new PuntoFijo[bisections.length];
+        for (int i = 0; i < bisections.length; i++) {
+            bisections[i] = new Biseccion(f, 2, 3, 1e-12);
+            fixedPoints[i] = new PuntoFijo(g, 0.5, 1000, 1e-12);
+        }
+        int[] next = {0, 0};
+        long rootBytes = allocatedBytes(threads, () -> (long) bisections[next[0]++].findRoot());
+        long fixedPointBytes = allocatedBytes(threads, () -> (long) fixedPoints[next[1]++].findFixedPoint());
+        System.out.printf("%-32s %10d bytes en %d iteraciones%n", "Biseccion.findRoot",
+                rootBytes, bisections[bisections.length - 1].getIterationCount());
+        System.out.printf("%-32s %10d bytes en %d iteraciones%n", "PuntoFijo.findFixedPoint",
+                fixedPointBytes, fixedPoints[fixedPoints.length - 1].getIterationCount());
+        System.out.println();
+        allocates |= rootBytes != 0 || fixedPointBytes != 0;
+
+        if (allocates) {
+            throw new IllegalStateException("El camino de evaluación reservó memoria");
+        }
+    }
+
+    /**
+     * Ejecuta la acción varias veces para calentar el JIT y devuelve los bytes reservados por el
+     * hilo en la última ejecución, descontando lo que reserva la propia medición.
+     */
+    private static long allocatedBytes(com.sun.management.ThreadMXBean threads, LongSupplier action) {
+        for (int round = 0; round < ALLOCATION_WARMUP; round++) {
+            sink = action.getAsLong();
+        }
+        long overhead = -threads.getCurrentThreadAllocatedBytes() + threads.getCurrentThreadAllocatedBytes();
+        long before = threads.getCurrentThreadAllocatedBytes();
+        sink = action.getAsLong();
+        long after = threads.getCurrentThreadAllocatedBytes();
+        return after - before - overhead;
+    }
+
+    /**
+     * Costo de pedir repetidamente la misma expresión, compilándola cada vez o con la caché
+     * compartida. Las variantes de espacios y mayúsculas deben resolverse como aciertos.
+     */
+    private static void benchmarkExpressionCache() {
+        final int requests = 2_000;
+        ExpressionCache cache = new ExpressionCache(ExpressionCache.DEFAULT_CAPACITY);
+
+        System.out.println("Pedidos repetidos de expresiones (µs por pedido)");
+        System.out.println("================================================");
+        System.out.printf("%-32s %12s %12s%n", "Expresión", "Compilar", "Caché");
+        for (String expression : EXPRESSIONS) {
+            String variant = " " + expression.toUpperCase().replace("*", " * ") + " ";
+            long start = System.nanoTime();
+            for (int i = 0; i < requests; i++) {
+                sink = ExpressionEvaluator.compile(expression).applyAsDouble(1.5);
+            }
+            double compiled = (System.nanoTime() - start) / 1e3 / requests;
+
+            start = System.nanoTime();
+            for (int i = 0; i < requests; i++) {
+                sink = cache.get((i & 1) == 0 ? expression : variant).applyAsDouble(1.5);
+            }
+            double cached = (System.nanoTime() - start) / 1e3 / requests;
+            System.out.printf("%-32s %12.2f %12.3f%n", expression, compiled, cached);
+        }
+        System.out.println("Caché: " + cache.getStatistics());
+        System.out.println();
+
+        // Formas distintas de la misma función (expresion+0, expresion+00...): el texto es nuevo
+        // cada vez, pero la huella canónica coincide y solo se analiza
+        System.out.println("Formas equivalentes nuevas (µs por forma)");
+        System.out.println("=========================================");
+        System.out.printf("%-32s %12s %12s%n", "Expresión", "Compilar", "Huella");
+        for (int round = 0; round < WARMUP_ROUNDS + 1; round++) {
+            cache.clear();
+            for (String expression : EXPRESSIONS) {
+                double[] costs = compareEquivalentSpellings(cache, expression, round * 1_000);
+                if (round == WARMUP_ROUNDS) {
+                    System.out.printf("%-32s %12.2f %12.2f%n", expression, costs[0], costs[1]);
+                }
+            }
+        }
+        System.out.println("Caché: " + cache.getStatistics());
+        System.out.println();
+    }
+
+    /**
+     * Pide formas nuevas de una expresión (expresion+0*1, expresion+0*2...) compilándolas o con
+     * la caché, donde su huella canónica coincide y solo se analizan.
+     *
+     * @return Los µs por forma al compilar y con la caché
+     */
+    private static double[] compareEquivalentSpellings(ExpressionCache cache, String expression, int first) {
+        final int spellings = 200;
+        long compiling = 0;
+        long fingerprinting = 0;
+        for (int i = 0; i < spellings; i++) {
+            String spelling = expression + "+0*" + (first + i);
+            long start = System.nanoTime();
+            sink = ExpressionEvaluator.compile(spelling).applyAsDouble(1.5);
+            compiling += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            sink = cache.get(spelling).applyAsDouble(1.5);
+            fingerprinting += System.nanoTime() - start;
+        }
+        return new double[]{compiling / 1e3 / spellings, fingerprinting / 1e3 / spellings};
+    }
+
+    /**
+     * Lotes escalares (bytecode generado) frente a lotes SIMD con la Vector API.
+     */
+    private static void benchmarkVector() {
+        if (!ExpressionEvaluator.isVectorApiAvailable()) {
+            System.out.println("SIMD: ejecutar con --add-modules jdk.incubator.vector para medir la Vector API");
+            System.out.println();
+            return;
+        }
+        double[] xs = new double[GRID_POINTS];
+        double[] out = new double[GRID_POINTS];
+        for (int i = 0; i < GRID_POINTS; i++) {
+            xs[i] = 1.0 + i * 1e-6;
+        }
+
+        System.out.println("Lotes SIMD de " + GRID_POINTS + " puntos (ns por punto)");
+        System.out.println("==============================================");
+        System.out.printf("%-32s %12s %12s %12s%n", "Expresión", "Pila/lote", "Bytecode/lote", "SIMD/lote");
+        for (String expression : EXPRESSIONS) {
+            ExpressionEvaluator interpreted = ExpressionEvaluator.interpret(expression);
+            ExpressionEvaluator compiled = ExpressionEvaluator.compile(expression);
+            System.out.printf("%-32s %12.2f %12.2f %12.2f%n", expression,
+                    nanosPerPoint(xs, out, interpreted, true), nanosPerPoint(xs, out, compiled, true),
+                    nanosPerPoint(xs, out, compiled.vectorized(), true));
+        }
+        System.out.println();
+    }
+
+    /**
+     * Evaluación de una grilla punto a punto frente a una sola llamada por lote.
+     */
+    private static void benchmarkBatch() {
+        double[] xs = new double[GRID_POINTS];
+        double[] out = new double[GRID_POINTS];
+        for (int i = 0; i < GRID_POINTS; i++) {
+            xs[i] = 1.0 + i * 1e-6;
+        }
+
+        System.out.println("Evaluación por lotes de " + GRID_POINTS + " puntos (ns por punto)");
+        System.out.println("=====================================================");
+        System.out.printf("%-32s %12s %12s %12s %12s%n", "Expresión",
+                "Pila/punto", "Pila/lote", "Bytecode/pto", "Bytecode/lote");
+        for (String expression : EXPRESSIONS) {
+            ExpressionEvaluator interpreted = ExpressionEvaluator.interpret(expression);
+            ExpressionEvaluator compiled = ExpressionEvaluator.compile(expression);
+            System.out.printf("%-32s %12.2f %12.2f %12.2f %12.2f%n", expression,
+                    nanosPerPoint(xs, out, interpreted, false), nanosPerPoint(xs, out, interpreted, true),
+                    nanosPerPoint(xs, out, compiled, false), nanosPerPoint(xs, out, compiled, true));
+        }
+        System.out.println();
+    }
+
+    /**
+     * Mide el tiempo por punto de evaluar una grilla, con un ciclo de applyAsDouble o con un lote.
+     */
+    private static double nanosPerPoint(double[] xs, double[] out, CompiledFunction function, boolean batch) {
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            long start = System.nanoTime();
+            if (batch) {
+                function.evaluate(xs, out);
+            } else {
+                for (int i = 0; i < xs.length; i++) {
+                    out[i] = function.applyAsDouble(xs[i]);
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            sink = out[out.length - 1];
+            if (round >= WARMUP_ROUNDS) {
+                best = Math.min(best, (double) elapsed / xs.length);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Bytecode generado con Math.pow (árbol sin simplificar) frente a cadenas de multiplicaciones.
+     */
+    private static void benchmarkIntegerPowers() {
+        System.out.println("Potencias enteras en bytecode generado (ns por llamada)");
+        System.out.println("=======================================================");
+        System.out.printf("%-36s %10s %14s%n", "Expresión", "Math.pow", "Multiplicación");
+        for (String expression : POLYNOMIAL_EXPRESSIONS) {
+            ExpressionNode parsed = ExpressionParser.parse(expression);
+            ExpressionEvaluator withPow = BytecodeCompiler.compile(expression, parsed, ExpressionProgram.compile(parsed));
+            System.out.printf("%-36s %10.2f %14.2f%n", expression,
+                    nanosPerCall(withPow), nanosPerCall(ExpressionEvaluator.compile(expression)));
+        }
+        System.out.println();
+    }
+
+    /**
+     * Polinomios escritos en forma expandida compilados tal cual, en forma de Horner y en forma
+     * de Horner con fma: costo por llamada y error medio en ulp frente al valor exacto,
+     * calculado con BigDecimal sobre el árbol sin simplificar, en puntos de [-2, 2].
+     */
+    private static void benchmarkHornerForm() {
+        CompilerOptions fused = CompilerOptions.DEFAULT.withFusedMultiplyAdd(true);
+        System.out.println("Polinomios en forma de Horner (ns por llamada / error medio en ulp)");
+        System.out.println("====================================================================");
+        System.out.printf("%-44s %16s %16s %16s%n", "Expresión", "Expandido", "Horner", "Horner con fma");
+        for (String expression : EXPANDED_POLYNOMIALS) {
+            ExpressionNode parsed = ExpressionParser.parse(expression);
+            ExpressionNode tree = CommonSubexpressions.share(ExpressionSimplifier.simplify(parsed));
+            ExpressionEvaluator expanded = BytecodeCompiler.compile(expression, tree, ExpressionProgram.compile(tree));
+            ExpressionEvaluator horner = ExpressionEvaluator.compile(expression);
+            ExpressionEvaluator hornerFma = ExpressionEvaluator.compile(expression, fused);
+            System.out.printf("%-44s %8.2f / %5.2f %8.2f / %5.2f %8.2f / %5.2f%n", expression,
+                    nanosPerCall(expanded), meanUlpError(parsed, expanded),
+                    nanosPerCall(horner), meanUlpError(parsed, horner),
+                    nanosPerCall(hornerFma), meanUlpError(parsed, hornerFma));
+        }
+        System.out.println();
+    }
+
+    /**
+     * El error promedio en ulp de una función frente al valor exacto del árbol en puntos de
+     * [-2, 2]. Se promedia porque cerca de las raíces el error relativo de cualquier forma crece
+     * sin límite.
+     */
+    private static double meanUlpError(ExpressionNode exact, DoubleUnaryOperator function) {
+        final int points = 10_000;
+        double total = 0;
+        for (int i = 0; i <= points; i++) {
+            double x = -2 + 4.0 * i / points;
+            BigDecimal expected = exactValue(exact, new BigDecimal(x));
+            double error = expected.subtract(new BigDecimal(function.applyAsDouble(x))).abs().doubleValue();
+            total += error / Math.ulp(expected.doubleValue());
+        }
+        return total / (points + 1);
+    }
+
+    /**
+     * Evalúa un polinomio con 34 dígitos: sumas, restas, productos, cocientes y potencias enteras.
+     */
+    private static BigDecimal exactValue(ExpressionNode node, BigDecimal x) {
+        if (node instanceof ExpressionNode.Constant) {
+            return new BigDecimal(((ExpressionNode.Constant) node).getValue());
+        }
+        if (node instanceof ExpressionNode.Variable) {
+            return x;
+        }
+        if (node instanceof ExpressionNode.Negate) {
+            return exactValue(((ExpressionNode.Negate) node).getOperand(), x).negate();
+        }
+        ExpressionNode.Binary binary = (ExpressionNode.Binary) node;
+        BigDecimal left = exactValue(binary.getLeft(), x);
+        switch (binary.getOperator()) {
+            case '+': return left.add(exactValue(binary.getRight(), x), MathContext.DECIMAL128);
+            case '-': return left.subtract(exactValue(binary.getRight(), x), MathContext.DECIMAL128);
+            case '*': return left.multiply(exactValue(binary.getRight(), x), MathContext.DECIMAL128);
+            case '/': return left.divide(exactValue(binary.getRight(), x), MathContext.DECIMAL128);
+            default:
+                int n = (int) ((ExpressionNode.Constant) binary.getRight()).getValue();
+                return left.pow(n, MathContext.DECIMAL128);
+        }
+    }
+
+    /**
+     * Instrucciones, llamadas a funciones y costo por llamada con y sin compartir subexpresiones.
+     */
+    private static void benchmarkCommonSubexpressions() {
+        System.out.println("Subexpresiones comunes");
+        System.out.println("======================");
+        System.out.printf("%-40s %14s %14s %12s %12s%n", "Expresión", "Instrucciones", "Funciones",
+                "Sin CSE ns", "Con CSE ns");
+        for (String expression : REPEATED_EXPRESSIONS) {
+            ExpressionNode tree = ExpressionSimplifier.simplify(ExpressionParser.parse(expression));
+            ExpressionProgram plain = ExpressionProgram.compile(tree);
+            ExpressionProgram shared = ExpressionProgram.compile(CommonSubexpressions.share(tree));
+            double[] plainStack = plain.newStack();
+            double[] sharedStack = shared.newStack();
+            System.out.printf("%-40s %6d -> %4d %6d -> %4d %12.2f %12.2f%n", expression,
+                    plain.getInstructionCount(), shared.getInstructionCount(),
+                    countFunctionCalls(plain), countFunctionCalls(shared),
+                    nanosPerCall(x -> plain.execute(x, plainStack)),
+                    nanosPerCall(x -> shared.execute(x, sharedStack)));
+        }
+        System.out.println();
+    }
+
+    /**
+     * Cuenta las llamadas a funciones (sin, exp, pow...) que ejecuta el programa.
+     */
+    private static int countFunctionCalls(ExpressionProgram program) {
+        int calls = 0;
+        for (String line : program.toString().split("\n")) {
+            String mnemonic = line.split(" ")[0];
+            if (!mnemonic.matches("const|load_x|load|store|neg|add|sub|mul|div")) calls++;
+        }
+        return calls;
+    }
+
+    /**
+     * Informa la cantidad de nodos del árbol antes y después de simplificar.
+     */
+    private static void reportSimplification() {
+        System.out.println("Simplificación (nodos del árbol)");
+        System.out.println("================================");
+        System.out.printf("%-32s %8s %8s  %s%n", "Expresión", "Antes", "Después", "Resultado");
+        for (String expression : SIMPLIFIABLE_EXPRESSIONS) {
+            ExpressionNode parsed = ExpressionParser.parse(expression);
+            ExpressionNode simplified = ExpressionSimplifier.simplify(parsed);
+            System.out.printf("%-32s %8d %8d  %s%n", expression, parsed.size(), simplified.size(), simplified);
+        }
+        System.out.println();
+    }
+
+    /**
+     * Costo por llamada de evaluar expresiones personalizadas ya analizadas.
+     */
+    private static void benchmarkEvaluation() {
+        System.out.println("Evaluación de expresiones (ns por llamada)");
+        System.out.println("=========================================");
+        System.out.printf("%-32s %10s %10s %10s%n", "Expresión", "Árbol", "Pila", "Bytecode");
+        for (String expression : EXPRESSIONS) {
+            ExpressionEvaluator interpreted = ExpressionEvaluator.interpret(expression);
+            ExpressionNode tree = interpreted.getTree();
+            System.out.printf("%-32s %10.2f %10.2f %10.2f%n", expression, nanosPerCall(tree::evaluate),
+                    nanosPerCall(interpreted), nanosPerCall(ExpressionEvaluator.compile(expression)));
+        }
+        System.out.println();
+
+        // Las mismas funciones que el atajo de parseFunction resuelve con lambdas escritas a mano
+        System.out.println("Bytecode generado frente a lambdas escritas a mano (ns por llamada)");
+        System.out.println("===================================================================");
+        System.out.printf("%-32s %10s %10s%n", "Expresión", "Lambda", "Bytecode");
+        for (String expression : FAST_PATH_EXPRESSIONS) {
+            System.out.printf("%-32s %10.2f %10.2f%n", expression,
+                    nanosPerCall(Biseccion.parseFunction(expression)),
+                    nanosPerCall(ExpressionEvaluator.compile(expression)));
+        }
+        System.out.println();
+    }
+
+    /**
+     * Mide el tiempo promedio por llamada de una función sobre puntos distintos.
+     *
+     * @param function La función a medir
+     * @return Nanosegundos por llamada (mejor ronda)
+     */
+    static double nanosPerCall(DoubleUnaryOperator function) {
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            double sum = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < CALLS_PER_ROUND; i++) {
+                sum += function.applyAsDouble(1.0 + i * 1e-6);
+            }
+            long elapsed = System.nanoTime() - start;
+            sink = sum;
+            if (round >= WARMUP_ROUNDS) {
+                best = Math.min(best, (double) elapsed / CALLS_PER_ROUND);
+            }
+        }
+        return best;
+    }
+}
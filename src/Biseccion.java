@@ -1,7 +1,6 @@
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 import java.util.function.DoubleUnaryOperator;
 
 /**
@@ -10,16 +9,49 @@ import java.util.function.DoubleUnaryOperator;
  */
 public class Biseccion {
 
-    // Caché para evaluaciones de función para evitar cálculos redundantes
-    private final Map<Double, Double> evaluationCache = new HashMap<>();
-    private final DoubleUnaryOperator function;
+    // Casos simples resueltos con lambdas escritas a mano para mayor eficiencia. Conservan su
+    // expresión para poder derivarlos, por lo que se analizan una sola vez al cargar la clase, y
+    // se fijan en la caché compartida, que los entrega para cualquier forma equivalente
+    static {
+        fastPath(Math::sin, "sin(x)");
+        fastPath(Math::cos, "cos(x)");
+        fastPath(Math::tan, "tan(x)");
+        fastPath(Math::exp, "exp(x)", "e^x");
+        fastPath(Math::log, "log(x)");
+        fastPath(Math::sqrt, "sqrt(x)");
+        fastPath(x -> x * x, "x^2");
+        fastPath(x -> x * x * x, "x^3");
+        fastPath(x -> x * x - 4, "x^2-4");
+        fastPath(x -> x * x * x - x - 2, "x^3-x-2");
+        fastPath(x -> Math.cos(x) - x, "cos(x)-x");
+        fastPath(x -> 2 * Math.exp(x * x) - 5 * x, "2*exp(x^2)-5*x", "2*e^(x^2)-5*x");
+    }
+
+    /**
+     * Cantidad máxima de evaluaciones guardadas por omisión. Una búsqueda evalúa a lo sumo unos
+     * mil puntos (el intervalo entre dos doubles se agota antes), así que no llega a descartar.
+     */
+    public static final int DEFAULT_CACHE_CAPACITY = 4096;
+
+    // Cómo se evalúa la función: por omisión, una caché acotada y cuantizada propia para evitar
+    // cálculos redundantes
+    private final EvaluationCache evaluationCache;
+    // Contadores de la caché al empezar la última resolución, para informar solo los suyos
+    private long lookupsAtSolve;
+    private long missesAtSolve;
+    private long evictionsAtSolve;
     private final double a;
     private final double b;
     private final double tolerance;
     private final int maxIterations;
 
-    // Para almacenar los datos de las iteraciones
-    private final List<IterationData> iterationHistory = new ArrayList<>();
+    // Para almacenar los datos de las iteraciones, en columnas reservadas de antemano para que
+    // el ciclo de búsqueda no reserve memoria
+    private final double[] historyA;
+    private final double[] historyB;
+    private final double[] historyC;
+    private final double[] historyFc;
+    private int historySize;
 
     /**
      * Clase para almacenar los datos de cada iteración
@@ -76,11 +108,47 @@ public class Biseccion {
      * @throws IllegalArgumentException si la tolerancia no es positiva
      */
     public Biseccion(DoubleUnaryOperator function, double a, double b, double tolerance) {
+        this(function, a, b, tolerance, DEFAULT_CACHE_CAPACITY);
+    }
+
+    /**
+     * Construye un BinarySearchRootFinder con los parámetros especificados y una caché de
+     * evaluaciones de la capacidad indicada.
+     *
+     * @param function      La función cuya raíz se debe encontrar
+     * @param a             El límite inferior del intervalo
+     * @param b             El límite superior del intervalo
+     * @param tolerance     La tolerancia de error para la aproximación
+     * @param cacheCapacity La cantidad máxima de evaluaciones guardadas; al superarla se
+     *                      descartan las menos usadas (CLOCK)
+     * @throws IllegalArgumentException si la tolerancia o la capacidad no son positivas
+     */
+    public Biseccion(DoubleUnaryOperator function, double a, double b, double tolerance, int cacheCapacity) {
+        this(function, null, a, b, tolerance, cacheCapacity);
+    }
+
+    /**
+     * Construye un BinarySearchRootFinder que evalúa la función con la estrategia indicada: sin
+     * caché, con una caché exacta o cuantizada, o con una caché compartida por otras búsquedas
+     * sobre la misma función (también en otros hilos).
+     *
+     * @param cache     La estrategia de evaluación de la función cuya raíz se debe encontrar
+     *                  (ver {@link EvaluationCache} y {@link SymbolicFunction#sharedCache()})
+     * @param a         El límite inferior del intervalo
+     * @param b         El límite superior del intervalo
+     * @param tolerance La tolerancia de error para la aproximación
+     * @throws IllegalArgumentException si la tolerancia no es positiva
+     */
+    public Biseccion(EvaluationCache cache, double a, double b, double tolerance) {
+        this(cache.getFunction(), cache, a, b, tolerance, DEFAULT_CACHE_CAPACITY);
+    }
+
+    private Biseccion(DoubleUnaryOperator function, EvaluationCache cache, double a, double b,
+                      double tolerance, int cacheCapacity) {
         if (tolerance <= 0) {
             throw new IllegalArgumentException("La tolerancia debe ser positiva");
         }
 
-        this.function = function;
         this.a = a;
         this.b = b;
         this.tolerance = tolerance;
@@ -88,6 +156,16 @@ public class Biseccion {
         // Calcular el número máximo de iteraciones basado en el tamaño del intervalo y la tolerancia
         // Esto asegura que el algoritmo termine incluso si surgen problemas de precisión de punto flotante
         this.maxIterations = (int) Math.ceil(Math.log((b - a) / tolerance) / Math.log(2)) + 10; // Agregar margen de seguridad
+
+        // Cada iteración evalúa un punto nuevo, más los dos extremos
+        int capacity = Math.max(0, maxIterations);
+        // Redondear a una centésima de la tolerancia para mejorar los aciertos de caché
+        this.evaluationCache = cache != null ? cache
+                : new EvaluationCache.Quantized(function, tolerance * 0.01, cacheCapacity, capacity + 2);
+        this.historyA = new double[capacity];
+        this.historyB = new double[capacity];
+        this.historyC = new double[capacity];
+        this.historyFc = new double[capacity];
     }
 
     /**
@@ -97,29 +175,23 @@ public class Biseccion {
      * @return El valor de la función en x
      */
     private double evaluateFunction(double x) {
-        // Redondear a una precisión razonable para mejorar los aciertos de caché
-        double roundedX = Math.round(x / (tolerance * 0.01)) * (tolerance * 0.01);
-
-        // Verificar si ya calculamos este valor
-        if (evaluationCache.containsKey(roundedX)) {
-            return evaluationCache.get(roundedX);
-        }
-
-        // Calcular el valor y almacenarlo en caché
-        double result = function.applyAsDouble(roundedX);
-        evaluationCache.put(roundedX, result);
-        return result;
+        return evaluationCache.evaluate(x);
     }
 
     /**
      * Encuentra una raíz de la función dentro del intervalo [a, b] con la tolerancia especificada.
+     * El ciclo de búsqueda no reserva memoria; cada llamada reemplaza el historial anterior.
      *
      * @return La raíz aproximada de la función
      * @throws IllegalArgumentException si la función no tiene un cambio de signo en el intervalo
      */
     public double findRoot() {
+        lookupsAtSolve = evaluationCache.getLookups();
+        missesAtSolve = evaluationCache.getMisses();
+        evictionsAtSolve = evaluationCache.getEvictions();
         double left = a;
         double right = b;
+        historySize = 0;
 
         // Verificar si los valores de la función en los puntos extremos tienen signos opuestos
         double fLeft = evaluateFunction(left);
@@ -146,9 +218,12 @@ public class Biseccion {
             mid = left + (right - left) / 2.0;
             fMid = evaluateFunction(mid);
 
-            // Registrar esta iteración
-            double error = right - left;
-            iterationHistory.add(new IterationData(iterations, left, right, mid, fMid, error));
+            // Registrar esta iteración (el error es el ancho del intervalo)
+            historyA[historySize] = left;
+            historyB[historySize] = right;
+            historyC[historySize] = mid;
+            historyFc[historySize] = fMid;
+            historySize++;
 
             // Si encontramos raíz exacta
             if (Math.abs(fMid) < tolerance) {
@@ -172,14 +247,64 @@ public class Biseccion {
     }
 
     /**
-     * Obtiene el historial de iteraciones.
+     * Obtiene el historial de iteraciones. La lista se construye en cada llamada a partir de las
+     * columnas registradas por findRoot.
      *
      * @return Una lista con los datos de cada iteración
      */
     public List<IterationData> getIterationHistory() {
+        List<IterationData> iterationHistory = new ArrayList<>(historySize);
+        for (int i = 0; i < historySize; i++) {
+            iterationHistory.add(new IterationData(i + 1, historyA[i], historyB[i], historyC[i], historyFc[i],
+                    historyB[i] - historyA[i]));
+        }
         return iterationHistory;
     }
 
+    /**
+     * Obtiene la cantidad de iteraciones realizadas por la última llamada a findRoot.
+     */
+    public int getIterationCount() {
+        return historySize;
+    }
+
+    /**
+     * Obtiene la estrategia con la que se evalúa la función.
+     */
+    public EvaluationCache getEvaluationCache() {
+        return evaluationCache;
+    }
+
+    /**
+     * Obtiene las estadísticas de la caché durante la última llamada a findRoot: cuántas
+     * evaluaciones pidió, cuántas encontró guardadas y cuántas calculó, junto con las
+     * evaluaciones guardadas y la memoria que ocupan al terminar. Con una caché compartida, las
+     * consultas de otras búsquedas simultáneas también se cuentan.
+     *
+     * @return Las estadísticas de la última resolución
+     */
+    public EvaluationCache.Statistics getSolveStatistics() {
+        EvaluationCache.Statistics now = evaluationCache.getStatistics();
+        long misses = now.getMisses() - missesAtSolve;
+        return new EvaluationCache.Statistics(now.getLookups() - lookupsAtSolve - misses, misses,
+                now.getEvictions() - evictionsAtSolve, now.getSize(), now.getCapacity(), now.getBytes());
+    }
+
+    /**
+     * Obtiene la cantidad de evaluaciones guardadas en la caché (la compartida, si se usa una).
+     */
+    public int getCacheSize() {
+        return evaluationCache.size();
+    }
+
+    /**
+     * Obtiene la cantidad de evaluaciones descartadas de la caché por falta de lugar (de la
+     * compartida, si se usa una).
+     */
+    public long getCacheEvictions() {
+        return evaluationCache.getEvictions();
+    }
+
     // El resto del código se mantiene igual...
 
     /**
@@ -187,385 +312,27 @@ public class Biseccion {
      * Soporta operaciones aritméticas básicas y funciones matemáticas comunes.
      *
      * @param expression La expresión matemática en términos de x
-     * @return Un DoubleUnaryOperator que representa la función
+     * @return Una SymbolicFunction que representa la función; además de evaluarse punto a punto
+     *         puede evaluar lotes de puntos en una sola llamada y obtener su derivada exacta. Es
+     *         un {@link ExpressionEvaluator} cuyo {@link ExpressionEvaluator#getTier()} indica si
+     *         ya ejecuta bytecode generado
      * @throws IllegalArgumentException si la expresión no puede ser analizada
      */
-    public static DoubleUnaryOperator parseFunction(String expression) {
-        // Normalizar la expresión para funciones comunes
-        String normalizedExpression = expression.trim().toLowerCase();
-
-        // Manejar casos simples directamente usando expresiones lambda para mayor eficiencia
-        switch (normalizedExpression) {
-            case "sin(x)": return Math::sin;
-            case "cos(x)": return Math::cos;
-            case "tan(x)": return Math::tan;
-            case "exp(x)":
-            case "e^x": return Math::exp;
-            case "log(x)":
-            case "ln(x)": return Math::log;
-            case "sqrt(x)": return Math::sqrt;
-            case "x^2":
-            case "x*x": return x -> x * x;
-            case "x^3": return x -> x * x * x;
-            case "x^2-4":
-            case "x*x-4": return x -> x * x - 4;
-            case "x^3-x-2": return x -> x * x * x - x - 2;
-            case "cos(x)-x": return x -> Math.cos(x) - x;
-            case "2*e^(x^2)-5*x":
-            case "2*exp(x^2)-5*x": return x -> 2 * Math.exp(x * x) - 5 * x;
-        }
-
-        // Para otras expresiones, crear una función que analice la expresión en cada llamada
-        return new ExpressionEvaluator(normalizedExpression);
+    public static SymbolicFunction parseFunction(String expression) {
+        // La caché normaliza la expresión y resuelve por su huella canónica cualquier forma
+        // equivalente, incluidas las de los casos simples escritos a mano; el resto se interpreta
+        // hasta que se evalúa lo suficiente como para justificar generar su bytecode
+        return ExpressionCache.shared().get(expression);
     }
 
     /**
-     * Una clase especializada para evaluación eficiente de expresiones.
-     * Implementa DoubleUnaryOperator para evaluación de funciones.
+     * Fija en la caché compartida una lambda escrita a mano para una expresión. La primera
+     * forma es la que se analiza para conservar el árbol; las demás son formas no equivalentes
+     * bit a bit (e^x calcula Math.pow(e, x), no Math.exp(x)) que también deben resolverse con
+     * la lambda.
      */
-    private static class ExpressionEvaluator implements DoubleUnaryOperator {
-        private final String expression;
-        private final Map<Double, Double> cache = new HashMap<>();
-        private static final double CACHE_PRECISION = 1e-10;
-
-        public ExpressionEvaluator(String expression) {
-            this.expression = expression;
-        }
-
-        @Override
-        public double applyAsDouble(double x) {
-            // Redondear a una precisión adecuada para caché
-            double roundedX = Math.round(x / CACHE_PRECISION) * CACHE_PRECISION;
-
-            // Verificar caché primero
-            if (cache.containsKey(roundedX)) {
-                return cache.get(roundedX);
-            }
-
-            // Calcular el resultado
-            double result = evaluateExpression(expression, x);
-
-            // Almacenar el resultado en caché
-            cache.put(roundedX, result);
-            return result;
-        }
-
-        /**
-         * Evalúa una expresión matemática para un valor específico de x.
-         * Este método utiliza un enfoque de descenso recursivo para mayor eficiencia.
-         */
-        private double evaluateExpression(String expr, double x) {
-            // Reemplazar variables y constantes
-            expr = expr.replace("x", "(" + x + ")")
-                    .replace("e", String.valueOf(Math.E))
-                    .replace("pi", String.valueOf(Math.PI));
-
-            // Manejar funciones primero
-            expr = evaluateFunctions(expr);
-
-            // Manejar operadores en orden de precedencia
-            return evaluateOperators(expr);
-        }
-
-        /**
-         * Evaluar todas las funciones en la expresión
-         */
-        private String evaluateFunctions(String expr) {
-            // Manejar funciones matemáticas comunes
-            while (true) {
-                // Encontrar la primera llamada a función
-                int funcStart = findFirstFunction(expr);
-                if (funcStart == -1) break;
-
-                // Extraer nombre de función
-                int nameStart = funcStart;
-                while (nameStart > 0 && Character.isLetter(expr.charAt(nameStart - 1))) {
-                    nameStart--;
-                }
-                String funcName = expr.substring(nameStart, funcStart);
-
-                // Encontrar paréntesis coincidente
-                int openParen = expr.indexOf('(', funcStart);
-                int closeParen = findMatchingCloseParen(expr, openParen);
-
-                if (closeParen == -1) {
-                    throw new IllegalArgumentException("Falta paréntesis de cierre para la función: " + funcName);
-                }
-
-                // Extraer y evaluar el argumento
-                String arg = expr.substring(openParen + 1, closeParen);
-                double argValue = evaluateOperators(arg);
-
-                // Aplicar la función
-                double result;
-                switch (funcName) {
-                    case "sin": result = Math.sin(argValue); break;
-                    case "cos": result = Math.cos(argValue); break;
-                    case "tan": result = Math.tan(argValue); break;
-                    case "sqrt": result = Math.sqrt(argValue); break;
-                    case "log":
-                    case "ln": result = Math.log(argValue); break;
-                    case "exp": result = Math.exp(argValue); break;
-                    default: throw new IllegalArgumentException("Función desconocida: " + funcName);
-                }
-
-                // Reemplazar la llamada a función con su resultado
-                expr = expr.substring(0, nameStart) + result + expr.substring(closeParen + 1);
-            }
-
-            return expr;
-        }
-
-        /**
-         * Encontrar el índice de la primera llamada a función en una expresión
-         */
-        private int findFirstFunction(String expr) {
-            String[] functions = {"sin", "cos", "tan", "sqrt", "log", "ln", "exp"};
-            int earliest = Integer.MAX_VALUE;
-
-            for (String func : functions) {
-                int index = expr.indexOf(func + "(");
-                if (index != -1 && index < earliest) {
-                    earliest = index + func.length();
-                }
-            }
-
-            return (earliest == Integer.MAX_VALUE) ? -1 : earliest;
-        }
-
-        /**
-         * Evaluar operadores en una expresión según reglas de precedencia
-         */
-        private double evaluateOperators(String expr) {
-            // Manejar paréntesis primero
-            while (true) {
-                int openParen = expr.indexOf('(');
-                if (openParen == -1) break;
-
-                int closeParen = findMatchingCloseParen(expr, openParen);
-                if (closeParen == -1) {
-                    throw new IllegalArgumentException("Falta paréntesis de cierre en: " + expr);
-                }
-
-                String subExpr = expr.substring(openParen + 1, closeParen);
-                double subResult = evaluateOperators(subExpr);
-
-                expr = expr.substring(0, openParen) + subResult + expr.substring(closeParen + 1);
-            }
-
-            // Manejar operaciones de potencia (^)
-            while (expr.contains("^")) {
-                int opIdx = expr.indexOf('^');
-                String leftExpr = extractLeftOperand(expr, opIdx);
-                String rightExpr = extractRightOperand(expr, opIdx);
-
-                double leftVal = Double.parseDouble(leftExpr);
-                double rightVal = Double.parseDouble(rightExpr);
-                double result = Math.pow(leftVal, rightVal);
-
-                expr = expr.substring(0, opIdx - leftExpr.length()) + result +
-                        expr.substring(opIdx + 1 + rightExpr.length());
-            }
-
-            // Manejar multiplicación y división
-            while (expr.contains("*") || expr.contains("/")) {
-                int mulIdx = expr.indexOf('*');
-                int divIdx = expr.indexOf('/');
-
-                int opIdx;
-                char op;
-
-                if (mulIdx == -1) {
-                    opIdx = divIdx;
-                    op = '/';
-                } else if (divIdx == -1) {
-                    opIdx = mulIdx;
-                    op = '*';
-                } else {
-                    opIdx = Math.min(mulIdx, divIdx);
-                    op = (opIdx == mulIdx) ? '*' : '/';
-                }
-
-                String leftExpr = extractLeftOperand(expr, opIdx);
-                String rightExpr = extractRightOperand(expr, opIdx);
-
-                double leftVal = Double.parseDouble(leftExpr);
-                double rightVal = Double.parseDouble(rightExpr);
-
-                double result;
-                if (op == '*') {
-                    result = leftVal * rightVal;
-                } else {
-                    if (rightVal == 0) {
-                        throw new ArithmeticException("División por cero");
-                    }
-                    result = leftVal / rightVal;
-                }
-
-                expr = expr.substring(0, opIdx - leftExpr.length()) + result +
-                        expr.substring(opIdx + 1 + rightExpr.length());
-            }
-
-            // Manejar suma y resta
-            while (true) {
-                // Encontrar primer + o - que no esté al principio
-                int addIdx = -1;
-                int subIdx = -1;
-
-                for (int i = 1; i < expr.length(); i++) {
-                    if (expr.charAt(i) == '+' && addIdx == -1) {
-                        addIdx = i;
-                    } else if (expr.charAt(i) == '-' && subIdx == -1 &&
-                            (Character.isDigit(expr.charAt(i-1)) || expr.charAt(i-1) == ')')) {
-                        subIdx = i;
-                    }
-                }
-
-                if (addIdx == -1 && subIdx == -1) break;
-
-                int opIdx = (addIdx == -1) ? subIdx : (subIdx == -1) ? addIdx : Math.min(addIdx, subIdx);
-                char op = expr.charAt(opIdx);
-
-                String leftExpr = expr.substring(0, opIdx).trim();
-                String rightExpr = expr.substring(opIdx + 1).trim();
-
-                if (leftExpr.isEmpty()) {
-                    // Manejar caso donde - está al principio (número negativo)
-                    return Double.parseDouble(expr);
-                }
-
-                double leftVal, rightVal;
-                try {
-                    leftVal = Double.parseDouble(leftExpr);
-                    rightVal = Double.parseDouble(rightExpr);
-                } catch (NumberFormatException e) {
-                    // Si no podemos analizar como doubles, puede haber más operaciones para procesar
-                    // Procesar rightExpr primero
-                    rightVal = evaluateOperators(rightExpr);
-                    try {
-                        leftVal = Double.parseDouble(leftExpr);
-                    } catch (NumberFormatException e2) {
-                        leftVal = evaluateOperators(leftExpr);
-                    }
-                }
-
-                return (op == '+') ? leftVal + rightVal : leftVal - rightVal;
-            }
-
-            // Si no quedan operadores, es solo un número
-            try {
-                return Double.parseDouble(expr.trim());
-            } catch (NumberFormatException e) {
-                throw new IllegalArgumentException("No se puede evaluar la expresión: " + expr);
-            }
-        }
-
-        /**
-         * Encontrar el paréntesis de cierre coincidente
-         */
-        private int findMatchingCloseParen(String expr, int openParenIdx) {
-            int count = 1;
-            for (int i = openParenIdx + 1; i < expr.length(); i++) {
-                if (expr.charAt(i) == '(') count++;
-                else if (expr.charAt(i) == ')') count--;
-
-                if (count == 0) return i;
-            }
-            return -1;
-        }
-
-        /**
-         * Extraer el operando izquierdo de un operador binario
-         */
-        private String extractLeftOperand(String expr, int opIdx) {
-            int start = opIdx - 1;
-
-            // Omitir espacios en blanco
-            while (start >= 0 && Character.isWhitespace(expr.charAt(start))) start--;
-
-            // Si es un paréntesis de cierre, extraer toda la expresión entre paréntesis
-            if (start >= 0 && expr.charAt(start) == ')') {
-                int openParen = findMatchingOpenParen(expr, start);
-                if (openParen >= 0) {
-                    return expr.substring(openParen, start + 1);
-                }
-            }
-
-            // De lo contrario, extraer el número
-            int end = start;
-            while (start >= 0 && (Character.isDigit(expr.charAt(start)) ||
-                    expr.charAt(start) == '.' ||
-                    (start > 0 && expr.charAt(start) == 'E') ||
-                    (expr.charAt(start) == '-' && start > 0 &&
-                            (expr.charAt(start-1) == 'E' || expr.charAt(start-1) == 'e')))) {
-                start--;
-            }
-
-            // Manejar números negativos
-            if (start >= 0 && expr.charAt(start) == '-') {
-                // Verificar si este es un menos unario
-                if (start == 0 || isOperator(expr.charAt(start-1)) || expr.charAt(start-1) == '(') {
-                    start--;
-                }
-            }
-
-            return expr.substring(start + 1, end + 1);
-        }
-
-        /**
-         * Encontrar el paréntesis de apertura coincidente, buscando hacia atrás
-         */
-        private int findMatchingOpenParen(String expr, int closeParenIdx) {
-            int count = 1;
-            for (int i = closeParenIdx - 1; i >= 0; i--) {
-                if (expr.charAt(i) == ')') count++;
-                else if (expr.charAt(i) == '(') count--;
-
-                if (count == 0) return i;
-            }
-            return -1;
-        }
-
-        /**
-         * Extraer el operando derecho de un operador binario
-         */
-        private String extractRightOperand(String expr, int opIdx) {
-            int start = opIdx + 1;
-
-            // Omitir espacios en blanco
-            while (start < expr.length() && Character.isWhitespace(expr.charAt(start))) start++;
-
-            // Manejar números negativos
-            if (start < expr.length() && expr.charAt(start) == '-') {
-                start++;
-            }
-
-            // Si es un paréntesis de apertura, extraer toda la expresión entre paréntesis
-            if (start < expr.length() && expr.charAt(start) == '(') {
-                int closeParen = findMatchingCloseParen(expr, start);
-                if (closeParen >= 0) {
-                    return expr.substring(start, closeParen + 1);
-                }
-            }
-
-            // De lo contrario, extraer el número
-            int end = start;
-            while (end < expr.length() && (Character.isDigit(expr.charAt(end)) ||
-                    expr.charAt(end) == '.' ||
-                    (end > start && (expr.charAt(end) == 'E' || expr.charAt(end) == 'e')) ||
-                    (expr.charAt(end) == '+' || expr.charAt(end) == '-') &&
-                            end > start && (expr.charAt(end-1) == 'E' || expr.charAt(end-1) == 'e'))) {
-                end++;
-            }
-
-            return expr.substring(start, end);
-        }
-
-        /**
-         * Verificar si un carácter es un operador
-         */
-        private boolean isOperator(char c) {
-            return c == '+' || c == '-' || c == '*' || c == '/' || c == '^';
-        }
+    private static void fastPath(DoubleUnaryOperator implementation, String... spellings) {
+        ExpressionEvaluator function = ExpressionEvaluator.handwritten(spellings[0], implementation);
+        ExpressionCache.shared().pin(function, Arrays.copyOfRange(spellings, 1, spellings.length));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,901 @@
+import java.io.ByteArrayOutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Traduce un {@link ExpressionProgram} a bytecode de la JVM y lo carga como una clase oculta
+ * (hidden class) que extiende {@link ExpressionEvaluator}.
+ * <p>
+ * El programa postfijo se corresponde directamente con la pila de operandos de la JVM:
+ * cada instrucción se convierte en dadd, dmul, ldc2_w o invokestatic a Math (fma incluida). El resultado es
+ * equivalente a una lambda escrita a mano, así que el JIT puede compilarlo e inlinear
+ * Math.sin, Math.exp y la aritmética del mismo modo. La clase también sobrescribe
+ * {@code evaluateRange} con un ciclo que evalúa el cuerpo para cada punto de un lote,
+ * {@code evaluateDual} con la evaluación por números duales (valor y derivada) en variables
+ * locales, y {@code applyAsDouble(double[])} con el cuerpo leyendo las variables del arreglo
+ * por posición.
+ * <p>
+ * Las funciones de {@link FunctionRegistry} que no tienen instrucción propia se llaman
+ * directamente: las de Math con invokestatic y las lambdas a través de un campo static final de
+ * la clase generada, inicializado con los datos de clase (class data) al cargarla. El JIT trata
+ * esos campos como constantes, de modo que inlinea la lambda igual que una llamada a Math. Si el
+ * programa llama funciones registradas, la evaluación por números duales no se genera y se
+ * hereda la interpretada.
+ * <p>
+ * Las clases generadas no son fuertes: se descargan cuando el evaluador deja de usarse.
+ */
+final class BytecodeCompiler {
+
+    // Nombre interno de la clase generada; la JVM le agrega un sufijo único
+    private static final String CLASS_NAME = "GeneratedExpression";
+    private static final String SUPER_NAME = "ExpressionEvaluator";
+    private static final String CONSTRUCTOR_DESCRIPTOR = "(Ljava/lang/String;LExpressionNode;LExpressionProgram;)V";
+
+    // applyAsDouble: 0 this, 1-2 x; a partir de 3 las subexpresiones compartidas
+    private static final int APPLY_X_LOCAL = 1;
+    private static final int APPLY_FIRST_LOCAL = 3;
+
+    // applyAsDouble(double[]): 0 this, 1 variables, 2-3 la variable principal; a partir de 4
+    // las subexpresiones compartidas
+    private static final int VARIABLES_ARRAY_LOCAL = 1;
+    private static final int VARIABLES_X_LOCAL = 2;
+    private static final int VARIABLES_FIRST_LOCAL = 4;
+
+    // Los métodos que solo reciben x no tienen arreglo de variables
+    private static final int NO_VARIABLES = -1;
+
+    // Las llamadas a funciones de dos argumentos guardan el segundo en un par auxiliar de
+    // variables locales, a continuación de las subexpresiones compartidas
+    private static final int CALL_SCRATCH_LOCALS = 2;
+
+    // evaluateRange: 0 this, 1 xs, 2 xsOffset, 3 out, 4 outOffset, 5 length, 6 i, 7-8 x
+    private static final int RANGE_INDEX_LOCAL = 6;
+    private static final int RANGE_X_LOCAL = 7;
+    private static final int RANGE_FIRST_LOCAL = 9;
+
+    // evaluateDual: 0 this, 1-2 x, 3 stack, 4 tangents; a partir de 5 un par valor/derivada
+    // (cuatro posiciones) por cada posición de la pila del programa, y al final uno auxiliar
+    private static final int DUAL_X_LOCAL = 1;
+    private static final int DUAL_TANGENTS_LOCAL = 4;
+    private static final int DUAL_FIRST_LOCAL = 5;
+    private static final String DUAL_DESCRIPTOR = "(D[D[D)D";
+
+    // Límite de la JVM para la cantidad de variables locales de un método
+    private static final int MAX_LOCALS = 65535;
+
+    // Límite de la JVM para el tamaño del código de un método
+    private static final int MAX_CODE_LENGTH = 65535;
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private BytecodeCompiler() {
+    }
+
+    /**
+     * Genera y carga una clase que evalúa el programa.
+     *
+     * @param expression La expresión original
+     * @param tree       El árbol de la expresión
+     * @param program    El programa de pila a traducir
+     * @return Un evaluador cuyo applyAsDouble es bytecode nativo de la JVM
+     * @throws UnsupportedOperationException si el programa no puede traducirse o cargarse
+     */
+    static ExpressionEvaluator compile(String expression, ExpressionNode tree, ExpressionProgram program) {
+        byte[] classBytes = generateClass(program);
+        FunctionRegistry.Definition[] functions = program.functions();
+        Object[] implementations = new Object[functions.length];
+        for (int i = 0; i < functions.length; i++) {
+            implementations[i] = functions[i].getImplementation();
+        }
+        try {
+            Class<?> generated = LOOKUP.defineHiddenClassWithClassData(classBytes, implementations, true)
+                    .lookupClass();
+            MethodHandle constructor = LOOKUP.findConstructor(generated, MethodType.methodType(
+                    void.class, String.class, ExpressionNode.class, ExpressionProgram.class));
+            return (ExpressionEvaluator) constructor.invoke(expression, tree, program);
+        } catch (Throwable t) {
+            throw new UnsupportedOperationException("No se pudo generar bytecode para: " + expression, t);
+        }
+    }
+
+    /**
+     * Genera el archivo de clase completo.
+     */
+    private static byte[] generateClass(ExpressionProgram program) {
+        ConstantPool pool = new ConstantPool();
+        int thisClass = pool.classRef(CLASS_NAME);
+        int superClass = pool.classRef(SUPER_NAME);
+        int codeAttribute = pool.utf8("Code");
+
+        byte[] constructorCode = constructorCode(pool);
+        byte[] applyCode = applyCode(pool, program, thisClass);
+        ByteWriter frames = new ByteWriter();
+        byte[] rangeCode = evaluateRangeCode(pool, program, thisClass, frames);
+        // Con funciones registradas, la evaluación por números duales se hereda interpretada
+        boolean callsFunctions = program.functions().length > 0;
+        byte[] dualCode = callsFunctions ? null : evaluateDualCode(pool, program);
+        byte[] variablesCode = applyVariablesCode(pool, program, thisClass);
+        byte[] initializerCode = lambdaFields(program) > 0 ? initializerCode(pool, program, thisClass) : null;
+
+        // Todo lo que sigue al pool se escribe primero para registrar sus constantes
+        ByteWriter body = new ByteWriter();
+        body.u2(0x0001 | 0x0010 | 0x0020); // public final super
+        body.u2(thisClass);
+        body.u2(superClass);
+        body.u2(0);                     // interfaces (las hereda de ExpressionEvaluator)
+        writeLambdaFields(body, pool, program);
+
+        body.u2(4 + (dualCode == null ? 0 : 1) + (initializerCode == null ? 0 : 1));  // métodos
+        writeMethod(body, pool, 0x0001, "<init>", CONSTRUCTOR_DESCRIPTOR, codeAttribute, 4, 4,
+                constructorCode, null);
+        // Los double ocupan dos posiciones; STORE duplica el tope antes de guardarlo
+        int bodyStack = (program.getMaxStack() + 1) * 2;
+        int bodyLocals = program.getLocals() * 2 + CALL_SCRATCH_LOCALS;
+        writeMethod(body, pool, 0x0001 | 0x0010, "applyAsDouble", "(D)D", codeAttribute,
+                bodyStack, APPLY_FIRST_LOCAL + bodyLocals, applyCode, null);
+        // En el lote, el arreglo de salida y el índice quedan debajo del valor calculado
+        writeMethod(body, pool, 0x0004 | 0x0010, "evaluateRange", "([DI[DII)V", codeAttribute,
+                2 + bodyStack, RANGE_FIRST_LOCAL + bodyLocals, rangeCode, frames.toByteArray());
+        if (dualCode != null) {
+            // powTangent recibe cinco double; el resultado se escribe con arreglo e índice debajo
+            writeMethod(body, pool, 0x0004 | 0x0010, "evaluateDual", DUAL_DESCRIPTOR, codeAttribute,
+                    10, dualSlot(program.getStackSize()) + 2, dualCode, null);
+        }
+        writeMethod(body, pool, 0x0001 | 0x0010, "applyAsDouble", "([D)D", codeAttribute,
+                bodyStack, VARIABLES_FIRST_LOCAL + bodyLocals, variablesCode, null);
+        if (initializerCode != null) {
+            writeMethod(body, pool, 0x0008, "<clinit>", "()V", codeAttribute, 3, 1, initializerCode, null);
+        }
+        body.u2(0);                     // atributos de clase
+
+        ByteWriter out = new ByteWriter();
+        out.u4(0xCAFEBABE);
+        out.u2(0);                      // versión menor
+        out.u2(52);                     // Java 8
+        pool.writeTo(out);
+        out.bytes(body.toByteArray());
+        return out.toByteArray();
+    }
+
+    /**
+     * Cuenta las funciones del programa que se llaman a través de un campo (las lambdas).
+     */
+    private static int lambdaFields(ExpressionProgram program) {
+        int count = 0;
+        for (FunctionRegistry.Definition function : program.functions()) {
+            if (function.getOwner() == null) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Un campo private static final por cada lambda: f seguido del índice de la función.
+     */
+    private static void writeLambdaFields(ByteWriter body, ConstantPool pool, ExpressionProgram program) {
+        FunctionRegistry.Definition[] functions = program.functions();
+        body.u2(lambdaFields(program));
+        for (int i = 0; i < functions.length; i++) {
+            if (functions[i].getOwner() != null) continue;
+            body.u2(0x0002 | 0x0008 | 0x0010);  // private static final
+            body.u2(pool.utf8("f" + i));
+            body.u2(pool.utf8(lambdaDescriptor(functions[i])));
+            body.u2(0);                 // atributos
+        }
+    }
+
+    /**
+     * static {}: lee el arreglo de implementaciones de los datos de clase y asigna cada lambda
+     * a su campo.
+     * <pre>
+     *   Object[] data = MethodHandles.classData(MethodHandles.lookup(), "_", Object[].class);
+     *   f0 = (DoubleUnaryOperator) data[0];
+     * </pre>
+     */
+    private static byte[] initializerCode(ConstantPool pool, ExpressionProgram program, int thisClass) {
+        FunctionRegistry.Definition[] functions = program.functions();
+        ByteWriter code = new ByteWriter();
+        code.u1(0xb8);                  // invokestatic MethodHandles.lookup
+        code.u2(pool.methodRef("java/lang/invoke/MethodHandles", "lookup",
+                "()Ljava/lang/invoke/MethodHandles$Lookup;"));
+        code.u1(0x13);                  // ldc_w "_"
+        code.u2(pool.string("_"));
+        code.u1(0x13);                  // ldc_w Object[].class
+        code.u2(pool.classRef("[Ljava/lang/Object;"));
+        code.u1(0xb8);                  // invokestatic MethodHandles.classData
+        code.u2(pool.methodRef("java/lang/invoke/MethodHandles", "classData",
+                "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;)Ljava/lang/Object;"));
+        code.u1(0xc0);                  // checkcast Object[]
+        code.u2(pool.classRef("[Ljava/lang/Object;"));
+        code.u1(0x4b);                  // astore_0
+        for (int i = 0; i < functions.length; i++) {
+            if (functions[i].getOwner() != null) continue;
+            String descriptor = lambdaDescriptor(functions[i]);
+            code.u1(0x2a);              // aload_0
+            pushInt(code, i);
+            code.u1(0x32);              // aaload
+            code.u1(0xc0);              // checkcast
+            code.u2(pool.classRef(descriptor.substring(1, descriptor.length() - 1)));
+            code.u1(0xb3);              // putstatic
+            code.u2(pool.fieldRef(thisClass, "f" + i, descriptor));
+        }
+        code.u1(0xb1);                  // return
+        return code.toByteArray();
+    }
+
+    private static String lambdaDescriptor(FunctionRegistry.Definition function) {
+        return function.getArity() == 1
+                ? "Ljava/util/function/DoubleUnaryOperator;" : "Ljava/util/function/DoubleBinaryOperator;";
+    }
+
+    private static byte[] constructorCode(ConstantPool pool) {
+        ByteWriter code = new ByteWriter();
+        code.u1(0x2a);                  // aload_0
+        code.u1(0x2b);                  // aload_1
+        code.u1(0x2c);                  // aload_2
+        code.u1(0x2d);                  // aload_3
+        code.u1(0xb7);                  // invokespecial ExpressionEvaluator.<init>
+        code.u2(pool.methodRef(SUPER_NAME, "<init>", CONSTRUCTOR_DESCRIPTOR));
+        code.u1(0xb1);                  // return
+        return code.toByteArray();
+    }
+
+    /**
+     * applyAsDouble(double x): el cuerpo de la expresión seguido de dreturn, sin saltos.
+     */
+    private static byte[] applyCode(ConstantPool pool, ExpressionProgram program, int thisClass) {
+        ByteWriter code = new ByteWriter();
+        emitExpression(code, pool, program, thisClass, APPLY_X_LOCAL, APPLY_FIRST_LOCAL, NO_VARIABLES);
+        code.u1(0xaf);                  // dreturn
+        checkCodeLength(code.size(), MAX_CODE_LENGTH);
+        return code.toByteArray();
+    }
+
+    /**
+     * applyAsDouble(double[] variables): copia la variable principal a una variable local y
+     * evalúa el cuerpo; las demás variables se leen del arreglo por su posición, fija en el código.
+     */
+    private static byte[] applyVariablesCode(ConstantPool pool, ExpressionProgram program, int thisClass) {
+        ByteWriter code = new ByteWriter();
+        code.u1(0x2b);                  // aload_1 (variables)
+        code.u1(0x03);                  // iconst_0
+        code.u1(0x31);                  // daload
+        localInstruction(code, 0x39, VARIABLES_X_LOCAL);  // dstore
+        emitExpression(code, pool, program, thisClass, VARIABLES_X_LOCAL, VARIABLES_FIRST_LOCAL,
+                VARIABLES_ARRAY_LOCAL);
+        code.u1(0xaf);                  // dreturn
+        checkCodeLength(code.size(), MAX_CODE_LENGTH);
+        return code.toByteArray();
+    }
+
+    /**
+     * evaluateRange(xs, xsOffset, out, outOffset, length): un ciclo que evalúa el cuerpo de la
+     * expresión para cada punto, sin llamadas por punto.
+     * <pre>
+     *   for (int i = 0; i &lt; length; i++) {
+     *       double x = xs[xsOffset + i];
+     *       out[outOffset + i] = cuerpo(x);
+     *   }
+     * </pre>
+     * Al haber saltos, el método lleva una StackMapTable con los marcos del inicio y del fin del ciclo.
+     */
+    private static byte[] evaluateRangeCode(ConstantPool pool, ExpressionProgram program, int thisClass,
+                                            ByteWriter frames) {
+        ByteWriter iteration = new ByteWriter();
+        iteration.u1(0x2d);             // aload_3 (out)
+        iteration.u1(0x15);             // iload outOffset
+        iteration.u1(4);
+        iteration.u1(0x15);             // iload i
+        iteration.u1(RANGE_INDEX_LOCAL);
+        iteration.u1(0x60);             // iadd
+        iteration.u1(0x2b);             // aload_1 (xs)
+        iteration.u1(0x1c);             // iload_2 (xsOffset)
+        iteration.u1(0x15);             // iload i
+        iteration.u1(RANGE_INDEX_LOCAL);
+        iteration.u1(0x60);             // iadd
+        iteration.u1(0x31);             // daload
+        iteration.u1(0x39);             // dstore x
+        iteration.u1(RANGE_X_LOCAL);
+        emitExpression(iteration, pool, program, thisClass, RANGE_X_LOCAL, RANGE_FIRST_LOCAL, NO_VARIABLES);
+        iteration.u1(0x52);             // dastore
+        iteration.u1(0x84);             // iinc i 1
+        iteration.u1(RANGE_INDEX_LOCAL);
+        iteration.u1(1);
+
+        // Posiciones: prólogo (3 bytes), condición (7 bytes), iteración, goto (3 bytes), return
+        int loopStart = 3;
+        int branch = loopStart + 4;
+        int gotoPosition = loopStart + 7 + iteration.size();
+        int loopEnd = gotoPosition + 3;
+        checkCodeLength(loopEnd + 1, Short.MAX_VALUE);
+
+        ByteWriter code = new ByteWriter();
+        code.u1(0x03);                  // iconst_0
+        code.u1(0x36);                  // istore i
+        code.u1(RANGE_INDEX_LOCAL);
+        code.u1(0x15);                  // iload i
+        code.u1(RANGE_INDEX_LOCAL);
+        code.u1(0x15);                  // iload length
+        code.u1(5);
+        code.u1(0xa2);                  // if_icmpge fin
+        code.u2(loopEnd - branch);
+        code.bytes(iteration.toByteArray());
+        code.u1(0xa7);                  // goto inicio
+        code.u2(loopStart - gotoPosition);
+        code.u1(0xb1);                  // return
+
+        // Marco completo al inicio del ciclo y el mismo marco al final
+        int doubleArray = pool.classRef("[D");
+        frames.u2(2);
+        frames.u1(255);                 // full_frame
+        frames.u2(loopStart);
+        frames.u2(RANGE_INDEX_LOCAL + 1);
+        frames.u1(7);                   // this
+        frames.u2(thisClass);
+        frames.u1(7);                   // xs
+        frames.u2(doubleArray);
+        frames.u1(1);                   // xsOffset
+        frames.u1(7);                   // out
+        frames.u2(doubleArray);
+        frames.u1(1);                   // outOffset
+        frames.u1(1);                   // length
+        frames.u1(1);                   // i
+        frames.u2(0);                   // pila vacía
+        int delta = loopEnd - loopStart - 1;
+        if (delta < 64) {
+            frames.u1(delta);           // same_frame
+        } else {
+            frames.u1(251);             // same_frame_extended
+            frames.u2(delta);
+        }
+        return code.toByteArray();
+    }
+
+    /**
+     * evaluateDual(x, stack, tangents): la misma traducción que {@link ExpressionProgram#executeDual}
+     * pero con la pila del programa resuelta en tiempo de compilación: cada posición es un par de
+     * variables locales (valor y derivada), que el JIT asigna a registros. Escribe la derivada en
+     * tangents[locals] y devuelve el valor; la pila de valores no se usa.
+     */
+    private static byte[] evaluateDualCode(ConstantPool pool, ExpressionProgram program) {
+        if (dualSlot(program.getStackSize()) + 2 > MAX_LOCALS) {
+            throw new UnsupportedOperationException("La expresión es demasiado grande para un método de la JVM");
+        }
+        int[] instructions = program.code();
+        double[] constants = program.constants();
+        int scratch = dualSlot(program.getStackSize());
+        int sp = program.getLocals() - 1;
+
+        ByteWriter code = new ByteWriter();
+        for (int pc = 0; pc < instructions.length; pc++) {
+            int a = dualSlot(sp);
+            int b = dualSlot(sp + 1);
+            switch (instructions[pc]) {
+                case ExpressionProgram.CONST:
+                    pushConstant(code, pool, constants[instructions[++pc]]);
+                    localInstruction(code, 0x39, b);
+                    code.u1(0x0e);      // dconst_0
+                    localInstruction(code, 0x39, b + 2);
+                    sp++;
+                    break;
+                case ExpressionProgram.LOAD_X:
+                    localInstruction(code, 0x18, DUAL_X_LOCAL);
+                    localInstruction(code, 0x39, b);
+                    code.u1(0x0f);      // dconst_1
+                    localInstruction(code, 0x39, b + 2);
+                    sp++;
+                    break;
+                case ExpressionProgram.LOAD_VAR:
+                    unboundVariable(code, pool, instructions[++pc]);
+                    localInstruction(code, 0x39, b);
+                    code.u1(0x0e);      // dconst_0
+                    localInstruction(code, 0x39, b + 2);
+                    sp++;
+                    break;
+                case ExpressionProgram.LOAD:
+                    int load = dualSlot(instructions[++pc]);
+                    copyLocal(code, load, b);
+                    copyLocal(code, load + 2, b + 2);
+                    sp++;
+                    break;
+                case ExpressionProgram.STORE:
+                    int store = dualSlot(instructions[++pc]);
+                    copyLocal(code, a, store);
+                    copyLocal(code, a + 2, store + 2);
+                    break;
+                case ExpressionProgram.NEG:
+                    updateLocal(code, a, 0x77);          // dneg
+                    updateLocal(code, a + 2, 0x77);
+                    break;
+                case ExpressionProgram.ADD:
+                case ExpressionProgram.SUB:
+                    int operation = instructions[pc] == ExpressionProgram.ADD ? 0x63 : 0x67;  // dadd, dsub
+                    b = a;
+                    a = dualSlot(--sp);
+                    combineLocals(code, a, b, operation);
+                    combineLocals(code, a + 2, b + 2, operation);
+                    break;
+                case ExpressionProgram.MUL:
+                    b = a;
+                    a = dualSlot(--sp);
+                    // da*b + a*db, antes de reemplazar a
+                    localInstruction(code, 0x18, a + 2);
+                    localInstruction(code, 0x18, b);
+                    code.u1(0x6b);      // dmul
+                    localInstruction(code, 0x18, a);
+                    localInstruction(code, 0x18, b + 2);
+                    code.u1(0x6b);      // dmul
+                    code.u1(0x63);      // dadd
+                    localInstruction(code, 0x39, a + 2);
+                    combineLocals(code, a, b, 0x6b);
+                    break;
+                case ExpressionProgram.DIV:
+                    b = a;
+                    a = dualSlot(--sp);
+                    // v = a/b, luego (da - v*db)/b
+                    combineLocals(code, a, b, 0x6f);     // ddiv
+                    localInstruction(code, 0x18, a + 2);
+                    localInstruction(code, 0x18, a);
+                    localInstruction(code, 0x18, b + 2);
+                    code.u1(0x6b);      // dmul
+                    code.u1(0x67);      // dsub
+                    localInstruction(code, 0x18, b);
+                    code.u1(0x6f);      // ddiv
+                    localInstruction(code, 0x39, a + 2);
+                    break;
+                case ExpressionProgram.POW:
+                    b = a;
+                    a = dualSlot(--sp);
+                    localInstruction(code, 0x18, a);
+                    localInstruction(code, 0x18, b);
+                    invokeMath(code, pool, "pow", "(DD)D");
+                    localInstruction(code, 0x39, scratch);
+                    localInstruction(code, 0x18, a);
+                    localInstruction(code, 0x18, b);
+                    localInstruction(code, 0x18, scratch);
+                    localInstruction(code, 0x18, a + 2);
+                    localInstruction(code, 0x18, b + 2);
+                    code.u1(0xb8);      // invokestatic ExpressionProgram.powTangent
+                    code.u2(pool.methodRef("ExpressionProgram", "powTangent", "(DDDDD)D"));
+                    localInstruction(code, 0x39, a + 2);
+                    copyLocal(code, scratch, a);
+                    break;
+                case ExpressionProgram.SIN:
+                    // da*cos(a), luego sin(a)
+                    localInstruction(code, 0x18, a + 2);
+                    localInstruction(code, 0x18, a);
+                    invokeMath(code, pool, "cos", "(D)D");
+                    code.u1(0x6b);      // dmul
+                    localInstruction(code, 0x39, a + 2);
+                    applyMath(code, pool, a, "sin");
+                    break;
+                case ExpressionProgram.COS:
+                    // da*(-sin(a)), luego cos(a)
+                    localInstruction(code, 0x18, a + 2);
+                    localInstruction(code, 0x18, a);
+                    invokeMath(code, pool, "sin", "(D)D");
+                    code.u1(0x77);      // dneg
+                    code.u1(0x6b);      // dmul
+                    localInstruction(code, 0x39, a + 2);
+                    applyMath(code, pool, a, "cos");
+                    break;
+                case ExpressionProgram.TAN:
+                    // v = tan(a), luego da*(1 + v*v)
+                    applyMath(code, pool, a, "tan");
+                    localInstruction(code, 0x18, a + 2);
+                    code.u1(0x0f);      // dconst_1
+                    localInstruction(code, 0x18, a);
+                    localInstruction(code, 0x18, a);
+                    code.u1(0x6b);      // dmul
+                    code.u1(0x63);      // dadd
+                    code.u1(0x6b);      // dmul
+                    localInstruction(code, 0x39, a + 2);
+                    break;
+                case ExpressionProgram.SQRT:
+                    // v = sqrt(a), luego da/(2*v)
+                    applyMath(code, pool, a, "sqrt");
+                    localInstruction(code, 0x18, a + 2);
+                    pushConstant(code, pool, 2);
+                    localInstruction(code, 0x18, a);
+                    code.u1(0x6b);      // dmul
+                    code.u1(0x6f);      // ddiv
+                    localInstruction(code, 0x39, a + 2);
+                    break;
+                case ExpressionProgram.LOG:
+                    // da/a, luego log(a)
+                    combineLocals(code, a + 2, a, 0x6f);
+                    applyMath(code, pool, a, "log");
+                    break;
+                case ExpressionProgram.EXP:
+                    // v = exp(a), luego da*v
+                    applyMath(code, pool, a, "exp");
+                    combineLocals(code, a + 2, a, 0x6b);
+                    break;
+                case ExpressionProgram.FMA:
+                    int c = a;
+                    b = dualSlot(--sp);
+                    a = dualSlot(--sp);
+                    // da*b + a*db + dc, antes de reemplazar a
+                    localInstruction(code, 0x18, a + 2);
+                    localInstruction(code, 0x18, b);
+                    code.u1(0x6b);      // dmul
+                    localInstruction(code, 0x18, a);
+                    localInstruction(code, 0x18, b + 2);
+                    code.u1(0x6b);      // dmul
+                    code.u1(0x63);      // dadd
+                    localInstruction(code, 0x18, c + 2);
+                    code.u1(0x63);      // dadd
+                    localInstruction(code, 0x39, a + 2);
+                    localInstruction(code, 0x18, a);
+                    localInstruction(code, 0x18, b);
+                    localInstruction(code, 0x18, c);
+                    invokeMath(code, pool, "fma", "(DDD)D");
+                    localInstruction(code, 0x39, a);
+                    break;
+                default:
+                    throw new UnsupportedOperationException("Código de operación no soportado: " + instructions[pc]);
+            }
+        }
+
+        int result = dualSlot(program.getLocals());
+        localInstruction(code, 0x19, DUAL_TANGENTS_LOCAL);     // aload tangents
+        pushInt(code, program.getLocals());
+        localInstruction(code, 0x18, result + 2);
+        code.u1(0x52);                  // dastore
+        localInstruction(code, 0x18, result);
+        code.u1(0xaf);                  // dreturn
+        checkCodeLength(code.size(), MAX_CODE_LENGTH);
+        return code.toByteArray();
+    }
+
+    /**
+     * Primera variable local del par valor/derivada de una posición de la pila del programa.
+     */
+    private static int dualSlot(int position) {
+        return DUAL_FIRST_LOCAL + position * 4;
+    }
+
+    private static void copyLocal(ByteWriter code, int from, int to) {
+        localInstruction(code, 0x18, from);    // dload
+        localInstruction(code, 0x39, to);      // dstore
+    }
+
+    /**
+     * local = operación(local), para operaciones sobre el tope como dneg.
+     */
+    private static void updateLocal(ByteWriter code, int local, int operation) {
+        localInstruction(code, 0x18, local);
+        code.u1(operation);
+        localInstruction(code, 0x39, local);
+    }
+
+    /**
+     * target = target operación other, para operaciones binarias como dadd o dmul.
+     */
+    private static void combineLocals(ByteWriter code, int target, int other, int operation) {
+        localInstruction(code, 0x18, target);
+        localInstruction(code, 0x18, other);
+        code.u1(operation);
+        localInstruction(code, 0x39, target);
+    }
+
+    private static void applyMath(ByteWriter code, ConstantPool pool, int local, String name) {
+        localInstruction(code, 0x18, local);
+        invokeMath(code, pool, name, "(D)D");
+        localInstruction(code, 0x39, local);
+    }
+
+    private static void pushConstant(ByteWriter code, ConstantPool pool, double value) {
+        if (Double.doubleToRawLongBits(value) == 0L) {
+            code.u1(0x0e);              // dconst_0
+        } else if (value == 1.0) {
+            code.u1(0x0f);              // dconst_1
+        } else {
+            code.u1(0x14);              // ldc2_w
+            code.u2(pool.doubleConstant(value));
+        }
+    }
+
+    private static void pushInt(ByteWriter code, int value) {
+        if (value <= Byte.MAX_VALUE) {
+            code.u1(0x10);              // bipush
+            code.u1(value);
+        } else {
+            code.u1(0x11);              // sipush
+            code.u2(value);
+        }
+    }
+
+    /**
+     * Traduce cada instrucción del programa a su equivalente en la pila de la JVM.
+     *
+     * @param thisClass      La clase generada, dueña de los campos de las lambdas
+     * @param xLocal         La variable local que contiene x
+     * @param firstLocal     La primera variable local libre para las subexpresiones compartidas
+     * @param variablesLocal La variable local con el arreglo de variables, o {@link #NO_VARIABLES}
+     */
+    private static void emitExpression(ByteWriter code, ConstantPool pool, ExpressionProgram program, int thisClass,
+                                       int xLocal, int firstLocal, int variablesLocal) {
+        int[] instructions = program.code();
+        double[] constants = program.constants();
+        FunctionRegistry.Definition[] functions = program.functions();
+        int scratchLocal = firstLocal + program.getLocals() * 2;
+
+        for (int pc = 0; pc < instructions.length; pc++) {
+            switch (instructions[pc]) {
+                case ExpressionProgram.CONST:
+                    pushConstant(code, pool, constants[instructions[++pc]]);
+                    break;
+                case ExpressionProgram.LOAD_X: localInstruction(code, 0x18, xLocal); break;  // dload
+                case ExpressionProgram.LOAD_VAR:
+                    if (variablesLocal == NO_VARIABLES) {
+                        unboundVariable(code, pool, instructions[++pc]);
+                    } else {
+                        localInstruction(code, 0x19, variablesLocal);  // aload
+                        pushInt(code, instructions[++pc]);
+                        code.u1(0x31);  // daload
+                    }
+                    break;
+                case ExpressionProgram.NEG: code.u1(0x77); break;      // dneg
+                case ExpressionProgram.ADD: code.u1(0x63); break;      // dadd
+                case ExpressionProgram.SUB: code.u1(0x67); break;      // dsub
+                case ExpressionProgram.MUL: code.u1(0x6b); break;      // dmul
+                case ExpressionProgram.DIV: code.u1(0x6f); break;      // ddiv
+                case ExpressionProgram.POW: invokeMath(code, pool, "pow", "(DD)D"); break;
+                case ExpressionProgram.FMA: invokeMath(code, pool, "fma", "(DDD)D"); break;
+                case ExpressionProgram.SIN: invokeMath(code, pool, "sin", "(D)D"); break;
+                case ExpressionProgram.COS: invokeMath(code, pool, "cos", "(D)D"); break;
+                case ExpressionProgram.TAN: invokeMath(code, pool, "tan", "(D)D"); break;
+                case ExpressionProgram.SQRT: invokeMath(code, pool, "sqrt", "(D)D"); break;
+                case ExpressionProgram.LOG: invokeMath(code, pool, "log", "(D)D"); break;
+                case ExpressionProgram.EXP: invokeMath(code, pool, "exp", "(D)D"); break;
+                case ExpressionProgram.STORE:
+                    code.u1(0x5c);      // dup2
+                    localInstruction(code, 0x39, firstLocal + instructions[++pc] * 2);  // dstore
+                    break;
+                case ExpressionProgram.LOAD:
+                    localInstruction(code, 0x18, firstLocal + instructions[++pc] * 2);  // dload
+                    break;
+                case ExpressionProgram.CALL1:
+                case ExpressionProgram.CALL2:
+                    int index = instructions[++pc];
+                    emitCall(code, pool, functions[index], index, thisClass, scratchLocal);
+                    break;
+                default:
+                    throw new UnsupportedOperationException("Código de operación no soportado: " + instructions[pc]);
+            }
+        }
+    }
+
+    /**
+     * Llama a una función registrada con sus argumentos en la pila. Las de Math se llaman con
+     * invokestatic; en las lambdas el receptor, leído de su campo, debe quedar debajo de los
+     * argumentos: con un argumento alcanza con dup_x2 y pop, con dos el segundo se guarda antes
+     * en el par auxiliar.
+     */
+    private static void emitCall(ByteWriter code, ConstantPool pool, FunctionRegistry.Definition function,
+                                 int index, int thisClass, int scratchLocal) {
+        String descriptor = function.getArity() == 1 ? "(D)D" : "(DD)D";
+        if (function.getOwner() != null) {
+            code.u1(0xb8);              // invokestatic
+            code.u2(pool.methodRef(function.getOwner(), function.getName(), descriptor));
+            return;
+        }
+        String type = lambdaDescriptor(function);
+        if (function.getArity() == 2) {
+            localInstruction(code, 0x39, scratchLocal);  // dstore
+        }
+        code.u1(0xb2);                  // getstatic
+        code.u2(pool.fieldRef(thisClass, "f" + index, type));
+        code.u1(0x5b);                  // dup_x2
+        code.u1(0x57);                  // pop
+        if (function.getArity() == 2) {
+            localInstruction(code, 0x18, scratchLocal);  // dload
+        }
+        code.u1(0xb9);                  // invokeinterface
+        code.u2(pool.interfaceMethodRef(type.substring(1, type.length() - 1), "applyAsDouble", descriptor));
+        code.u1(function.getArity() == 1 ? 3 : 5);
+        code.u1(0);
+    }
+
+    /**
+     * Apila el resultado de ExpressionProgram.unboundVariable, que falla al ejecutarse.
+     */
+    private static void unboundVariable(ByteWriter code, ConstantPool pool, int slot) {
+        pushInt(code, slot);
+        code.u1(0xb8);                  // invokestatic
+        code.u2(pool.methodRef("ExpressionProgram", "unboundVariable", "(I)D"));
+    }
+
+    private static void checkCodeLength(int length, int limit) {
+        if (length > limit) {
+            throw new UnsupportedOperationException("La expresión es demasiado grande para un método de la JVM");
+        }
+    }
+
+    /**
+     * Emite dload/dstore sobre una variable local, con el prefijo wide si hace falta.
+     */
+    private static void localInstruction(ByteWriter code, int opcode, int index) {
+        if (index > 255) {
+            code.u1(0xc4);              // wide
+            code.u1(opcode);
+            code.u2(index);
+        } else {
+            code.u1(opcode);
+            code.u1(index);
+        }
+    }
+
+    private static void invokeMath(ByteWriter code, ConstantPool pool, String name, String descriptor) {
+        code.u1(0xb8);                  // invokestatic
+        code.u2(pool.methodRef("java/lang/Math", name, descriptor));
+    }
+
+    private static void writeMethod(ByteWriter out, ConstantPool pool, int access, String name, String descriptor,
+                                    int codeAttribute, int maxStack, int maxLocals, byte[] code, byte[] frames) {
+        int stackMapAttribute = frames == null ? 0 : pool.utf8("StackMapTable");
+        int attributesLength = frames == null ? 0 : 6 + frames.length;
+
+        out.u2(access);
+        out.u2(pool.utf8(name));
+        out.u2(pool.utf8(descriptor));
+        out.u2(1);                      // atributos: solo Code
+        out.u2(codeAttribute);
+        out.u4(12 + code.length + attributesLength);
+        out.u2(maxStack);
+        out.u2(maxLocals);
+        out.u4(code.length);
+        out.bytes(code);
+        out.u2(0);                      // tabla de excepciones
+        if (frames == null) {
+            out.u2(0);                  // atributos de Code
+        } else {
+            out.u2(1);
+            out.u2(stackMapAttribute);
+            out.u4(frames.length);
+            out.bytes(frames);
+        }
+    }
+
+    /**
+     * Pool de constantes del archivo de clase, sin entradas duplicadas.
+     */
+    private static final class ConstantPool {
+        private final ByteWriter entries = new ByteWriter();
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private int count = 1;          // la entrada 0 no se usa
+
+        int utf8(String value) {
+            return intern("U" + value, () -> {
+                entries.u1(1);
+                entries.utf(value);
+            }, 1);
+        }
+
+        int classRef(String internalName) {
+            int name = utf8(internalName);
+            return intern("C" + internalName, () -> {
+                entries.u1(7);
+                entries.u2(name);
+            }, 1);
+        }
+
+        int methodRef(String owner, String name, String descriptor) {
+            int ownerIndex = classRef(owner);
+            int nameAndType = nameAndType(name, descriptor);
+            return intern("M" + owner + "." + name + descriptor, () -> {
+                entries.u1(10);
+                entries.u2(ownerIndex);
+                entries.u2(nameAndType);
+            }, 1);
+        }
+
+        int interfaceMethodRef(String owner, String name, String descriptor) {
+            int ownerIndex = classRef(owner);
+            int nameAndType = nameAndType(name, descriptor);
+            return intern("I" + owner + "." + name + descriptor, () -> {
+                entries.u1(11);
+                entries.u2(ownerIndex);
+                entries.u2(nameAndType);
+            }, 1);
+        }
+
+        int fieldRef(int ownerIndex, String name, String descriptor) {
+            int nameAndType = nameAndType(name, descriptor);
+            return intern("F" + ownerIndex + "." + name + ":" + descriptor, () -> {
+                entries.u1(9);
+                entries.u2(ownerIndex);
+                entries.u2(nameAndType);
+            }, 1);
+        }
+
+        int string(String value) {
+            int utf8 = utf8(value);
+            return intern("S" + value, () -> {
+                entries.u1(8);
+                entries.u2(utf8);
+            }, 1);
+        }
+
+        int doubleConstant(double value) {
+            return intern("D" + Double.doubleToRawLongBits(value), () -> {
+                entries.u1(6);
+                entries.u8(Double.doubleToRawLongBits(value));
+            }, 2);                      // los double ocupan dos entradas
+        }
+
+        private int nameAndType(String name, String descriptor) {
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+            return intern("N" + name + ":" + descriptor, () -> {
+                entries.u1(12);
+                entries.u2(nameIndex);
+                entries.u2(descriptorIndex);
+            }, 1);
+        }
+
+        private int intern(String key, Runnable writer, int slots) {
+            Integer existing = indexes.get(key);
+            if (existing != null) return existing;
+            int index = count;
+            writer.run();
+            count += slots;
+            indexes.put(key, index);
+            return index;
+        }
+
+        void writeTo(ByteWriter out) {
+            out.u2(count);
+            out.bytes(entries.toByteArray());
+        }
+    }
+
+    /**
+     * Escritura big-endian de los tipos del formato de clase.
+     */
+    private static final class ByteWriter {
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        void u1(int value) {
+            buffer.write(value);
+        }
+
+        void u2(int value) {
+            buffer.write(value >>> 8);
+            buffer.write(value);
+        }
+
+        void u4(int value) {
+            u2(value >>> 16);
+            u2(value);
+        }
+
+        void u8(long value) {
+            u4((int) (value >>> 32));
+            u4((int) value);
+        }
+
+        void utf(String value) {
+            // Los nombres generados son ASCII, por lo que UTF-8 modificado coincide con UTF-8
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            u2(encoded.length);
+            bytes(encoded);
+        }
+
+        void bytes(byte[] value) {
+            buffer.write(value, 0, value.length);
+        }
+
+        int size() {
+            return buffer.size();
+        }
+
+        byte[] toByteArray() {
+            return buffer.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Eliminación de subexpresiones comunes.
+ * Reconstruye el árbol de modo que los subárboles estructuralmente idénticos sean el mismo
+ * objeto (hash-consing). El resultado es un grafo acíclico: los compiladores detectan los
+ * nodos compartidos por identidad y los calculan una sola vez por evaluación, guardando el
+ * resultado en una variable local.
+ * <p>
+ * Por ejemplo, en (exp(x^2) + 1)/(exp(x^2) - 1) la exponencial se calcula una vez.
+ */
+public final class CommonSubexpressions {
+
+    private final Map<ExpressionNode, ExpressionNode> canonical = new HashMap<>();
+
+    private CommonSubexpressions() {
+    }
+
+    /**
+     * Comparte los subárboles repetidos de un árbol.
+     *
+     * @param tree La raíz del árbol
+     * @return Un grafo equivalente donde cada subexpresión distinta aparece una sola vez
+     */
+    public static ExpressionNode share(ExpressionNode tree) {
+        return new CommonSubexpressions().intern(tree);
+    }
+
+    private ExpressionNode intern(ExpressionNode node) {
+        ExpressionNode existing = canonical.get(node);
+        if (existing != null) return existing;
+
+        ExpressionNode rebuilt = node;
+        if (node instanceof ExpressionNode.Negate) {
+            ExpressionNode.Negate negate = (ExpressionNode.Negate) node;
+            ExpressionNode operand = intern(negate.getOperand());
+            if (operand != negate.getOperand()) rebuilt = new ExpressionNode.Negate(operand);
+        } else if (node instanceof ExpressionNode.Binary) {
+            ExpressionNode.Binary binary = (ExpressionNode.Binary) node;
+            ExpressionNode left = intern(binary.getLeft());
+            ExpressionNode right = intern(binary.getRight());
+            if (left != binary.getLeft() || right != binary.getRight()) {
+                rebuilt = new ExpressionNode.Binary(binary.getOperator(), left, right);
+            }
+        } else if (node instanceof ExpressionNode.Function) {
+            ExpressionNode.Function function = (ExpressionNode.Function) node;
+            ExpressionNode[] arguments = new ExpressionNode[function.getArity()];
+            boolean changed = false;
+            for (int i = 0; i < arguments.length; i++) {
+                arguments[i] = intern(function.getArgument(i));
+                changed |= arguments[i] != function.getArgument(i);
+            }
+            if (changed) {
+                rebuilt = new ExpressionNode.Function(function.getDefinition(), arguments);
+            }
+        }
+
+        canonical.put(rebuilt, rebuilt);
+        return rebuilt;
+    }
+}
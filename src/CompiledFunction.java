@@ -0,0 +1,46 @@
+import java.util.Objects;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Una función de una variable producida por {@link Biseccion#parseFunction(String)}.
+ * Además de la evaluación punto a punto de {@link DoubleUnaryOperator}, permite evaluar un
+ * arreglo de puntos en una sola llamada, de modo que quien muestrea la función sobre una
+ * grilla paga el costo de despacho una vez por lote y no una vez por punto.
+ * <p>
+ * Las funciones que además conocen su derivada implementan {@link DifferentiableFunction}; las
+ * que conservan su expresión simbólica (dual, intervalos, caché compartida),
+ * {@link SymbolicFunction}.
+ */
+@FunctionalInterface
+public interface CompiledFunction extends DoubleUnaryOperator {
+
+    /**
+     * Evalúa la función en xs[xsOffset .. xsOffset+length) y escribe los resultados en
+     * out[outOffset .. outOffset+length). Los arreglos pueden ser el mismo.
+     *
+     * @param xs        Los puntos en los que evaluar
+     * @param xsOffset  La posición del primer punto
+     * @param out       El arreglo donde escribir los resultados
+     * @param outOffset La posición del primer resultado
+     * @param length    La cantidad de puntos
+     * @throws IndexOutOfBoundsException si algún rango excede su arreglo
+     */
+    default void evaluate(double[] xs, int xsOffset, double[] out, int outOffset, int length) {
+        Objects.checkFromIndexSize(xsOffset, length, xs.length);
+        Objects.checkFromIndexSize(outOffset, length, out.length);
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = applyAsDouble(xs[xsOffset + i]);
+        }
+    }
+
+    /**
+     * Evalúa la función en todos los puntos de xs y escribe los resultados en out.
+     *
+     * @param xs  Los puntos en los que evaluar
+     * @param out El arreglo donde escribir los resultados, de al menos xs.length posiciones
+     * @throws IndexOutOfBoundsException si out es más corto que xs
+     */
+    default void evaluate(double[] xs, double[] out) {
+        evaluate(xs, 0, out, 0, xs.length);
+    }
+}
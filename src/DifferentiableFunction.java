@@ -0,0 +1,15 @@
+/**
+ * Una función compilada que conoce su derivada exacta: las expresiones creadas por parseFunction
+ * y las vistas de una expresión como función de una de sus variables
+ * ({@link ExpressionEvaluator#bind(double[], String)}).
+ */
+public interface DifferentiableFunction extends CompiledFunction {
+
+    /**
+     * Devuelve la derivada exacta de la función respecto de su variable, compilada.
+     *
+     * @return La derivada de la función
+     * @throws IllegalArgumentException si la expresión usa una función sin derivada conocida
+     */
+    DifferentiableFunction derivative();
+}
@@ -0,0 +1,266 @@
+import java.util.Arrays;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Mapa de double a double sin boxing, usado como caché de evaluaciones por los métodos
+ * numéricos. Las entradas se guardan en arreglos paralelos (claves como los bits de
+ * {@link Double#doubleToLongBits(double)} y valores), indexados por una tabla de enteros con
+ * direccionamiento abierto y sondeo lineal, de modo que consultar o insertar no reserva memoria
+ * mientras no haga falta crecer. {@link #computeIfAbsent} resuelve el caso de una caché con un
+ * único sondeo, en lugar de containsKey seguido de get.
+ * <p>
+ * El mapa puede tener una cantidad máxima de entradas. Al llenarse descarta una entrada con el
+ * algoritmo CLOCK: cada entrada tiene un bit de referencia que se enciende al consultarla, y una
+ * aguja recorre las entradas en círculo apagando los bits encendidos hasta encontrar una
+ * apagada, que se reemplaza. Las entradas consultadas desde la última vuelta de la aguja
+ * sobreviven; las que nunca se volvieron a pedir se descartan primero. El costo es el de un
+ * bit por entrada, sin listas enlazadas, y el descarte borra la clave de la tabla corriendo
+ * hacia atrás las que la siguen, sin dejar marcas de borrado que alarguen los sondeos.
+ * <p>
+ * Las claves se comparan igual que en {@link Double#equals(Object)}: 0.0 y -0.0 son distintas
+ * y todos los NaN son la misma clave. No es thread-safe.
+ */
+final class DoubleMap {
+
+    private static final int MIN_CAPACITY = 16;
+    // Mayor cantidad de entradas: la tabla tiene el doble de celdas y no puede superar 2^30
+    private static final int MAX_ENTRIES = 1 << 29;
+
+    private final int maxSize;
+    // Las entradas, en el orden en que ocupan su lugar
+    private long[] keys;
+    private double[] values;
+    private boolean[] referenced;
+    // La tabla de direccionamiento abierto: la posición de la entrada más uno, o 0 si está libre
+    private int[] table;
+    private int mask;
+    private int size;
+    private int hand;
+    private long evictions;
+
+    /**
+     * Construye un mapa vacío sin límite de entradas, con espacio para la cantidad indicada sin
+     * crecer.
+     *
+     * @param expectedSize La cantidad de entradas esperada
+     */
+    DoubleMap(int expectedSize) {
+        this(expectedSize, MAX_ENTRIES);
+    }
+
+    /**
+     * Construye un mapa vacío con una cantidad máxima de entradas. Se reserva espacio para la
+     * cantidad esperada y se crece al duplicar hasta el máximo.
+     *
+     * @param expectedSize La cantidad de entradas esperada
+     * @param maxSize      La cantidad máxima de entradas; al superarla se descarta una
+     * @throws IllegalArgumentException si el máximo no es positivo
+     */
+    DoubleMap(int expectedSize, int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("La capacidad de la caché debe ser positiva");
+        }
+        this.maxSize = Math.min(maxSize, MAX_ENTRIES);
+        allocate(Math.max(1, Math.min(expectedSize, this.maxSize)));
+    }
+
+    /**
+     * Indica si el mapa contiene la clave.
+     */
+    boolean containsKey(double key) {
+        return table[slotOf(Double.doubleToLongBits(key))] != 0;
+    }
+
+    /**
+     * Obtiene el valor asociado a la clave, o NaN si no está.
+     */
+    double get(double key) {
+        int entry = table[slotOf(Double.doubleToLongBits(key))] - 1;
+        if (entry < 0) return Double.NaN;
+        referenced[entry] = true;
+        return values[entry];
+    }
+
+    /**
+     * Busca una clave y la marca como consultada.
+     *
+     * @return La posición de su entrada, para leerla con {@link #valueAt(int)}, o -1 si no está
+     */
+    int find(double key) {
+        int entry = table[slotOf(Double.doubleToLongBits(key))] - 1;
+        if (entry >= 0) referenced[entry] = true;
+        return entry;
+    }
+
+    /**
+     * El valor de la entrada en la posición indicada por {@link #find(double)}.
+     */
+    double valueAt(int entry) {
+        return values[entry];
+    }
+
+    /**
+     * Devuelve el valor asociado a la clave o, si no está, lo calcula con la función y lo guarda.
+     * La celda encontrada al buscar se reutiliza para insertar, salvo que haya que crecer o
+     * descartar una entrada.
+     *
+     * @param key      La clave
+     * @param function La función que calcula el valor de una clave ausente
+     * @return El valor de la clave
+     */
+    double computeIfAbsent(double key, DoubleUnaryOperator function) {
+        long bits = Double.doubleToLongBits(key);
+        int slot = slotOf(bits);
+        int entry = table[slot] - 1;
+        if (entry >= 0) {
+            referenced[entry] = true;
+            return values[entry];
+        }
+        double value = function.applyAsDouble(key);
+        insert(slot, bits, value);
+        return value;
+    }
+
+    /**
+     * Asocia un valor a la clave, reemplazando el anterior si lo había.
+     */
+    void put(double key, double value) {
+        long bits = Double.doubleToLongBits(key);
+        int slot = slotOf(bits);
+        int entry = table[slot] - 1;
+        if (entry >= 0) {
+            values[entry] = value;
+            referenced[entry] = true;
+        } else {
+            insert(slot, bits, value);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * La cantidad máxima de entradas.
+     */
+    int maxSize() {
+        return maxSize;
+    }
+
+    /**
+     * La cantidad de entradas descartadas para hacer lugar desde que se creó el mapa.
+     */
+    long evictions() {
+        return evictions;
+    }
+
+    /**
+     * Memoria ocupada por los arreglos del mapa, en bytes (sin contar las cabeceras).
+     */
+    long bytes() {
+        return (long) keys.length * (Long.BYTES + Double.BYTES + 1) + (long) table.length * Integer.BYTES;
+    }
+
+    void clear() {
+        Arrays.fill(table, 0);
+        Arrays.fill(referenced, 0, size, false);
+        size = 0;
+        hand = 0;
+    }
+
+    /**
+     * Guarda una clave ausente, cuya celda libre en la tabla es slot.
+     */
+    private void insert(int slot, long bits, double value) {
+        int entry;
+        if (size < keys.length) {
+            entry = size++;
+        } else if (size < maxSize) {
+            allocate(Math.min(maxSize, keys.length * 2));
+            entry = size++;
+            slot = slotOf(bits);
+        } else {
+            entry = evict();
+            slot = slotOf(bits);
+        }
+        keys[entry] = bits;
+        values[entry] = value;
+        referenced[entry] = false;
+        table[slot] = entry + 1;
+    }
+
+    /**
+     * Avanza la aguja hasta una entrada sin referencia, la quita de la tabla y devuelve su
+     * posición para reutilizarla.
+     */
+    private int evict() {
+        while (referenced[hand]) {
+            referenced[hand] = false;
+            hand = hand + 1 == size ? 0 : hand + 1;
+        }
+        int victim = hand;
+        hand = hand + 1 == size ? 0 : hand + 1;
+        remove(slotOf(keys[victim]));
+        evictions++;
+        return victim;
+    }
+
+    /**
+     * Libera una celda de la tabla y corre hacia atrás las claves de la misma secuencia de
+     * sondeo que quedarían inalcanzables.
+     */
+    private void remove(int slot) {
+        int hole = slot;
+        int next = (slot + 1) & mask;
+        while (table[next] != 0) {
+            int home = hash(keys[table[next] - 1]) & mask;
+            // La clave puede ocupar el hueco si su celda propia no está entre el hueco y ella
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                table[hole] = table[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        table[hole] = 0;
+    }
+
+    /**
+     * Devuelve la celda de la clave, o la primera celda libre de su secuencia de sondeo.
+     */
+    private int slotOf(long bits) {
+        int slot = hash(bits) & mask;
+        int entry;
+        while ((entry = table[slot]) != 0 && keys[entry - 1] != bits) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int hash(long bits) {
+        // Mezcla de Fibonacci: los bits bajos de un double suelen ser ceros
+        long h = bits * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Lleva los arreglos de entradas a la capacidad indicada y reconstruye la tabla.
+     */
+    private void allocate(int capacity) {
+        keys = keys == null ? new long[capacity] : Arrays.copyOf(keys, capacity);
+        values = values == null ? new double[capacity] : Arrays.copyOf(values, capacity);
+        referenced = referenced == null ? new boolean[capacity] : Arrays.copyOf(referenced, capacity);
+        table = new int[tableSizeFor(capacity)];
+        mask = table.length - 1;
+        for (int entry = 0; entry < size; entry++) {
+            table[slotOf(keys[entry])] = entry + 1;
+        }
+    }
+
+    /**
+     * Potencia de dos con al menos el doble de celdas que entradas (factor de carga 0.5).
+     */
+    private static int tableSizeFor(int entries) {
+        long needed = Math.max(MIN_CAPACITY, 2L * entries);
+        return needed >= 1 << 30 ? 1 << 30 : Integer.highestOneBit((int) needed - 1) << 1;
+    }
+}
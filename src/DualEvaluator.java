@@ -0,0 +1,46 @@
+/**
+ * Evaluación de una expresión compilada que calcula en una sola pasada el valor y la derivada
+ * respecto de x, con diferenciación automática hacia adelante (números duales). Sirve para
+ * métodos tipo Newton sobre cualquier expresión cuyas funciones tengan derivada conocida (las
+ * nativas, min y max, que toman la del argumento elegido, y las registradas con derivada): no
+ * construye la derivada simbólica y no reserva memoria por evaluación. Una expresión que aplica
+ * a x una función sin derivada se rechaza al crear el evaluador.
+ * <p>
+ * No es thread-safe: las pilas de valores y derivadas pertenecen al evaluador, y la derivada
+ * queda guardada hasta la siguiente evaluación. Se obtiene con {@link SymbolicFunction#dual()}.
+ */
+public final class DualEvaluator {
+
+    private final ExpressionEvaluator evaluator;
+    private final int result;
+    private final double[] stack;
+    private final double[] tangents;
+    private double derivative;
+
+    DualEvaluator(ExpressionEvaluator evaluator) {
+        ExpressionProgram program = evaluator.getProgram();
+        this.evaluator = evaluator;
+        this.result = program.getLocals();
+        this.stack = program.newStack();
+        this.tangents = program.newStack();
+    }
+
+    /**
+     * Evalúa la función y su derivada en x.
+     *
+     * @param x El punto en el que evaluar
+     * @return El valor de la función en x; la derivada queda disponible en {@link #getDerivative()}
+     */
+    public double evaluate(double x) {
+        double value = evaluator.evaluateDual(x, stack, tangents);
+        derivative = tangents[result];
+        return value;
+    }
+
+    /**
+     * Obtiene la derivada calculada por la última llamada a {@link #evaluate(double)}.
+     */
+    public double getDerivative() {
+        return derivative;
+    }
+}
@@ -0,0 +1,337 @@
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Estrategia con la que un método numérico evalúa su función: directamente o guardando los
+ * valores ya calculados. Cada método recibe la suya en el constructor:
+ * <ul>
+ *   <li>{@link #none}: evalúa siempre. Para funciones baratas (un polinomio, una lambda escrita a
+ *       mano) consultar un mapa cuesta más que recalcular, y los métodos rara vez repiten un
+ *       punto exacto.</li>
+ *   <li>{@link #exact}: guarda cada punto por sus bits y evalúa la función en el punto pedido.
+ *       Solo acierta cuando se repite exactamente el mismo x, como los extremos compartidos o las
+ *       búsquedas repetidas.</li>
+ *   <li>{@link #quantized}: redondea x a una grilla antes de buscarlo y evalúa la función en el
+ *       punto redondeado, de modo que los puntos casi iguales comparten su valor. Es la
+ *       estrategia por omisión de los métodos (con paso tolerancia/100), pero cambia el punto
+ *       en el que se evalúa y paga una división y un redondeo por consulta.</li>
+ *   <li>{@link SharedEvaluationCache}: exacta, thread-safe y compartida por todas las búsquedas
+ *       sobre la misma función.</li>
+ * </ul>
+ * Las estrategias con caché guardan a lo sumo la cantidad de evaluaciones indicada y descartan
+ * las que no se volvieron a pedir (ver {@link DoubleMap}). Salvo la compartida, no son
+ * thread-safe: cada método numérico debe tener la suya. La sección {@code estrategias} de
+ * Benchmark compara las tres para funciones baratas y caras.
+ * <p>
+ * Es la única caché entre los métodos numéricos y la función: las funciones compiladas no
+ * guardan evaluaciones propias. Cada estrategia cuenta sus consultas y evaluaciones
+ * ({@link #getStatistics()}), y los métodos informan las de su última resolución.
+ */
+public interface EvaluationCache {
+
+    /**
+     * Cantidad de evaluaciones para la que se reserva memoria al crear una caché con
+     * {@link #exact} o {@link #quantized}; crece al duplicar hasta su capacidad. Una bisección
+     * evalúa unos cincuenta puntos, así que reservar la capacidad completa costaría más que
+     * resolver.
+     */
+    int INITIAL_SIZE = 64;
+
+    /**
+     * Evalúa la función en x a través de la caché.
+     *
+     * @param x El punto pedido
+     * @return El valor de la función en x (o en el punto de la grilla más cercano a x)
+     */
+    double evaluate(double x);
+
+    /**
+     * La función cuyas evaluaciones se guardan.
+     */
+    DoubleUnaryOperator getFunction();
+
+    /**
+     * La cantidad de evaluaciones guardadas.
+     */
+    int size();
+
+    /**
+     * La cantidad de evaluaciones descartadas por falta de lugar.
+     */
+    long getEvictions();
+
+    /**
+     * La cantidad de consultas ({@link #evaluate} llamados) desde que se creó (o se vació) la caché.
+     */
+    long getLookups();
+
+    /**
+     * La cantidad de consultas que evaluaron la función por no encontrar el punto guardado.
+     */
+    long getMisses();
+
+    /**
+     * La cantidad máxima de evaluaciones guardadas (0 si no guarda ninguna).
+     */
+    int getCapacity();
+
+    /**
+     * La memoria ocupada por las evaluaciones guardadas, en bytes (aproximada).
+     */
+    long getBytes();
+
+    /**
+     * Obtiene una instantánea de las estadísticas de uso.
+     *
+     * @return Aciertos, fallos, descartes, evaluaciones guardadas y memoria
+     */
+    default Statistics getStatistics() {
+        long misses = getMisses();
+        return new Statistics(getLookups() - misses, misses, getEvictions(), size(), getCapacity(), getBytes());
+    }
+
+    /**
+     * Devuelve una estrategia que evalúa la función siempre, sin guardar nada.
+     *
+     * @param function La función
+     * @return La estrategia sin caché
+     */
+    static EvaluationCache none(DoubleUnaryOperator function) {
+        return new None(function);
+    }
+
+    /**
+     * Devuelve una caché que guarda cada punto por sus bits exactos.
+     *
+     * @param function La función
+     * @param capacity La cantidad máxima de evaluaciones guardadas
+     * @return La caché exacta (no thread-safe)
+     * @throws IllegalArgumentException si la capacidad no es positiva
+     */
+    static EvaluationCache exact(DoubleUnaryOperator function, int capacity) {
+        return new Exact(function, capacity, INITIAL_SIZE);
+    }
+
+    /**
+     * Devuelve una caché que redondea cada punto al múltiplo de step más cercano y evalúa la
+     * función en el punto redondeado.
+     *
+     * @param function La función
+     * @param step     El paso de la grilla
+     * @param capacity La cantidad máxima de evaluaciones guardadas
+     * @return La caché cuantizada (no thread-safe)
+     * @throws IllegalArgumentException si el paso o la capacidad no son positivos
+     */
+    static EvaluationCache quantized(DoubleUnaryOperator function, double step, int capacity) {
+        return new Quantized(function, step, capacity, INITIAL_SIZE);
+    }
+
+    /**
+     * Evalúa siempre la función.
+     */
+    final class None implements EvaluationCache {
+        private final DoubleUnaryOperator function;
+        private long lookups;
+
+        None(DoubleUnaryOperator function) {
+            this.function = function;
+        }
+
+        @Override
+        public double evaluate(double x) {
+            lookups++;
+            return function.applyAsDouble(x);
+        }
+
+        @Override
+        public DoubleUnaryOperator getFunction() {
+            return function;
+        }
+
+        @Override
+        public int size() {
+            return 0;
+        }
+
+        @Override
+        public long getEvictions() {
+            return 0;
+        }
+
+        @Override
+        public long getLookups() {
+            return lookups;
+        }
+
+        @Override
+        public long getMisses() {
+            return lookups;
+        }
+
+        @Override
+        public int getCapacity() {
+            return 0;
+        }
+
+        @Override
+        public long getBytes() {
+            return 0;
+        }
+    }
+
+    /**
+     * Guarda los puntos por sus bits exactos en un {@link DoubleMap} acotado.
+     */
+    class Exact implements EvaluationCache {
+        private final DoubleUnaryOperator function;
+        private final DoubleMap entries;
+        private long lookups;
+
+        /**
+         * @param expectedSize La cantidad de evaluaciones para la que se reserva memoria de
+         *                     antemano, de modo que el método no reserve al iterar
+         */
+        Exact(DoubleUnaryOperator function, int capacity, int expectedSize) {
+            this.function = function;
+            this.entries = new DoubleMap(Math.min(expectedSize, capacity), capacity);
+        }
+
+        @Override
+        public double evaluate(double x) {
+            lookups++;
+            // Un único sondeo: devuelve el valor guardado o calcula y guarda el nuevo
+            return entries.computeIfAbsent(x, function);
+        }
+
+        @Override
+        public DoubleUnaryOperator getFunction() {
+            return function;
+        }
+
+        @Override
+        public int size() {
+            return entries.size();
+        }
+
+        @Override
+        public long getEvictions() {
+            return entries.evictions();
+        }
+
+        @Override
+        public long getLookups() {
+            return lookups;
+        }
+
+        /**
+         * Cada fallo guarda una evaluación nueva, ocupando un lugar libre o descartando otra,
+         * así que no hace falta contarlos aparte de las consultas.
+         */
+        @Override
+        public long getMisses() {
+            return entries.size() + entries.evictions();
+        }
+
+        @Override
+        public int getCapacity() {
+            return entries.maxSize();
+        }
+
+        @Override
+        public long getBytes() {
+            return entries.bytes();
+        }
+    }
+
+    /**
+     * Redondea los puntos a una grilla y guarda el valor del punto redondeado.
+     */
+    final class Quantized extends Exact {
+        private final double step;
+
+        Quantized(DoubleUnaryOperator function, double step, int capacity, int expectedSize) {
+            super(function, capacity, expectedSize);
+            if (!(step > 0)) {
+                throw new IllegalArgumentException("El paso de la grilla debe ser positivo");
+            }
+            this.step = step;
+        }
+
+        @Override
+        public double evaluate(double x) {
+            return super.evaluate(Math.round(x / step) * step);
+        }
+
+        /**
+         * El paso de la grilla.
+         */
+        public double getStep() {
+            return step;
+        }
+    }
+
+    /**
+     * Estadísticas de uso de una caché de evaluaciones en un momento dado, o de una resolución.
+     */
+    final class Statistics {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final int size;
+        private final int capacity;
+        private final long bytes;
+
+        public Statistics(long hits, long misses, long evictions, int size, int capacity, long bytes) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.size = size;
+            this.capacity = capacity;
+            this.bytes = bytes;
+        }
+
+        /**
+         * La cantidad de consultas: aciertos más fallos.
+         */
+        public long getLookups() {
+            return hits + misses;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Proporción de consultas resueltas sin evaluar la función, entre 0 y 1.
+         */
+        public double getHitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("aciertos=%d fallos=%d tasa=%.1f%% descartes=%d tamaño=%d/%d bytes=%d",
+                    hits, misses, getHitRate() * 100, evictions, size, capacity, bytes);
+        }
+    }
+}
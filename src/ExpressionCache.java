@@ -0,0 +1,328 @@
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Caché acotada y thread-safe de expresiones compiladas, compartida por todo el proceso.
+ * La clave es el texto de la expresión normalizado (minúsculas y espacios eliminados), de modo
+ * que pedir varias veces la misma expresión devuelve el mismo evaluador sin volver a analizarla
+ * ni a generar bytecode. Cuando se llena descarta la expresión usada hace más tiempo (LRU).
+ * <p>
+ * Cuando el texto no está en la caché, la expresión se analiza y se busca por su huella
+ * canónica ({@link ExpressionFingerprint}): las formas equivalentes de escribirla (x^3-x-2 y
+ * x*x*x-x-2, o 2*x+1 y 1+x*2) reciben el mismo evaluador sin generar bytecode otra vez.
+ * También se pueden fijar evaluadores ({@link #pin}), que no se descartan nunca; así
+ * parseFunction resuelve con lambdas escritas a mano sus casos simples y las formas que
+ * evalúan en el mismo orden que la lambda (no las que la forma de Horner reagrupa).
+ * <p>
+ * Las expresiones nuevas se entregan escalonadas (ver {@link ExpressionEvaluator#tiered}):
+ * se interpretan hasta evaluar {@link #getPromotionThreshold()} puntos y recién entonces se
+ * genera su bytecode, de modo que una resolución aislada no paga la generación de una clase.
+ * El umbral de la caché compartida se configura con la propiedad del sistema
+ * {@code expression.promotionThreshold}; con 0 se genera el bytecode al compilar.
+ * Las estadísticas cuentan cuántas de las funciones guardadas están en cada nivel.
+ * <p>
+ * La compilación de una expresión nueva se hace fuera del candado; si dos hilos compilan la
+ * misma expresión a la vez, ambos reciben el evaluador que se guardó primero.
+ */
+public final class ExpressionCache {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * Puntos evaluados tras los cuales se genera el bytecode de una expresión, del orden de lo
+     * que cuesta generarlo medido en evaluaciones interpretadas (ver la sección
+     * {@code niveles} de Benchmark).
+     */
+    public static final long DEFAULT_PROMOTION_THRESHOLD = 10_000;
+
+    private static final ExpressionCache SHARED = new ExpressionCache(DEFAULT_CAPACITY,
+            Long.getLong("expression.promotionThreshold", DEFAULT_PROMOTION_THRESHOLD));
+
+    private final int capacity;
+    private final long promotionThreshold;
+    private final LinkedHashMap<String, ExpressionEvaluator> entries;
+    private final LinkedHashMap<String, ExpressionEvaluator> fingerprints;
+    // Evaluadores fijados, por huella y por texto normalizado; las claves no se confunden porque
+    // las huellas contienen '$', que no aparece en una expresión válida
+    private final Map<String, ExpressionEvaluator> pinned = new HashMap<>();
+    private long hits;
+    private long misses;
+    private long equivalents;
+    private long evictions;
+
+    /**
+     * Construye una caché con la capacidad indicada y el umbral de compilación por omisión.
+     *
+     * @param capacity La cantidad máxima de expresiones guardadas
+     * @throws IllegalArgumentException si la capacidad no es positiva
+     */
+    public ExpressionCache(int capacity) {
+        this(capacity, DEFAULT_PROMOTION_THRESHOLD);
+    }
+
+    /**
+     * Construye una caché con la capacidad y el umbral de compilación indicados.
+     *
+     * @param capacity           La cantidad máxima de expresiones guardadas
+     * @param promotionThreshold Los puntos evaluados tras los cuales se genera el bytecode de
+     *                           una expresión; con 0 se genera al compilarla
+     * @throws IllegalArgumentException si la capacidad no es positiva o el umbral es negativo
+     */
+    public ExpressionCache(int capacity, long promotionThreshold) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("La capacidad debe ser positiva");
+        }
+        if (promotionThreshold < 0) {
+            throw new IllegalArgumentException("El umbral de compilación no puede ser negativo");
+        }
+        this.capacity = capacity;
+        this.promotionThreshold = promotionThreshold;
+        this.entries = new LinkedHashMap<String, ExpressionEvaluator>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ExpressionEvaluator> eldest) {
+                if (size() > ExpressionCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.fingerprints = new LinkedHashMap<String, ExpressionEvaluator>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ExpressionEvaluator> eldest) {
+                return size() > ExpressionCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Devuelve la caché compartida por todo el proceso, usada por parseFunction.
+     */
+    public static ExpressionCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Devuelve el evaluador de una expresión, compilándola solo si no está en la caché.
+     *
+     * @param expression La expresión matemática en términos de x
+     * @return El evaluador de la expresión, escalonado salvo que el umbral sea 0 (thread-safe)
+     * @throws IllegalArgumentException si la expresión no puede ser analizada
+     */
+    public ExpressionEvaluator get(String expression) {
+        String key = normalize(expression);
+
+        synchronized (this) {
+            ExpressionEvaluator cached = entries.get(key);
+            if (cached == null) {
+                cached = pinned.get(key);
+                if (cached != null) {
+                    entries.put(key, cached);
+                }
+            }
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+        }
+
+        ExpressionNode tree = ExpressionEvaluator.analyze(key, ExpressionParser.DEFAULT_VARIABLES);
+        String fingerprint = ExpressionFingerprint.of(tree);
+
+        synchronized (this) {
+            ExpressionEvaluator equivalent = pinned.get(fingerprint);
+            if (equivalent == null) {
+                equivalent = fingerprints.get(fingerprint);
+            }
+            if (equivalent != null) {
+                equivalents++;
+                entries.put(key, equivalent);
+                return equivalent;
+            }
+            misses++;
+        }
+
+        ExpressionEvaluator compiled = ExpressionEvaluator.tiered(key, tree, ExpressionParser.DEFAULT_VARIABLES,
+                promotionThreshold);
+
+        synchronized (this) {
+            ExpressionEvaluator raced = fingerprints.putIfAbsent(fingerprint, compiled);
+            ExpressionEvaluator result = raced != null ? raced : compiled;
+            entries.put(key, result);
+            return result;
+        }
+    }
+
+    /**
+     * Fija un evaluador en la caché: toda expresión con su misma huella, o escrita como la suya o
+     * como alguna de las formas indicadas, lo recibe. Los evaluadores fijados no se descartan ni
+     * cuentan en la capacidad.
+     *
+     * @param evaluator El evaluador, en términos de x
+     * @param spellings Otras formas de escribir la expresión, no equivalentes bit a bit pero que
+     *                  deben resolverse con este evaluador (por ejemplo e^x para exp(x))
+     */
+    public synchronized void pin(ExpressionEvaluator evaluator, String... spellings) {
+        // La huella es la de su árbol, que puede no estar en forma de Horner como los que se
+        // analizan al buscar; por eso su propia forma también se fija
+        pinned.put(ExpressionFingerprint.of(evaluator.getTree()), evaluator);
+        pinned.put(normalize(evaluator.getExpression()), evaluator);
+        for (String spelling : spellings) {
+            pinned.put(normalize(spelling), evaluator);
+        }
+    }
+
+    /**
+     * Normaliza el texto de una expresión: minúsculas y sin espacios. Solo se conserva un espacio
+     * entre dos letras o dígitos, para no unir tokens distintos ("1 2" no se convierte en "12").
+     *
+     * @param expression La expresión original
+     * @return La clave normalizada
+     */
+    static String normalize(String expression) {
+        String lower = expression.trim().toLowerCase(Locale.ROOT);
+        StringBuilder sb = new StringBuilder(lower.length());
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                sb.append(c);
+                continue;
+            }
+            int next = i + 1;
+            while (next < lower.length() && Character.isWhitespace(lower.charAt(next))) next++;
+            if (sb.length() > 0 && next < lower.length()
+                    && isWordCharacter(sb.charAt(sb.length() - 1)) && isWordCharacter(lower.charAt(next))) {
+                sb.append(' ');
+            }
+            i = next - 1;
+        }
+        return sb.toString();
+    }
+
+    private static boolean isWordCharacter(char c) {
+        return Character.isLetterOrDigit(c) || c == '.';
+    }
+
+    /**
+     * Los puntos evaluados tras los cuales se genera el bytecode de una expresión nueva.
+     */
+    public long getPromotionThreshold() {
+        return promotionThreshold;
+    }
+
+    /**
+     * Descarta todas las expresiones guardadas, salvo las fijadas, y reinicia las estadísticas.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        fingerprints.clear();
+        hits = 0;
+        misses = 0;
+        equivalents = 0;
+        evictions = 0;
+    }
+
+    /**
+     * Obtiene una instantánea de las estadísticas de la caché.
+     *
+     * @return Aciertos, equivalentes, fallos, descartes, tamaño actual y funciones guardadas en
+     *         cada nivel de ejecución
+     */
+    public synchronized Statistics getStatistics() {
+        int interpreted = 0;
+        int compiled = 0;
+        for (ExpressionEvaluator evaluator : fingerprints.values()) {
+            if (evaluator.getTier() == ExpressionEvaluator.Tier.INTERPRETED) {
+                interpreted++;
+            } else if (evaluator.getTier() == ExpressionEvaluator.Tier.COMPILED) {
+                compiled++;
+            }
+        }
+        return new Statistics(hits, equivalents, misses, evictions, entries.size(), capacity, interpreted, compiled);
+    }
+
+    /**
+     * Estadísticas de uso de la caché en un momento dado.
+     */
+    public static final class Statistics {
+        private final long hits;
+        private final long equivalents;
+        private final long misses;
+        private final long evictions;
+        private final int size;
+        private final int capacity;
+        private final int interpreted;
+        private final int compiled;
+
+        public Statistics(long hits, long equivalents, long misses, long evictions, int size, int capacity,
+                          int interpreted, int compiled) {
+            this.hits = hits;
+            this.equivalents = equivalents;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.size = size;
+            this.capacity = capacity;
+            this.interpreted = interpreted;
+            this.compiled = compiled;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        /**
+         * Pedidos con un texto nuevo resueltos por la huella de una expresión equivalente, que
+         * se analizaron pero no se compilaron.
+         */
+        public long getEquivalents() {
+            return equivalents;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        /**
+         * Funciones compiladas por la caché que todavía se interpretan.
+         */
+        public int getInterpreted() {
+            return interpreted;
+        }
+
+        /**
+         * Funciones compiladas por la caché que ya ejecutan bytecode generado.
+         */
+        public int getCompiled() {
+            return compiled;
+        }
+
+        /**
+         * Proporción de pedidos resueltos sin compilar (aciertos y equivalentes), entre 0 y 1.
+         */
+        public double getHitRate() {
+            long requests = hits + equivalents + misses;
+            return requests == 0 ? 0 : (double) (hits + equivalents) / requests;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("aciertos=%d equivalentes=%d fallos=%d tasa=%.1f%% descartes=%d tamaño=%d/%d"
+                            + " interpretadas=%d compiladas=%d",
+                    hits, equivalents, misses, getHitRate() * 100, evictions, size, capacity, interpreted, compiled);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/**
+ * Derivación simbólica de árboles de expresión respecto de una variable (x por omisión); las
+ * demás variables se tratan como constantes, de modo que se obtienen derivadas parciales.
+ * Aplica las reglas de la suma, el producto, el cociente y la cadena a cada nodo; la derivada
+ * de cada función es la que declara su definición en {@link FunctionRegistry}, y la de min y
+ * max, la del argumento que eligen. Los términos
+ * que valen cero por derivar una constante se descartan al construir el árbol, ya que
+ * {@link ExpressionSimplifier} no elimina productos por cero (fallan para infinitos y NaN),
+ * pero en una derivada esos términos son exactamente cero por definición.
+ * El árbol resultante no está simplificado.
+ */
+public final class ExpressionDifferentiator {
+
+    private static final ExpressionNode ZERO = new ExpressionNode.Constant(0);
+    private static final ExpressionNode ONE = new ExpressionNode.Constant(1);
+
+    private ExpressionDifferentiator() {
+    }
+
+    /**
+     * Deriva un árbol de expresión respecto de la variable principal (x).
+     *
+     * @param node La raíz del árbol
+     * @return El árbol de la derivada
+     * @throws IllegalArgumentException si el árbol usa una función sin derivada conocida
+     */
+    public static ExpressionNode differentiate(ExpressionNode node) {
+        return differentiate(node, 0);
+    }
+
+    /**
+     * Deriva un árbol de expresión respecto de la variable de la posición indicada.
+     *
+     * @param node La raíz del árbol
+     * @param slot La posición de la variable en el arreglo de variables
+     * @return El árbol de la derivada parcial
+     * @throws IllegalArgumentException si el árbol usa una función sin derivada conocida
+     */
+    public static ExpressionNode differentiate(ExpressionNode node, int slot) {
+        if (node instanceof ExpressionNode.Constant) {
+            return ZERO;
+        }
+
+        if (node instanceof ExpressionNode.Variable) {
+            return ((ExpressionNode.Variable) node).getSlot() == slot ? ONE : ZERO;
+        }
+
+        if (node instanceof ExpressionNode.Negate) {
+            return negate(differentiate(((ExpressionNode.Negate) node).getOperand(), slot));
+        }
+
+        if (node instanceof ExpressionNode.Binary) {
+            return differentiateBinary((ExpressionNode.Binary) node, slot);
+        }
+
+        if (node instanceof ExpressionNode.Function) {
+            ExpressionNode.Function function = (ExpressionNode.Function) node;
+            if (function.getDefinition().getSelection() != 0) {
+                return differentiateSelection(function, slot);
+            }
+            for (int i = 1; i < function.getArity(); i++) {
+                if (!isZero(differentiate(function.getArgument(i), slot))) {
+                    throw new IllegalArgumentException("No se conoce la derivada de la función: " + function.getName());
+                }
+            }
+            ExpressionNode du = differentiate(function.getArgument(), slot);
+            if (isZero(du)) {
+                // No depende de la variable: no hace falta f'(u), que podría no conocerse
+                return ZERO;
+            }
+            if (function.getArity() > 1) {
+                throw new IllegalArgumentException("No se conoce la derivada de la función: " + function.getName());
+            }
+            // Regla de la cadena: f(u)' = f'(u) * u'
+            return multiply(substitute(function.getDefinition().getDerivativeTree(), function.getArgument()), du);
+        }
+
+        throw new IllegalArgumentException("Nodo desconocido: " + node);
+    }
+
+    private static ExpressionNode differentiateBinary(ExpressionNode.Binary binary, int slot) {
+        ExpressionNode u = binary.getLeft();
+        ExpressionNode v = binary.getRight();
+        ExpressionNode du = differentiate(u, slot);
+        ExpressionNode dv = differentiate(v, slot);
+
+        switch (binary.getOperator()) {
+            case '+':
+                return add(du, dv);
+            case '-':
+                return subtract(du, dv);
+            case '*':
+                // (u*u)' = 2*u*u' (los cuadrados que deja la expansión de potencias)
+                if (u.equals(v)) {
+                    return multiply(multiply(constant(2), u), du);
+                }
+                // (u*v)' = u'*v + u*v'
+                return add(multiply(du, v), multiply(u, dv));
+            case '/':
+                // (u/v)' = (u'*v - u*v') / v^2; con v constante, u'/v
+                if (isZero(dv)) {
+                    return divide(du, v);
+                }
+                return divide(subtract(multiply(du, v), multiply(u, dv)), binary('^', v, constant(2)));
+            case '^':
+                return differentiatePower(u, v, du, dv);
+            default:
+                throw new IllegalArgumentException("Operador desconocido: " + binary.getOperator());
+        }
+    }
+
+    /**
+     * max(u, v)' = u'*s + v'*(1-s) con s = step(u-v), que vale 1 donde max elige u (también en un
+     * empate) y 0 donde elige v; en min, s = step(v-u). Es la derivada del argumento elegido,
+     * salvo que la del otro sea infinita o NaN (0*inf da NaN, como en los demás productos).
+     */
+    private static ExpressionNode differentiateSelection(ExpressionNode.Function function, int slot) {
+        ExpressionNode u = function.getArgument(0);
+        ExpressionNode v = function.getArgument(1);
+        ExpressionNode du = differentiate(u, slot);
+        ExpressionNode dv = differentiate(v, slot);
+        if (isZero(du) && isZero(dv)) {
+            return ZERO;
+        }
+        ExpressionNode difference = function.getDefinition().getSelection() > 0 ? binary('-', u, v) : binary('-', v, u);
+        ExpressionNode step = new ExpressionNode.Function(FunctionRegistry.STEP, difference);
+        return add(multiply(du, step), multiply(dv, subtract(ONE, step)));
+    }
+
+    /**
+     * (u^v)' = v*u^(v-1)*u' si v es constante, u^v*ln(u)*v' si u es constante, y
+     * u^v*(v'*ln(u) + v*u'/u) en general.
+     */
+    private static ExpressionNode differentiatePower(ExpressionNode u, ExpressionNode v,
+                                                     ExpressionNode du, ExpressionNode dv) {
+        ExpressionNode power = binary('^', u, v);
+        if (isZero(dv)) {
+            return multiply(multiply(v, binary('^', u, subtract(v, ONE))), du);
+        }
+        if (isZero(du)) {
+            return multiply(multiply(power, function("log", u)), dv);
+        }
+        return multiply(power, add(multiply(dv, function("log", u)), divide(multiply(v, du), u)));
+    }
+
+    /**
+     * Reemplaza x por u en la derivada de una función, escrita en términos de x en su
+     * definición. Las subexpresiones iguales a la original (exp(u) en la derivada de exp) se
+     * vuelven a compartir al simplificar.
+     */
+    private static ExpressionNode substitute(ExpressionNode node, ExpressionNode u) {
+        if (node instanceof ExpressionNode.Variable) {
+            return u;
+        }
+        if (node instanceof ExpressionNode.Negate) {
+            return new ExpressionNode.Negate(substitute(((ExpressionNode.Negate) node).getOperand(), u));
+        }
+        if (node instanceof ExpressionNode.Binary) {
+            ExpressionNode.Binary binary = (ExpressionNode.Binary) node;
+            return binary(binary.getOperator(), substitute(binary.getLeft(), u), substitute(binary.getRight(), u));
+        }
+        if (node instanceof ExpressionNode.Function) {
+            ExpressionNode.Function function = (ExpressionNode.Function) node;
+            ExpressionNode[] arguments = new ExpressionNode[function.getArity()];
+            for (int i = 0; i < arguments.length; i++) {
+                arguments[i] = substitute(function.getArgument(i), u);
+            }
+            return new ExpressionNode.Function(function.getDefinition(), arguments);
+        }
+        return node;
+    }
+
+    // Constructores que descartan los términos nulos y los factores unitarios
+
+    private static ExpressionNode add(ExpressionNode left, ExpressionNode right) {
+        if (isZero(left)) return right;
+        if (isZero(right)) return left;
+        return binary('+', left, right);
+    }
+
+    private static ExpressionNode subtract(ExpressionNode left, ExpressionNode right) {
+        if (isZero(right)) return left;
+        if (isZero(left)) return negate(right);
+        return binary('-', left, right);
+    }
+
+    private static ExpressionNode multiply(ExpressionNode left, ExpressionNode right) {
+        if (isZero(left) || isZero(right)) return ZERO;
+        if (isOne(left)) return right;
+        if (isOne(right)) return left;
+        return binary('*', left, right);
+    }
+
+    private static ExpressionNode divide(ExpressionNode left, ExpressionNode right) {
+        if (isZero(left)) return ZERO;
+        if (isOne(right)) return left;
+        return binary('/', left, right);
+    }
+
+    private static ExpressionNode negate(ExpressionNode operand) {
+        if (isZero(operand)) return ZERO;
+        return new ExpressionNode.Negate(operand);
+    }
+
+    private static ExpressionNode binary(char operator, ExpressionNode left, ExpressionNode right) {
+        return new ExpressionNode.Binary(operator, left, right);
+    }
+
+    private static ExpressionNode function(String name, ExpressionNode argument) {
+        return new ExpressionNode.Function(FunctionRegistry.lookupFunction(name), argument);
+    }
+
+    private static ExpressionNode constant(double value) {
+        return new ExpressionNode.Constant(value);
+    }
+
+    private static boolean isZero(ExpressionNode node) {
+        return node instanceof ExpressionNode.Constant && ((ExpressionNode.Constant) node).getValue() == 0;
+    }
+
+    private static boolean isOne(ExpressionNode node) {
+        return node instanceof ExpressionNode.Constant && ((ExpressionNode.Constant) node).getValue() == 1;
+    }
+}
@@ -0,0 +1,668 @@
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Una expresión matemática analizada y compilada, lista para evaluarse eficientemente.
+ * La expresión se analiza y simplifica una sola vez (evaluando los polinomios en forma de
+ * Horner y calculando una única vez las subexpresiones repetidas) y se compila a un programa
+ * de pila;
+ * a partir de él se genera bytecode de la JVM, de modo que las expresiones personalizadas
+ * corren a la misma velocidad que las lambdas escritas a mano. Si no es posible generar
+ * bytecode se usa un intérprete del programa.
+ * <p>
+ * Los evaluadores son thread-safe, por lo que {@link ExpressionCache} puede compartirlos entre
+ * todos los hilos del proceso.
+ * <p>
+ * Una expresión puede usar varias variables (por ejemplo x, y, t o parámetros como a y k). Los
+ * nombres se resuelven al compilar a posiciones de un arreglo, de modo que
+ * {@link #applyAsDouble(double[])} evalúa sin buscar nombres. Las demás formas de evaluar
+ * (escalar, por lotes, duales e intervalos) reciben solo la variable principal; para recorrer
+ * otra variable con las demás fijas se usa {@link #bind(double[], String)}.
+ */
+public abstract class ExpressionEvaluator implements SymbolicFunction {
+
+    // La Vector API es un módulo incubado: VectorEvaluator está en su propia carpeta de fuentes
+    // (src-vector), que se compila aparte con --add-modules jdk.incubator.vector, y se carga por
+    // reflexión solo si el módulo y la clase están disponibles; null si no lo están
+    private static final Constructor<?> VECTOR_EVALUATOR = vectorEvaluator();
+
+    private final String expression;
+    private final ExpressionNode tree;
+    private final ExpressionProgram program;
+
+    // Las derivadas parciales, una por variable, se compilan la primera vez que se piden
+    private final AtomicReferenceArray<ExpressionEvaluator> derivatives;
+    // La caché de evaluaciones compartida, creada la primera vez que se pide
+    private SharedEvaluationCache sharedCache;
+
+    /**
+     * Constructor para las implementaciones (intérprete y clases generadas).
+     *
+     * @param expression La expresión original
+     * @param tree       El árbol de la expresión
+     * @param program    El programa de pila compilado del árbol
+     */
+    protected ExpressionEvaluator(String expression, ExpressionNode tree, ExpressionProgram program) {
+        this.expression = expression;
+        this.tree = tree;
+        this.program = program;
+        this.derivatives = new AtomicReferenceArray<>(program.getVariables().size());
+    }
+
+    /**
+     * Analiza y compila una expresión.
+     *
+     * @param expression La expresión matemática en términos de x
+     * @return Un evaluador de la expresión
+     * @throws IllegalArgumentException si la expresión no puede ser analizada
+     */
+    public static ExpressionEvaluator compile(String expression) {
+        return compile(expression, ExpressionParser.DEFAULT_VARIABLES);
+    }
+
+    /**
+     * Analiza y compila una expresión en varias variables.
+     *
+     * @param expression La expresión matemática
+     * @param variables  Los nombres de las variables; la primera es la variable principal
+     * @return Un evaluador de la expresión
+     * @throws IllegalArgumentException si la expresión no puede ser analizada o algún nombre de
+     *                                  variable no es válido
+     */
+    public static ExpressionEvaluator compile(String expression, String... variables) {
+        return compile(expression, Arrays.asList(variables.clone()));
+    }
+
+    /**
+     * Analiza y compila una expresión con opciones de compilación.
+     *
+     * @param expression La expresión matemática en términos de x
+     * @param options    Las opciones de compilación; las derivadas se compilan con las mismas
+     * @return Un evaluador de la expresión
+     * @throws IllegalArgumentException si la expresión no puede ser analizada
+     */
+    public static ExpressionEvaluator compile(String expression, CompilerOptions options) {
+        return compile(expression, ExpressionParser.DEFAULT_VARIABLES, options);
+    }
+
+    /**
+     * Analiza y compila una expresión en varias variables con opciones de compilación.
+     *
+     * @param expression La expresión matemática
+     * @param options    Las opciones de compilación; las derivadas se compilan con las mismas
+     * @param variables  Los nombres de las variables; la primera es la variable principal
+     * @return Un evaluador de la expresión
+     * @throws IllegalArgumentException si la expresión no puede ser analizada o algún nombre de
+     *                                  variable no es válido
+     */
+    public static ExpressionEvaluator compile(String expression, CompilerOptions options, String... variables) {
+        return compile(expression, Arrays.asList(variables.clone()), options);
+    }
+
+    private static ExpressionEvaluator compile(String expression, List<String> variables) {
+        return compile(expression, variables, CompilerOptions.DEFAULT);
+    }
+
+    private static ExpressionEvaluator compile(String expression, List<String> variables, CompilerOptions options) {
+        return compile(expression, analyze(expression, variables), variables, options);
+    }
+
+    /**
+     * Compila un árbol ya simplificado y con sus subexpresiones compartidas.
+     */
+    static ExpressionEvaluator compile(String expression, ExpressionNode tree, List<String> variables) {
+        return compile(expression, tree, variables, CompilerOptions.DEFAULT);
+    }
+
+    private static ExpressionEvaluator compile(String expression, ExpressionNode tree, List<String> variables,
+                                               CompilerOptions options) {
+        ExpressionProgram program = ExpressionProgram.compile(tree, variables, options);
+        try {
+            return BytecodeCompiler.compile(expression, tree, program);
+        } catch (UnsupportedOperationException e) {
+            return new Interpreted(expression, tree, program);
+        }
+    }
+
+    /**
+     * Analiza una expresión y devuelve un evaluador escalonado: empieza interpretando el programa
+     * de pila, que no cuesta nada preparar, y genera bytecode recién cuando la expresión lleva
+     * evaluados tantos puntos como indica el umbral, igual que la JVM compila solo los métodos
+     * calientes. Una resolución aislada no paga la generación de la clase; una expresión que se
+     * evalúa millones de veces pasa pronto al bytecode. Sus derivadas también son escalonadas.
+     *
+     * @param expression         La expresión matemática en términos de x
+     * @param promotionThreshold La cantidad de puntos evaluados tras la cual se genera bytecode;
+     *                           con 0 se genera al compilar
+     * @return Un evaluador de la expresión
+     * @throws IllegalArgumentException si la expresión no puede ser analizada o el umbral es
+     *                                  negativo
+     */
+    public static ExpressionEvaluator tiered(String expression, long promotionThreshold) {
+        return tiered(expression, analyze(expression, ExpressionParser.DEFAULT_VARIABLES),
+                ExpressionParser.DEFAULT_VARIABLES, promotionThreshold);
+    }
+
+    /**
+     * Escalona un árbol ya simplificado y con sus subexpresiones compartidas.
+     */
+    static ExpressionEvaluator tiered(String expression, ExpressionNode tree, List<String> variables,
+                                      long promotionThreshold) {
+        if (promotionThreshold < 0) {
+            throw new IllegalArgumentException("El umbral de compilación no puede ser negativo");
+        }
+        if (promotionThreshold == 0) {
+            return compile(expression, tree, variables);
+        }
+        return new Tiered(expression, tree, ExpressionProgram.compile(tree, variables, CompilerOptions.DEFAULT),
+                promotionThreshold);
+    }
+
+    /**
+     * Analiza y compila una expresión sin generar bytecode.
+     *
+     * @param expression La expresión matemática en términos de x
+     * @return Un evaluador que interpreta el programa de pila
+     * @throws IllegalArgumentException si la expresión no puede ser analizada
+     */
+    public static ExpressionEvaluator interpret(String expression) {
+        ExpressionNode tree = analyze(expression, ExpressionParser.DEFAULT_VARIABLES);
+        return new Interpreted(expression, tree, ExpressionProgram.compile(tree));
+    }
+
+    /**
+     * Crea un evaluador que usa una implementación escrita a mano de la expresión. El árbol y el
+     * programa se conservan para derivar la expresión o evaluarla de otras formas. El árbol no
+     * se lleva a la forma de Horner, de modo que evalúa en el mismo orden que la implementación
+     * (x*x*x - x - 2, no (x*x - 1)*x - 2) y su huella solo coincide con la de expresiones que
+     * dan los mismos bits.
+     *
+     * @param expression     La expresión matemática en términos de x
+     * @param implementation Una implementación equivalente de la expresión
+     * @return Un evaluador que delega en la implementación
+     * @throws IllegalArgumentException si la expresión no puede ser analizada
+     */
+    static ExpressionEvaluator handwritten(String expression, DoubleUnaryOperator implementation) {
+        ExpressionNode tree = CommonSubexpressions.share(ExpressionSimplifier.simplify(
+                ExpressionParser.parse(expression, ExpressionParser.DEFAULT_VARIABLES)));
+        return new Handwritten(expression, tree, ExpressionProgram.compile(tree), implementation);
+    }
+
+    /**
+     * Analiza la expresión, lleva sus polinomios a la forma de Horner, simplifica el árbol
+     * resultante y comparte sus subexpresiones repetidas.
+     */
+    static ExpressionNode analyze(String expression, List<String> variables) {
+        ExpressionNode tree = HornerForm.rewrite(ExpressionParser.parse(expression, variables));
+        return CommonSubexpressions.share(ExpressionSimplifier.simplify(tree));
+    }
+
+    /**
+     * Evalúa la expresión para los valores de todas sus variables, leyendo cada una de su
+     * posición en el arreglo.
+     *
+     * @param variables Los valores de las variables, en el orden de {@link #getVariables()}
+     * @return El valor de la expresión
+     */
+    public abstract double applyAsDouble(double[] variables);
+
+    @Override
+    public final void evaluate(double[] xs, int xsOffset, double[] out, int outOffset, int length) {
+        Objects.checkFromIndexSize(xsOffset, length, xs.length);
+        Objects.checkFromIndexSize(outOffset, length, out.length);
+        evaluateRange(xs, xsOffset, out, outOffset, length);
+    }
+
+    /**
+     * Evalúa un lote de puntos con los rangos ya validados. Las clases generadas y el intérprete
+     * lo sobrescriben para no pagar una llamada por punto.
+     */
+    protected void evaluateRange(double[] xs, int xsOffset, double[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = applyAsDouble(xs[xsOffset + i]);
+        }
+    }
+
+    /**
+     * Devuelve una función equivalente cuya evaluación por lotes usa instrucciones SIMD de la
+     * Vector API. Si el módulo {@code jdk.incubator.vector} no está disponible, o no se compiló
+     * la carpeta src-vector, devuelve este mismo evaluador, que evalúa los lotes de forma escalar.
+     * El resultado no es thread-safe.
+     *
+     * @return Una función para evaluar lotes grandes
+     */
+    public CompiledFunction vectorized() {
+        if (VECTOR_EVALUATOR == null) {
+            return this;
+        }
+        try {
+            return (CompiledFunction) VECTOR_EVALUATOR.newInstance(this);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("No se pudo crear el evaluador vectorial", e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("No se pudo crear el evaluador vectorial", e);
+        }
+    }
+
+    /**
+     * Busca el constructor de VectorEvaluator, que solo puede cargarse con el módulo de la Vector
+     * API y si se compiló la carpeta src-vector.
+     */
+    private static Constructor<?> vectorEvaluator() {
+        if (!ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            return null;
+        }
+        try {
+            return Class.forName("VectorEvaluator").getDeclaredConstructor(ExpressionEvaluator.class);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Devuelve la derivada exacta de la expresión respecto de x, obtenida derivando el árbol de
+     * forma simbólica, simplificada y compilada igual que cualquier otra expresión. Se compila una
+     * sola vez por evaluador.
+     *
+     * @return Un evaluador de la derivada
+     * @throws IllegalArgumentException si la expresión usa una función sin derivada conocida
+     */
+    @Override
+    public ExpressionEvaluator derivative() {
+        return partialDerivative(0);
+    }
+
+    /**
+     * Devuelve la derivada parcial exacta de la expresión respecto de una de sus variables, con
+     * las demás fijas. La derivada tiene las mismas variables que la expresión.
+     *
+     * @param variable El nombre de la variable
+     * @return Un evaluador de la derivada parcial
+     * @throws IllegalArgumentException si la variable no es de la expresión o la expresión usa
+     *                                  una función sin derivada conocida
+     */
+    public ExpressionEvaluator derivative(String variable) {
+        return partialDerivative(getSlot(variable));
+    }
+
+    private ExpressionEvaluator partialDerivative(int slot) {
+        ExpressionEvaluator result = derivatives.get(slot);
+        if (result == null) {
+            ExpressionNode tree = CommonSubexpressions.share(
+                    ExpressionSimplifier.simplify(ExpressionDifferentiator.differentiate(this.tree, slot)));
+            result = compileDerivative(tree.toString(), tree);
+            derivatives.set(slot, result);
+        }
+        return result;
+    }
+
+    /**
+     * Compila una derivada con las mismas opciones que la expresión. El evaluador escalonado la
+     * escalona con su mismo umbral.
+     */
+    ExpressionEvaluator compileDerivative(String expression, ExpressionNode tree) {
+        return compile(expression, tree, getVariables(), program.getOptions());
+    }
+
+    /**
+     * Devuelve la caché de evaluaciones compartida de la expresión, creada la primera vez que se
+     * pide con la capacidad por omisión. Como la caché de expresiones devuelve el mismo
+     * evaluador para la misma expresión, todos los métodos numéricos que resuelven la misma
+     * expresión comparten la misma caché.
+     *
+     * @return La caché compartida (thread-safe)
+     */
+    @Override
+    public synchronized SharedEvaluationCache sharedCache() {
+        if (sharedCache == null) {
+            sharedCache = new SharedEvaluationCache(this);
+        }
+        return sharedCache;
+    }
+
+    /**
+     * Devuelve una función de una sola variable que evalúa la expresión con las demás variables
+     * tomadas del arreglo indicado: cada llamada escribe su argumento en la posición de la
+     * variable y evalúa con {@link #applyAsDouble(double[])}. Cambiar los valores del arreglo
+     * cambia la función sin volver a compilarla, lo que sirve para recorrer parámetros.
+     * La función escribe en el arreglo, por lo que no es thread-safe.
+     *
+     * @param variables Los valores de las variables, en el orden de {@link #getVariables()}
+     * @param variable  El nombre de la variable que recibe el argumento de la función
+     * @return Una función de la variable indicada; su derivada es la derivada parcial
+     * @throws IllegalArgumentException si la variable no es de la expresión o el arreglo no tiene
+     *                                  una posición por variable
+     */
+    public DifferentiableFunction bind(double[] variables, String variable) {
+        if (variables.length != getVariables().size()) {
+            throw new IllegalArgumentException("Se esperaban " + getVariables().size() + " valores de variables");
+        }
+        return new Bound(this, variables, variable);
+    }
+
+    /**
+     * Obtiene la posición de una variable en el arreglo de variables.
+     *
+     * @throws IllegalArgumentException si la variable no es de la expresión
+     */
+    public int getSlot(String variable) {
+        int slot = getVariables().indexOf(variable);
+        if (slot < 0) {
+            throw new IllegalArgumentException("La expresión no tiene la variable: " + variable);
+        }
+        return slot;
+    }
+
+    /**
+     * Devuelve un evaluador que calcula el valor y la derivada en una sola pasada con números
+     * duales, ejecutando el programa de pila de la expresión.
+     * El resultado no es thread-safe.
+     *
+     * @return Un evaluador con números duales
+     * @throws IllegalArgumentException si la expresión aplica a x una función sin derivada
+     *                                  conocida, en lugar de fallar al evaluar
+     */
+    @Override
+    public DualEvaluator dual() {
+        for (FunctionRegistry.Definition function : program.functions()) {
+            if (!function.hasDerivative()) {
+                // Falla igual que la evaluación: solo si la función recibe un argumento que depende de x
+                ExpressionDifferentiator.differentiate(tree);
+                break;
+            }
+        }
+        return new DualEvaluator(this);
+    }
+
+    /**
+     * Devuelve un evaluador que acota la expresión sobre intervalos, interpretando su programa
+     * de pila con aritmética de intervalos. Con matemática rápida las cotas son las de la
+     * expresión con las funciones exactas.
+     * El resultado no es thread-safe.
+     *
+     * @return Un evaluador de intervalos
+     */
+    @Override
+    public IntervalEvaluator interval() {
+        CompilerOptions options = program.getOptions();
+        if (options.isFastMath()) {
+            return new IntervalEvaluator(ExpressionProgram.compile(tree, getVariables(), options.withFastMath(false)));
+        }
+        return new IntervalEvaluator(program);
+    }
+
+    /**
+     * Evalúa la expresión y su derivada con números duales, escribiendo la derivada en
+     * tangents[getProgram().getLocals()]. Por omisión interpreta el programa de pila; las clases
+     * generadas lo sobrescriben con bytecode que no usa las pilas.
+     *
+     * @param x        El punto en el que evaluar
+     * @param stack    Una pila de valores de {@link ExpressionProgram#getStackSize()} posiciones
+     * @param tangents Una pila de derivadas del mismo tamaño
+     * @return El valor de la expresión en x
+     */
+    protected double evaluateDual(double x, double[] stack, double[] tangents) {
+        return program.executeDual(x, stack, tangents);
+    }
+
+    /**
+     * Indica cómo se evalúa la expresión en este momento. Las clases generadas están compiladas;
+     * el evaluador escalonado informa el nivel en el que se encuentra.
+     */
+    public Tier getTier() {
+        return Tier.COMPILED;
+    }
+
+    /**
+     * Indica si la Vector API está disponible en esta JVM y se compiló el evaluador que la usa.
+     */
+    public static boolean isVectorApiAvailable() {
+        return VECTOR_EVALUATOR != null;
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    public ExpressionNode getTree() {
+        return tree;
+    }
+
+    public ExpressionProgram getProgram() {
+        return program;
+    }
+
+    /**
+     * La huella canónica de la expresión, igual para todas sus formas equivalentes.
+     */
+    public String getFingerprint() {
+        return ExpressionFingerprint.of(tree);
+    }
+
+    /**
+     * Los nombres de las variables, en orden de posición; la primera es la variable principal.
+     */
+    public List<String> getVariables() {
+        return program.getVariables();
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    /**
+     * Los niveles de ejecución de un evaluador (ver {@link #getTier()}).
+     */
+    public enum Tier {
+        /** Se interpreta el programa de pila. */
+        INTERPRETED,
+        /** Se ejecuta bytecode generado para la expresión. */
+        COMPILED,
+        /** Se delega en una lambda escrita a mano. */
+        HANDWRITTEN
+    }
+
+    /**
+     * Evaluador que delega en una lambda escrita a mano (los atajos de parseFunction).
+     */
+    static final class Handwritten extends ExpressionEvaluator {
+        private final DoubleUnaryOperator implementation;
+
+        Handwritten(String expression, ExpressionNode tree, ExpressionProgram program,
+                    DoubleUnaryOperator implementation) {
+            super(expression, tree, program);
+            this.implementation = implementation;
+        }
+
+        @Override
+        public double applyAsDouble(double x) {
+            return implementation.applyAsDouble(x);
+        }
+
+        @Override
+        public double applyAsDouble(double[] variables) {
+            return implementation.applyAsDouble(variables[0]);
+        }
+
+        @Override
+        protected void evaluateRange(double[] xs, int xsOffset, double[] out, int outOffset, int length) {
+            for (int i = 0; i < length; i++) {
+                out[outOffset + i] = implementation.applyAsDouble(xs[xsOffset + i]);
+            }
+        }
+
+        @Override
+        public Tier getTier() {
+            return Tier.HANDWRITTEN;
+        }
+    }
+
+    /**
+     * Evaluador que ejecuta el programa de pila sobre una pila preasignada.
+     * Los lotes se ejecutan por columnas: cada instrucción se aplica a un bloque de puntos.
+     * Cada hilo usa sus propias pilas, reservadas la primera vez que evalúa.
+     */
+    static final class Interpreted extends ExpressionEvaluator {
+        private final ThreadLocal<double[]> stacks;
+        private final ThreadLocal<double[][]> batchStacks;
+
+        Interpreted(String expression, ExpressionNode tree, ExpressionProgram program) {
+            super(expression, tree, program);
+            this.stacks = ThreadLocal.withInitial(program::newStack);
+            this.batchStacks = ThreadLocal.withInitial(program::newBatchStack);
+        }
+
+        @Override
+        public double applyAsDouble(double x) {
+            return getProgram().execute(x, stacks.get());
+        }
+
+        @Override
+        public double applyAsDouble(double[] variables) {
+            return getProgram().execute(variables, stacks.get());
+        }
+
+        @Override
+        protected void evaluateRange(double[] xs, int xsOffset, double[] out, int outOffset, int length) {
+            getProgram().executeBatch(xs, xsOffset, out, outOffset, length, batchStacks.get());
+        }
+
+        @Override
+        public Tier getTier() {
+            return Tier.INTERPRETED;
+        }
+    }
+
+    /**
+     * Evaluador escalonado (ver {@link #tiered(String, long)}): delega en un intérprete hasta
+     * que la cuenta de puntos evaluados alcanza el umbral, y entonces genera el bytecode y
+     * delega en él. Los valores no cambian al promoverse, ya que el intérprete y el bytecode
+     * ejecutan el mismo programa con las mismas operaciones.
+     * <p>
+     * La cuenta no se sincroniza: entre hilos pueden perderse incrementos, lo que solo demora
+     * la promoción. La generación se hace una sola vez, bajo el candado del evaluador; los demás
+     * hilos siguen interpretando mientras tanto. Una vez promovido, cada evaluación cuesta una
+     * lectura volátil y una llamada más que el bytecode directo.
+     */
+    static final class Tiered extends ExpressionEvaluator {
+        private final long promotionThreshold;
+        private final Interpreted interpreter;
+        // El intérprete inicial mientras se cuenta; luego el bytecode, o un segundo intérprete
+        // si no pudo generarse, para dejar de contar
+        private volatile ExpressionEvaluator target;
+        private long invocations;
+
+        Tiered(String expression, ExpressionNode tree, ExpressionProgram program, long promotionThreshold) {
+            super(expression, tree, program);
+            this.promotionThreshold = promotionThreshold;
+            this.interpreter = new Interpreted(expression, tree, program);
+            this.target = interpreter;
+        }
+
+        @Override
+        public double applyAsDouble(double x) {
+            return count(1).applyAsDouble(x);
+        }
+
+        @Override
+        public double applyAsDouble(double[] variables) {
+            return count(1).applyAsDouble(variables);
+        }
+
+        @Override
+        protected void evaluateRange(double[] xs, int xsOffset, double[] out, int outOffset, int length) {
+            count(length).evaluateRange(xs, xsOffset, out, outOffset, length);
+        }
+
+        @Override
+        protected double evaluateDual(double x, double[] stack, double[] tangents) {
+            return count(1).evaluateDual(x, stack, tangents);
+        }
+
+        /**
+         * Suma puntos a la cuenta mientras se interpreta y promueve al alcanzar el umbral.
+         *
+         * @return El evaluador en el que delegar
+         */
+        private ExpressionEvaluator count(int points) {
+            ExpressionEvaluator current = target;
+            if (current == interpreter && (invocations += points) >= promotionThreshold) {
+                return promote();
+            }
+            return current;
+        }
+
+        private synchronized ExpressionEvaluator promote() {
+            if (target == interpreter) {
+                try {
+                    target = BytecodeCompiler.compile(getExpression(), getTree(), getProgram());
+                } catch (UnsupportedOperationException e) {
+                    target = new Interpreted(getExpression(), getTree(), getProgram());
+                }
+            }
+            return target;
+        }
+
+        @Override
+        ExpressionEvaluator compileDerivative(String expression, ExpressionNode tree) {
+            ExpressionProgram program = ExpressionProgram.compile(tree, getVariables(), getProgram().getOptions());
+            return new Tiered(expression, tree, program, promotionThreshold);
+        }
+
+        @Override
+        public Tier getTier() {
+            return target.getTier();
+        }
+
+        /**
+         * La cantidad de puntos evaluados antes de la promoción; deja de contar al promoverse.
+         */
+        long getInvocations() {
+            return invocations;
+        }
+
+        long getPromotionThreshold() {
+            return promotionThreshold;
+        }
+    }
+
+    /**
+     * Una expresión vista como función de una de sus variables, con las demás tomadas de un
+     * arreglo (ver {@link #bind(double[], String)}).
+     */
+    private static final class Bound implements DifferentiableFunction {
+        private final ExpressionEvaluator evaluator;
+        private final double[] variables;
+        private final String variable;
+        private final int slot;
+
+        Bound(ExpressionEvaluator evaluator, double[] variables, String variable) {
+            this.evaluator = evaluator;
+            this.variables = variables;
+            this.variable = variable;
+            this.slot = evaluator.getSlot(variable);
+        }
+
+        @Override
+        public double applyAsDouble(double value) {
+            variables[slot] = value;
+            return evaluator.applyAsDouble(variables);
+        }
+
+        @Override
+        public DifferentiableFunction derivative() {
+            return evaluator.derivative(variable).bind(variables, variable);
+        }
+
+        @Override
+        public String toString() {
+            return evaluator + " en " + variable;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Huella canónica de un árbol de expresión: un texto que identifica la función que calcula el
+ * árbol, igual para todas las formas de escribirla que dan el mismo resultado bit a bit.
+ * <p>
+ * Se calcula sobre el árbol ya simplificado, que normaliza las constantes (2, 2.0 y 2e0 son la
+ * misma; 2*pi se pliega), los espacios y las potencias enteras (x^3 y x*x*x dan el mismo
+ * producto). Además, los operandos de las sumas y productos se ordenan, ya que a+b y b+a son
+ * iguales en punto flotante. No se reagrupan sumas ni productos encadenados: (a+b)+c y a+(b+c)
+ * pueden diferir en el redondeo, por lo que tienen huellas distintas.
+ * <p>
+ * Las variables se identifican por su posición y las funciones por su nombre, que en
+ * {@link FunctionRegistry} no puede redefinirse.
+ */
+public final class ExpressionFingerprint {
+
+    // Los subárboles compartidos (ver CommonSubexpressions) se recorren una sola vez
+    private final Map<ExpressionNode, String> memo = new IdentityHashMap<>();
+
+    private ExpressionFingerprint() {
+    }
+
+    /**
+     * Calcula la huella de un árbol simplificado.
+     *
+     * @param tree La raíz del árbol, tal como la deja {@link ExpressionSimplifier}
+     * @return La huella canónica
+     */
+    public static String of(ExpressionNode tree) {
+        return new ExpressionFingerprint().fingerprint(tree);
+    }
+
+    private String fingerprint(ExpressionNode node) {
+        String cached = memo.get(node);
+        if (cached != null) return cached;
+
+        String result;
+        if (node instanceof ExpressionNode.Constant) {
+            // Double.toString distingue -0.0 de 0.0 y escribe cada valor de una única forma
+            result = Double.toString(((ExpressionNode.Constant) node).getValue());
+        } else if (node instanceof ExpressionNode.Variable) {
+            result = "$" + ((ExpressionNode.Variable) node).getSlot();
+        } else if (node instanceof ExpressionNode.Negate) {
+            result = "-(" + fingerprint(((ExpressionNode.Negate) node).getOperand()) + ")";
+        } else if (node instanceof ExpressionNode.Binary) {
+            ExpressionNode.Binary binary = (ExpressionNode.Binary) node;
+            String left = fingerprint(binary.getLeft());
+            String right = fingerprint(binary.getRight());
+            char operator = binary.getOperator();
+            if ((operator == '+' || operator == '*') && left.compareTo(right) > 0) {
+                String swap = left;
+                left = right;
+                right = swap;
+            }
+            result = "(" + left + operator + right + ")";
+        } else if (node instanceof ExpressionNode.Function) {
+            ExpressionNode.Function function = (ExpressionNode.Function) node;
+            StringBuilder sb = new StringBuilder(function.getName()).append('(');
+            for (int i = 0; i < function.getArity(); i++) {
+                if (i > 0) sb.append(',');
+                sb.append(fingerprint(function.getArgument(i)));
+            }
+            result = sb.append(')').toString();
+        } else {
+            throw new IllegalArgumentException("Nodo desconocido: " + node);
+        }
+
+        memo.put(node, result);
+        return result;
+    }
+}
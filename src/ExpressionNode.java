@@ -0,0 +1,339 @@
+import java.util.Arrays;
+
+/**
+ * Nodo del árbol sintáctico de una expresión matemática en términos de x (y, opcionalmente,
+ * de otras variables identificadas por su posición en un arreglo).
+ * El árbol se construye una única vez al analizar la expresión; evaluarlo es solo
+ * un recorrido sobre valores double, sin volver a procesar texto.
+ * <p>
+ * Los nodos son inmutables y se comparan estructuralmente: dos subárboles con la misma
+ * forma son iguales según {@link #equals(Object)}, lo que permite detectar subexpresiones
+ * repetidas. El hash se calcula una vez al construir el nodo.
+ */
+public abstract class ExpressionNode {
+    private final int hash;
+
+    protected ExpressionNode(int hash) {
+        this.hash = hash;
+    }
+
+    /**
+     * Evalúa el subárbol para un valor de x.
+     *
+     * @param x El valor de la variable
+     * @return El valor del subárbol en x
+     */
+    public abstract double evaluate(double x);
+
+    /**
+     * Evalúa el subárbol con los valores de todas sus variables.
+     *
+     * @param variables Los valores de las variables, según su posición
+     * @return El valor del subárbol
+     */
+    public abstract double evaluate(double[] variables);
+
+    /**
+     * Cuenta los nodos del subárbol, incluyendo este.
+     *
+     * @return La cantidad de nodos
+     */
+    public abstract int size();
+
+    @Override
+    public final int hashCode() {
+        return hash;
+    }
+
+    /**
+     * Un valor numérico constante (literales, e, pi).
+     */
+    public static final class Constant extends ExpressionNode {
+        private final double value;
+
+        public Constant(double value) {
+            super(Double.hashCode(value));
+            this.value = value;
+        }
+
+        public double getValue() {
+            return value;
+        }
+
+        @Override
+        public double evaluate(double x) {
+            return value;
+        }
+
+        @Override
+        public double evaluate(double[] variables) {
+            return value;
+        }
+
+        @Override
+        public int size() {
+            return 1;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Constant
+                    && Double.doubleToLongBits(((Constant) o).value) == Double.doubleToLongBits(value);
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(value);
+        }
+    }
+
+    /**
+     * Una variable, resuelta al analizar la expresión a su posición en el arreglo de variables.
+     * La posición 0 es la variable principal (x por omisión), la que recibe evaluate(double).
+     */
+    public static final class Variable extends ExpressionNode {
+        private final String name;
+        private final int slot;
+
+        public Variable() {
+            this("x", 0);
+        }
+
+        public Variable(String name, int slot) {
+            super('x' + 31 * slot);
+            this.name = name;
+            this.slot = slot;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getSlot() {
+            return slot;
+        }
+
+        @Override
+        public double evaluate(double x) {
+            if (slot != 0) {
+                throw new IllegalStateException("La expresión depende de otras variables además de la principal: " + name);
+            }
+            return x;
+        }
+
+        @Override
+        public double evaluate(double[] variables) {
+            return variables[slot];
+        }
+
+        @Override
+        public int size() {
+            return 1;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Variable && ((Variable) o).slot == slot;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * Cambio de signo (menos unario).
+     */
+    public static final class Negate extends ExpressionNode {
+        private final ExpressionNode operand;
+
+        public Negate(ExpressionNode operand) {
+            super(31 * operand.hashCode() + '~');
+            this.operand = operand;
+        }
+
+        public ExpressionNode getOperand() {
+            return operand;
+        }
+
+        @Override
+        public double evaluate(double x) {
+            return -operand.evaluate(x);
+        }
+
+        @Override
+        public double evaluate(double[] variables) {
+            return -operand.evaluate(variables);
+        }
+
+        @Override
+        public int size() {
+            return 1 + operand.size();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o == this || o instanceof Negate && ((Negate) o).operand.equals(operand);
+        }
+
+        @Override
+        public String toString() {
+            return "(-" + operand + ")";
+        }
+    }
+
+    /**
+     * Una operación binaria: +, -, *, / o ^.
+     */
+    public static final class Binary extends ExpressionNode {
+        private final char operator;
+        private final ExpressionNode left;
+        private final ExpressionNode right;
+
+        public Binary(char operator, ExpressionNode left, ExpressionNode right) {
+            super((31 * left.hashCode() + right.hashCode()) * 31 + operator);
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        public char getOperator() {
+            return operator;
+        }
+
+        public ExpressionNode getLeft() {
+            return left;
+        }
+
+        public ExpressionNode getRight() {
+            return right;
+        }
+
+        @Override
+        public double evaluate(double x) {
+            return apply(left.evaluate(x), right.evaluate(x));
+        }
+
+        @Override
+        public double evaluate(double[] variables) {
+            return apply(left.evaluate(variables), right.evaluate(variables));
+        }
+
+        private double apply(double leftVal, double rightVal) {
+            switch (operator) {
+                case '+': return leftVal + rightVal;
+                case '-': return leftVal - rightVal;
+                case '*': return leftVal * rightVal;
+                case '/': return leftVal / rightVal;
+                case '^': return Math.pow(leftVal, rightVal);
+                default: throw new IllegalStateException("Operador desconocido: " + operator);
+            }
+        }
+
+        @Override
+        public int size() {
+            return 1 + left.size() + right.size();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) return true;
+            if (!(o instanceof Binary)) return false;
+            Binary other = (Binary) o;
+            return other.hashCode() == hashCode() && other.operator == operator
+                    && other.left.equals(left) && other.right.equals(right);
+        }
+
+        @Override
+        public String toString() {
+            return "(" + left + operator + right + ")";
+        }
+    }
+
+    /**
+     * La aplicación de una función (sin, cos, exp, o cualquiera de {@link FunctionRegistry}) a
+     * uno o dos argumentos. La definición se resuelve al analizar la expresión, no en cada
+     * evaluación.
+     */
+    public static final class Function extends ExpressionNode {
+        private final FunctionRegistry.Definition definition;
+        private final ExpressionNode[] arguments;
+
+        public Function(FunctionRegistry.Definition definition, ExpressionNode... arguments) {
+            super(31 * definition.getName().hashCode() + Arrays.hashCode(arguments));
+            if (arguments.length != definition.getArity()) {
+                throw new IllegalArgumentException("La función " + definition.getName() + " recibe "
+                        + definition.getArity() + " argumentos");
+            }
+            this.definition = definition;
+            this.arguments = arguments;
+        }
+
+        public String getName() {
+            return definition.getName();
+        }
+
+        public FunctionRegistry.Definition getDefinition() {
+            return definition;
+        }
+
+        /**
+         * El primer (o único) argumento.
+         */
+        public ExpressionNode getArgument() {
+            return arguments[0];
+        }
+
+        public ExpressionNode getArgument(int index) {
+            return arguments[index];
+        }
+
+        public int getArity() {
+            return arguments.length;
+        }
+
+        @Override
+        public double evaluate(double x) {
+            if (arguments.length == 1) {
+                return definition.apply(arguments[0].evaluate(x));
+            }
+            return definition.apply(arguments[0].evaluate(x), arguments[1].evaluate(x));
+        }
+
+        @Override
+        public double evaluate(double[] variables) {
+            if (arguments.length == 1) {
+                return definition.apply(arguments[0].evaluate(variables));
+            }
+            return definition.apply(arguments[0].evaluate(variables), arguments[1].evaluate(variables));
+        }
+
+        @Override
+        public int size() {
+            int size = 1;
+            for (ExpressionNode argument : arguments) {
+                size += argument.size();
+            }
+            return size;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) return true;
+            if (!(o instanceof Function)) return false;
+            Function other = (Function) o;
+            return other.hashCode() == hashCode() && other.definition == definition
+                    && Arrays.equals(other.arguments, arguments);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(getName()).append('(').append(arguments[0]);
+            for (int i = 1; i < arguments.length; i++) {
+                sb.append(',').append(arguments[i]);
+            }
+            return sb.append(')').toString();
+        }
+    }
+}
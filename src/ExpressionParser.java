@@ -0,0 +1,401 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Analizador por precedencia de operadores (precedence climbing) que convierte una expresión
+ * matemática en un árbol de nodos. Gramática soportada (de menor a mayor precedencia):
+ * <pre>
+ *   expresion := termino (('+' | '-') termino)*
+ *   termino   := unario (('*' | '/') unario)*
+ *   unario    := ('-' | '+') unario | potencia
+ *   potencia  := primario ('^' unario)?
+ *   primario  := numero | constante | variable | funcion '(' expresion (',' expresion)* ')'
+ *              | '(' expresion ')'
+ * </pre>
+ * La potencia es asociativa a derecha y tiene mayor precedencia que el menos unario,
+ * de modo que -x^2 equivale a -(x^2).
+ * <p>
+ * El texto se recorre una sola vez: el analizador léxico avanza un token por pedido, sin
+ * retroceder ni copiar el texto, y los operadores binarios se resuelven con una tabla de
+ * precedencias en un único ciclo, de modo que el costo es lineal en la longitud de la
+ * expresión. Los literales de hasta 15 dígitos significativos con exponente decimal pequeño se
+ * convierten sin pasar por Double.parseDouble (multiplicar o dividir dos valores exactos
+ * redondea correctamente); los demás se delegan en él. Las variables se reconocen comparando
+ * el texto en su lugar; solo los nombres de constantes y funciones se copian para buscarlos en
+ * el registro. La sección {@code analisis} de Benchmark mide cuántas expresiones por segundo
+ * se analizan.
+ * <p>
+ * Por omisión la única variable es x. Se pueden declarar otras (y, t, parámetros como a o k):
+ * cada nombre se resuelve al analizar a su posición en la lista, de modo que evaluar no
+ * requiere buscar nombres. Las constantes y funciones se buscan en {@link FunctionRegistry};
+ * una variable declarada oculta a una constante con el mismo nombre, registrada antes o después
+ * (definir la constante x no cambia las expresiones en x). Un nombre seguido de '(' es siempre
+ * una llamada y nunca una variable, de modo que una variable puede llamarse como una función
+ * (definir la función x no impide analizar x^2).
+ */
+public class ExpressionParser {
+
+    /**
+     * Las variables por omisión: solo x.
+     */
+    public static final List<String> DEFAULT_VARIABLES = Collections.singletonList("x");
+
+    // Tipos de token que no son un carácter; los operadores y la puntuación son el propio carácter
+    private static final int END = -1;
+    private static final int NUMBER = -2;
+    private static final int NAME = -3;
+
+    // Las potencias de diez exactas en double
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    // Mayor mantisa que se acumula sin perder dígitos: por debajo de 2^53 es exacta
+    private static final long MAX_EXACT_MANTISSA = (1L << 53) - 1;
+
+    private final String expr;
+    private final int length;
+    private final List<String> variables;
+
+    // El token actual: su tipo, su posición y, si es un número, su valor; los literales que no
+    // se convierten al leerlos (exact en false) se convierten al usarlos
+    private int token;
+    private int start;
+    private double number;
+    private boolean exact;
+    // La posición siguiente al token actual
+    private int pos;
+
+    private ExpressionParser(String expr, List<String> variables) {
+        this.expr = expr;
+        this.length = expr.length();
+        this.variables = variables;
+    }
+
+    /**
+     * Analiza una expresión en términos de x.
+     *
+     * @param expression La expresión a analizar (ya normalizada a minúsculas)
+     * @return La raíz del árbol de la expresión
+     * @throws IllegalArgumentException si la expresión no es válida
+     */
+    public static ExpressionNode parse(String expression) {
+        return parse(expression, DEFAULT_VARIABLES);
+    }
+
+    /**
+     * Analiza una expresión en términos de las variables indicadas. Cada variable se resuelve a
+     * su posición en la lista; la primera es la variable principal.
+     *
+     * @param expression La expresión a analizar (ya normalizada a minúsculas)
+     * @param variables  Los nombres de las variables, en orden de posición
+     * @return La raíz del árbol de la expresión
+     * @throws IllegalArgumentException si la expresión no es válida o algún nombre de variable
+     *                                  no es válido o está repetido
+     */
+    public static ExpressionNode parse(String expression, List<String> variables) {
+        checkVariables(variables);
+        ExpressionParser parser = new ExpressionParser(expression, variables);
+        parser.advance();
+        ExpressionNode root = parser.parseBinary(1);
+        if (parser.token != END) {
+            throw new IllegalArgumentException("Carácter inesperado '" + expression.charAt(parser.start) +
+                    "' en la posición " + parser.start + " de: " + expression);
+        }
+        return root;
+    }
+
+    /**
+     * Verifica que los nombres de variables sean identificadores válidos y distintos. Pueden
+     * coincidir con constantes, a las que ocultan, y con funciones, que solo se llaman con '('.
+     */
+    static void checkVariables(List<String> variables) {
+        if (variables.isEmpty()) {
+            throw new IllegalArgumentException("La expresión debe tener al menos una variable");
+        }
+        for (int i = 0; i < variables.size(); i++) {
+            String name = variables.get(i);
+            if (name.isEmpty()) {
+                throw new IllegalArgumentException("Nombre de variable inválido: " + name);
+            }
+            for (int j = 0; j < name.length(); j++) {
+                if (!isLetter(name.charAt(j))) {
+                    throw new IllegalArgumentException("Nombre de variable inválido: " + name);
+                }
+            }
+            // Las listas de variables son cortas: buscar la repetición es más barato que un conjunto
+            if (variables.indexOf(name) != i) {
+                throw new IllegalArgumentException("Variable repetida: " + name);
+            }
+        }
+    }
+
+    /**
+     * Analiza una cadena de operadores binarios cuya precedencia sea al menos la indicada. Cada
+     * operando derecho se analiza con la precedencia siguiente, de modo que los operadores de
+     * igual precedencia se asocian a izquierda.
+     */
+    private ExpressionNode parseBinary(int minPrecedence) {
+        ExpressionNode left = parseUnary();
+        while (true) {
+            int operator = token;
+            int precedence = precedence(operator);
+            if (precedence < minPrecedence) return left;
+            advance();
+            left = new ExpressionNode.Binary((char) operator, left, parseBinary(precedence + 1));
+        }
+    }
+
+    /**
+     * La precedencia de un operador binario; 0 si el token no lo es. La potencia se trata aparte,
+     * por su asociatividad a derecha y su relación con el menos unario.
+     */
+    private static int precedence(int token) {
+        switch (token) {
+            case '+':
+            case '-':
+                return 1;
+            case '*':
+            case '/':
+                return 2;
+            default:
+                return 0;
+        }
+    }
+
+    private ExpressionNode parseUnary() {
+        if (token == '-') {
+            advance();
+            return new ExpressionNode.Negate(parseUnary());
+        }
+        if (token == '+') {
+            advance();
+            return parseUnary();
+        }
+        ExpressionNode base = parsePrimary();
+        if (token == '^') {
+            advance();
+            // Asociativa a derecha: x^2^3 = x^(2^3); el exponente admite signo (x^-1)
+            return new ExpressionNode.Binary('^', base, parseUnary());
+        }
+        return base;
+    }
+
+    private ExpressionNode parsePrimary() {
+        switch (token) {
+            case '(': {
+                int openParen = start;
+                advance();
+                ExpressionNode inner = parseBinary(1);
+                if (token != ')') {
+                    throw new IllegalArgumentException("Falta paréntesis de cierre para el abierto en la posición " +
+                            openParen + " de: " + expr);
+                }
+                advance();
+                return inner;
+            }
+            case NUMBER: {
+                ExpressionNode constant = new ExpressionNode.Constant(exact ? number : parseLiteral());
+                advance();
+                return constant;
+            }
+            case NAME: {
+                int nameStart = start;
+                int nameEnd = pos;
+                advance();
+                if (token == '(') {
+                    return parseCall(expr.substring(nameStart, nameEnd));
+                }
+
+                int slot = findVariable(nameStart, nameEnd);
+                if (slot >= 0) {
+                    return new ExpressionNode.Variable(variables.get(slot), slot);
+                }
+                String name = expr.substring(nameStart, nameEnd);
+                Double constant = FunctionRegistry.lookupConstant(name);
+                if (constant == null) {
+                    throw new IllegalArgumentException("Identificador desconocido: " + name);
+                }
+                return new ExpressionNode.Constant(constant);
+            }
+            case END:
+                throw new IllegalArgumentException("Expresión incompleta: " + expr);
+            default:
+                throw new IllegalArgumentException("Carácter inesperado '" + (char) token + "' en la posición " +
+                        start + " de: " + expr);
+        }
+    }
+
+    /**
+     * Busca la variable escrita en expr[nameStart, nameEnd) sin copiar el nombre.
+     *
+     * @return La posición de la variable, o -1 si el nombre no es una variable
+     */
+    private int findVariable(int nameStart, int nameEnd) {
+        int nameLength = nameEnd - nameStart;
+        for (int slot = 0; slot < variables.size(); slot++) {
+            String variable = variables.get(slot);
+            if (variable.length() == nameLength && expr.regionMatches(nameStart, variable, 0, nameLength)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Lee los argumentos de una llamada a función, con el nombre ya leído y el paréntesis de
+     * apertura como token actual. pow(a, b) se convierte en a^b para que reciba las mismas
+     * simplificaciones que la potencia.
+     */
+    private ExpressionNode parseCall(String name) {
+        FunctionRegistry.Definition definition = FunctionRegistry.lookupFunction(name);
+        if (definition == null && !name.equals("pow")) {
+            throw new IllegalArgumentException("Función desconocida: " + name);
+        }
+        advance();
+        List<ExpressionNode> arguments = new ArrayList<>(2);
+        arguments.add(parseBinary(1));
+        while (token == ',') {
+            advance();
+            arguments.add(parseBinary(1));
+        }
+        if (token != ')') {
+            throw new IllegalArgumentException("Falta paréntesis de cierre para la función: " + name);
+        }
+        advance();
+
+        int arity = definition == null ? 2 : definition.getArity();
+        if (arguments.size() != arity) {
+            throw new IllegalArgumentException("La función " + name + " recibe " + arity + " argumentos, no "
+                    + arguments.size());
+        }
+        if (definition == null) {
+            return new ExpressionNode.Binary('^', arguments.get(0), arguments.get(1));
+        }
+        return new ExpressionNode.Function(definition, arguments.toArray(new ExpressionNode[0]));
+    }
+
+    /**
+     * Lee el token siguiente, salteando los espacios: un número, un nombre, el fin de la
+     * expresión o un único carácter (operador, puntuación o un carácter inválido, que se informa
+     * cuando el analizador lo encuentra).
+     */
+    private void advance() {
+        int p = pos;
+        while (p < length && isWhitespace(expr.charAt(p))) p++;
+        start = p;
+        if (p == length) {
+            token = END;
+            pos = p;
+            return;
+        }
+
+        char c = expr.charAt(p);
+        if (isDigit(c) || c == '.') {
+            scanNumber(p);
+        } else if (isLetter(c)) {
+            p++;
+            while (p < length && isLetter(expr.charAt(p))) p++;
+            token = NAME;
+            pos = p;
+        } else {
+            token = c;
+            pos = p + 1;
+        }
+    }
+
+    /**
+     * Lee un literal numérico, admitiendo notación científica (1.5e-3). La mantisa se acumula
+     * como entero mientras sea exacta; si el literal tiene demasiados dígitos, un exponente
+     * grande o no es válido queda para {@link #parseLiteral()}.
+     */
+    private void scanNumber(int p) {
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = 0;
+        int dots = 0;
+        boolean exact = true;
+        while (p < length) {
+            char c = expr.charAt(p);
+            if (c >= '0' && c <= '9') {
+                if (mantissa <= (MAX_EXACT_MANTISSA - 9) / 10) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (dots > 0) decimals++;
+                } else if (dots == 0) {
+                    // Los dígitos enteros que no caben cambian la escala; se delega en parseDouble
+                    exact = false;
+                } else if (c != '0') {
+                    exact = false;
+                }
+                digits++;
+            } else if (c == '.') {
+                dots++;
+            } else if (isDigit(c)) {
+                exact = false;
+            } else {
+                break;
+            }
+            p++;
+        }
+
+        // La 'e' solo es exponente si le sigue un dígito (con signo opcional); si no, es la constante e
+        int exponent = 0;
+        if (p < length && expr.charAt(p) == 'e') {
+            int q = p + 1;
+            boolean negative = false;
+            if (q < length && (expr.charAt(q) == '+' || expr.charAt(q) == '-')) {
+                negative = expr.charAt(q) == '-';
+                q++;
+            }
+            if (q < length && isDigit(expr.charAt(q))) {
+                p = q;
+                while (p < length && isDigit(expr.charAt(p))) {
+                    char c = expr.charAt(p);
+                    if (c >= '0' && c <= '9' && exponent < POWERS_OF_TEN.length) {
+                        exponent = exponent * 10 + (c - '0');
+                    } else {
+                        exact = false;
+                    }
+                    p++;
+                }
+                if (negative) exponent = -exponent;
+            }
+        }
+
+        token = NUMBER;
+        pos = p;
+        int scale = exponent - decimals;
+        this.exact = exact && digits > 0 && dots <= 1
+                && scale > -POWERS_OF_TEN.length && scale < POWERS_OF_TEN.length;
+        if (this.exact) {
+            number = scale >= 0 ? mantissa * POWERS_OF_TEN[scale] : mantissa / POWERS_OF_TEN[-scale];
+        }
+    }
+
+    /**
+     * Convierte con Double.parseDouble el literal del token actual.
+     */
+    private double parseLiteral() {
+        String literal = expr.substring(start, pos);
+        try {
+            return Double.parseDouble(literal);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Número inválido: " + literal);
+        }
+    }
+
+    private static boolean isWhitespace(char c) {
+        if (c == ' ') return true;
+        if (c < 128) return c >= '\t' && c <= '\r' || c >= '\u001c' && c <= '\u001f';
+        return Character.isWhitespace(c);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9' || c >= 128 && Character.isDigit(c);
+    }
+
+    private static boolean isLetter(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= 128 && Character.isLetter(c);
+    }
+}
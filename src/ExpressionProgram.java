@@ -0,0 +1,798 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Una expresión compilada a un programa postfijo para una máquina de pila.
+ * El programa es un arreglo compacto de códigos de operación (con sus operandos en línea)
+ * más un pool de constantes, y se ejecuta con un ciclo sobre una pila primitiva double[],
+ * evitando el recorrido de punteros y las llamadas virtuales por nodo del árbol.
+ * <p>
+ * Los nodos compartidos del grafo (ver {@link CommonSubexpressions}) se calculan una sola
+ * vez: la primera aparición guarda su valor en una variable local y las siguientes la leen.
+ * Las variables locales ocupan las primeras posiciones del arreglo de pila.
+ * <p>
+ * Las variables de la expresión se leen por posición: la variable principal con load_x y las
+ * demás con load_var, que indica su índice en el arreglo de variables. Los modos que reciben
+ * solo x (evaluación escalar, lotes, duales e intervalos) fallan si el programa usa load_var.
+ * <p>
+ * Las funciones nativas tienen su propia instrucción; las demás de {@link FunctionRegistry} se
+ * llaman con call1 o call2, cuyo operando es el índice de la definición en la tabla de
+ * funciones del programa.
+ * <p>
+ * Si las opciones de compilación lo piden, cada a*b + c (o a*b - c, c + a*b, c - a*b) cuyo
+ * producto no es una subexpresión compartida se compila a una sola instrucción fma, que apila
+ * a, b y c y calcula Math.fma(a, b, c). En el modo de matemática rápida, sin, cos, exp y log
+ * se llaman con call1 a sus aproximaciones de {@link FastMath}.
+ * <p>
+ * El programa es inmutable; la pila la provee quien lo ejecuta, de modo que un mismo
+ * programa puede compartirse entre varios evaluadores.
+ */
+public final class ExpressionProgram {
+
+    // Códigos de operación
+    static final int CONST = 0;   // operando: índice en el pool de constantes
+    static final int LOAD_X = 1;
+    static final int NEG = 2;
+    static final int ADD = 3;
+    static final int SUB = 4;
+    static final int MUL = 5;
+    static final int DIV = 6;
+    static final int POW = 7;
+    static final int SIN = 8;
+    static final int COS = 9;
+    static final int TAN = 10;
+    static final int SQRT = 11;
+    static final int LOG = 12;
+    static final int EXP = 13;
+    static final int STORE = 14;  // operando: variable local; guarda el tope sin desapilarlo
+    static final int LOAD = 15;   // operando: variable local
+    static final int LOAD_VAR = 16;  // operando: posición en el arreglo de variables
+    static final int CALL1 = 17;  // operando: índice en la tabla de funciones
+    static final int CALL2 = 18;  // operando: índice en la tabla de funciones
+    static final int FMA = 19;
+
+    // Puntos por bloque en la ejecución por lotes
+    static final int BATCH_SIZE = 256;
+
+    private static final String[] MNEMONICS = {
+            "const", "load_x", "neg", "add", "sub", "mul", "div", "pow",
+            "sin", "cos", "tan", "sqrt", "log", "exp", "store", "load", "load_var",
+            "call1", "call2", "fma"
+    };
+
+    private final int[] code;
+    private final double[] constants;
+    private final int locals;
+    private final int maxStack;
+    private final FunctionRegistry.Definition[] functions;
+    private final List<String> variables;
+    private final CompilerOptions options;
+
+    private ExpressionProgram(int[] code, double[] constants, FunctionRegistry.Definition[] functions, int locals,
+                              int maxStack, List<String> variables, CompilerOptions options) {
+        this.code = code;
+        this.constants = constants;
+        this.functions = functions;
+        this.locals = locals;
+        this.maxStack = maxStack;
+        this.variables = variables;
+        this.options = options;
+    }
+
+    /**
+     * Compila un árbol de expresión en términos de x a un programa de pila.
+     *
+     * @param tree La raíz del árbol
+     * @return El programa equivalente
+     */
+    public static ExpressionProgram compile(ExpressionNode tree) {
+        return compile(tree, ExpressionParser.DEFAULT_VARIABLES);
+    }
+
+    /**
+     * Compila un árbol de expresión a un programa de pila.
+     *
+     * @param tree      La raíz del árbol
+     * @param variables Los nombres de las variables con que se analizó el árbol, en orden de posición
+     * @return El programa equivalente
+     */
+    public static ExpressionProgram compile(ExpressionNode tree, List<String> variables) {
+        return compile(tree, variables, CompilerOptions.DEFAULT);
+    }
+
+    /**
+     * Compila un árbol de expresión a un programa de pila con las opciones indicadas.
+     *
+     * @param tree      La raíz del árbol
+     * @param variables Los nombres de las variables con que se analizó el árbol, en orden de posición
+     * @param options   Las opciones de compilación
+     * @return El programa equivalente
+     */
+    public static ExpressionProgram compile(ExpressionNode tree, List<String> variables, CompilerOptions options) {
+        Compiler compiler = new Compiler(options);
+        compiler.countReferences(tree);
+        compiler.emit(tree);
+        return new ExpressionProgram(compiler.code(), compiler.constants(), compiler.functions(), compiler.localCount,
+                compiler.maxDepth, variables, options);
+    }
+
+    /**
+     * Ejecuta el programa para un valor de x.
+     *
+     * @param x     El valor de la variable
+     * @param stack Una pila de al menos {@link #getStackSize()} posiciones
+     * @return El valor de la expresión en x
+     */
+    public double execute(double x, double[] stack) {
+        final int[] code = this.code;
+        final double[] constants = this.constants;
+        int sp = locals - 1;
+
+        for (int pc = 0; pc < code.length; pc++) {
+            switch (code[pc]) {
+                case CONST: stack[++sp] = constants[code[++pc]]; break;
+                case LOAD_X: stack[++sp] = x; break;
+                case LOAD_VAR: return unboundVariable(code[pc + 1]);
+                case NEG: stack[sp] = -stack[sp]; break;
+                case ADD: sp--; stack[sp] = stack[sp] + stack[sp + 1]; break;
+                case SUB: sp--; stack[sp] = stack[sp] - stack[sp + 1]; break;
+                case MUL: sp--; stack[sp] = stack[sp] * stack[sp + 1]; break;
+                case DIV: sp--; stack[sp] = stack[sp] / stack[sp + 1]; break;
+                case POW: sp--; stack[sp] = Math.pow(stack[sp], stack[sp + 1]); break;
+                case SIN: stack[sp] = Math.sin(stack[sp]); break;
+                case COS: stack[sp] = Math.cos(stack[sp]); break;
+                case TAN: stack[sp] = Math.tan(stack[sp]); break;
+                case SQRT: stack[sp] = Math.sqrt(stack[sp]); break;
+                case LOG: stack[sp] = Math.log(stack[sp]); break;
+                case EXP: stack[sp] = Math.exp(stack[sp]); break;
+                case STORE: stack[code[++pc]] = stack[sp]; break;
+                case LOAD: stack[++sp] = stack[code[++pc]]; break;
+                case CALL1: stack[sp] = functions[code[++pc]].apply(stack[sp]); break;
+                case CALL2: sp--; stack[sp] = functions[code[++pc]].apply(stack[sp], stack[sp + 1]); break;
+                case FMA: sp -= 2; stack[sp] = Math.fma(stack[sp], stack[sp + 1], stack[sp + 2]); break;
+                default: throw new IllegalStateException("Código de operación desconocido: " + code[pc]);
+            }
+        }
+
+        return stack[locals];
+    }
+
+    /**
+     * Ejecuta el programa para los valores de todas sus variables.
+     *
+     * @param variables Los valores de las variables, en el orden de {@link #getVariables()}
+     * @param stack     Una pila de al menos {@link #getStackSize()} posiciones
+     * @return El valor de la expresión
+     */
+    public double execute(double[] variables, double[] stack) {
+        final int[] code = this.code;
+        final double[] constants = this.constants;
+        int sp = locals - 1;
+
+        for (int pc = 0; pc < code.length; pc++) {
+            switch (code[pc]) {
+                case CONST: stack[++sp] = constants[code[++pc]]; break;
+                case LOAD_X: stack[++sp] = variables[0]; break;
+                case LOAD_VAR: stack[++sp] = variables[code[++pc]]; break;
+                case NEG: stack[sp] = -stack[sp]; break;
+                case ADD: sp--; stack[sp] = stack[sp] + stack[sp + 1]; break;
+                case SUB: sp--; stack[sp] = stack[sp] - stack[sp + 1]; break;
+                case MUL: sp--; stack[sp] = stack[sp] * stack[sp + 1]; break;
+                case DIV: sp--; stack[sp] = stack[sp] / stack[sp + 1]; break;
+                case POW: sp--; stack[sp] = Math.pow(stack[sp], stack[sp + 1]); break;
+                case SIN: stack[sp] = Math.sin(stack[sp]); break;
+                case COS: stack[sp] = Math.cos(stack[sp]); break;
+                case TAN: stack[sp] = Math.tan(stack[sp]); break;
+                case SQRT: stack[sp] = Math.sqrt(stack[sp]); break;
+                case LOG: stack[sp] = Math.log(stack[sp]); break;
+                case EXP: stack[sp] = Math.exp(stack[sp]); break;
+                case STORE: stack[code[++pc]] = stack[sp]; break;
+                case LOAD: stack[++sp] = stack[code[++pc]]; break;
+                case CALL1: stack[sp] = functions[code[++pc]].apply(stack[sp]); break;
+                case CALL2: sp--; stack[sp] = functions[code[++pc]].apply(stack[sp], stack[sp + 1]); break;
+                case FMA: sp -= 2; stack[sp] = Math.fma(stack[sp], stack[sp + 1], stack[sp + 2]); break;
+                default: throw new IllegalStateException("Código de operación desconocido: " + code[pc]);
+            }
+        }
+
+        return stack[locals];
+    }
+
+    /**
+     * Falla al evaluar con solo x un programa que lee otras variables. Devuelve double para
+     * poder usarse como expresión; también lo llama el bytecode generado por {@link BytecodeCompiler}.
+     *
+     * @param slot La posición de la variable leída
+     * @throws IllegalStateException siempre
+     */
+    static double unboundVariable(int slot) {
+        throw new IllegalStateException(
+                "La expresión depende de otras variables además de la principal (posición " + slot + ")");
+    }
+
+    /**
+     * Ejecuta el programa con números duales: junto a cada valor de la pila se propaga su
+     * derivada respecto de x (diferenciación automática hacia adelante), de modo que una sola
+     * pasada calcula f(x) y f'(x) sin construir la derivada simbólica.
+     *
+     * @param x        El valor de la variable
+     * @param stack    Una pila de valores de al menos {@link #getStackSize()} posiciones
+     * @param tangents Una pila de derivadas del mismo tamaño; al terminar, tangents[getLocals()]
+     *                 contiene f'(x)
+     * @return El valor de la expresión en x
+     */
+    public double executeDual(double x, double[] stack, double[] tangents) {
+        final int[] code = this.code;
+        final double[] constants = this.constants;
+        int sp = locals - 1;
+
+        for (int pc = 0; pc < code.length; pc++) {
+            double a, b, da, db, v;
+            FunctionRegistry.Definition function;
+            switch (code[pc]) {
+                case CONST:
+                    stack[++sp] = constants[code[++pc]];
+                    tangents[sp] = 0;
+                    break;
+                case LOAD_X:
+                    stack[++sp] = x;
+                    tangents[sp] = 1;
+                    break;
+                case LOAD_VAR:
+                    return unboundVariable(code[pc + 1]);
+                case NEG:
+                    stack[sp] = -stack[sp];
+                    tangents[sp] = -tangents[sp];
+                    break;
+                case ADD:
+                    sp--;
+                    stack[sp] = stack[sp] + stack[sp + 1];
+                    tangents[sp] = tangents[sp] + tangents[sp + 1];
+                    break;
+                case SUB:
+                    sp--;
+                    stack[sp] = stack[sp] - stack[sp + 1];
+                    tangents[sp] = tangents[sp] - tangents[sp + 1];
+                    break;
+                case MUL:
+                    sp--;
+                    a = stack[sp]; b = stack[sp + 1];
+                    stack[sp] = a * b;
+                    tangents[sp] = tangents[sp] * b + a * tangents[sp + 1];
+                    break;
+                case DIV:
+                    sp--;
+                    b = stack[sp + 1];
+                    v = stack[sp] / b;
+                    stack[sp] = v;
+                    tangents[sp] = (tangents[sp] - v * tangents[sp + 1]) / b;
+                    break;
+                case POW:
+                    sp--;
+                    a = stack[sp]; b = stack[sp + 1];
+                    da = tangents[sp]; db = tangents[sp + 1];
+                    v = Math.pow(a, b);
+                    stack[sp] = v;
+                    tangents[sp] = powTangent(a, b, v, da, db);
+                    break;
+                case SIN:
+                    a = stack[sp];
+                    stack[sp] = Math.sin(a);
+                    tangents[sp] *= Math.cos(a);
+                    break;
+                case COS:
+                    a = stack[sp];
+                    stack[sp] = Math.cos(a);
+                    tangents[sp] *= -Math.sin(a);
+                    break;
+                case TAN:
+                    v = Math.tan(stack[sp]);
+                    stack[sp] = v;
+                    tangents[sp] *= 1 + v * v;
+                    break;
+                case SQRT:
+                    v = Math.sqrt(stack[sp]);
+                    stack[sp] = v;
+                    tangents[sp] /= 2 * v;
+                    break;
+                case LOG:
+                    a = stack[sp];
+                    stack[sp] = Math.log(a);
+                    tangents[sp] /= a;
+                    break;
+                case EXP:
+                    v = Math.exp(stack[sp]);
+                    stack[sp] = v;
+                    tangents[sp] *= v;
+                    break;
+                case STORE:
+                    stack[code[pc + 1]] = stack[sp];
+                    tangents[code[++pc]] = tangents[sp];
+                    break;
+                case LOAD:
+                    stack[++sp] = stack[code[pc + 1]];
+                    tangents[sp] = tangents[code[++pc]];
+                    break;
+                case CALL1:
+                    function = functions[code[++pc]];
+                    a = stack[sp];
+                    stack[sp] = function.apply(a);
+                    // Como en las instrucciones nativas, la derivada se multiplica siempre (0*inf da
+                    // NaN); solo una función sin derivada conocida admite un argumento constante
+                    if (function.hasDerivative() || tangents[sp] != 0) {
+                        tangents[sp] *= function.derivativeAt(a);
+                    }
+                    break;
+                case CALL2:
+                    sp--;
+                    function = functions[code[++pc]];
+                    a = stack[sp]; b = stack[sp + 1];
+                    stack[sp] = function.apply(a, b);
+                    if (function.getSelection() != 0) {
+                        // min y max: la derivada del argumento elegido, como en la derivada simbólica
+                        v = function.firstArgumentWeight(a, b);
+                        tangents[sp] = tangents[sp] * v + tangents[sp + 1] * (1 - v);
+                    } else if (tangents[sp] != 0 || tangents[sp + 1] != 0) {
+                        throw new IllegalArgumentException("No se conoce la derivada de la función: " + function);
+                    }
+                    break;
+                case FMA:
+                    sp -= 2;
+                    a = stack[sp]; b = stack[sp + 1];
+                    tangents[sp] = tangents[sp] * b + a * tangents[sp + 1] + tangents[sp + 2];
+                    stack[sp] = Math.fma(a, b, stack[sp + 2]);
+                    break;
+                default: throw new IllegalStateException("Código de operación desconocido: " + code[pc]);
+            }
+        }
+
+        return stack[locals];
+    }
+
+    /**
+     * Derivada de a^b: b*a^(b-1)*a' si el exponente no varía (también vale para bases
+     * negativas), a^b*ln(a)*b' si la base no varía, y a^b*(b'*ln(a) + b*a'/a) en general.
+     * También lo usa el bytecode generado por {@link BytecodeCompiler}.
+     */
+    static double powTangent(double a, double b, double v, double da, double db) {
+        if (db == 0) {
+            return da == 0 ? 0 : b * Math.pow(a, b - 1) * da;
+        }
+        if (da == 0) {
+            return v * Math.log(a) * db;
+        }
+        return v * (db * Math.log(a) + b * da / a);
+    }
+
+    /**
+     * Ejecuta el programa para un lote de puntos, por columnas: cada instrucción se aplica a
+     * un bloque de hasta {@link #BATCH_SIZE} puntos, de modo que el despacho de la instrucción
+     * se paga una vez por bloque y los ciclos internos pueden vectorizarse.
+     *
+     * @param xs        Los puntos en los que evaluar
+     * @param xsOffset  La posición del primer punto
+     * @param out       El arreglo donde escribir los resultados
+     * @param outOffset La posición del primer resultado
+     * @param length    La cantidad de puntos
+     * @param stack     Una pila de columnas creada con {@link #newBatchStack()}
+     */
+    public void executeBatch(double[] xs, int xsOffset, double[] out, int outOffset, int length, double[][] stack) {
+        for (int start = 0; start < length; start += BATCH_SIZE) {
+            int n = Math.min(BATCH_SIZE, length - start);
+            executeBlock(xs, xsOffset + start, n, stack);
+            System.arraycopy(stack[locals], 0, out, outOffset + start, n);
+        }
+    }
+
+    private void executeBlock(double[] xs, int offset, int n, double[][] stack) {
+        final int[] code = this.code;
+        int sp = locals - 1;
+
+        for (int pc = 0; pc < code.length; pc++) {
+            int opcode = code[pc];
+            switch (opcode) {
+                case CONST:
+                    Arrays.fill(stack[++sp], 0, n, constants[code[++pc]]);
+                    break;
+                case LOAD_X:
+                    System.arraycopy(xs, offset, stack[++sp], 0, n);
+                    break;
+                case LOAD_VAR:
+                    unboundVariable(code[pc + 1]);
+                    break;
+                case STORE:
+                    System.arraycopy(stack[sp], 0, stack[code[++pc]], 0, n);
+                    break;
+                case LOAD:
+                    System.arraycopy(stack[code[++pc]], 0, stack[++sp], 0, n);
+                    break;
+                case CALL1:
+                    callColumn(functions[code[++pc]], stack[sp], n);
+                    break;
+                case CALL2:
+                    sp--;
+                    callColumns(functions[code[++pc]], stack[sp], stack[sp + 1], n);
+                    break;
+                case ADD: case SUB: case MUL: case DIV: case POW:
+                    sp--;
+                    binaryColumn(opcode, stack[sp], stack[sp + 1], n);
+                    break;
+                case FMA:
+                    sp -= 2;
+                    fmaColumn(stack[sp], stack[sp + 1], stack[sp + 2], n);
+                    break;
+                default:
+                    unaryColumn(opcode, stack[sp], n);
+            }
+        }
+    }
+
+    static void binaryColumn(int opcode, double[] a, double[] b, int n) {
+        switch (opcode) {
+            case ADD: for (int i = 0; i < n; i++) a[i] += b[i]; break;
+            case SUB: for (int i = 0; i < n; i++) a[i] -= b[i]; break;
+            case MUL: for (int i = 0; i < n; i++) a[i] *= b[i]; break;
+            case DIV: for (int i = 0; i < n; i++) a[i] /= b[i]; break;
+            case POW: for (int i = 0; i < n; i++) a[i] = Math.pow(a[i], b[i]); break;
+            default: throw new IllegalStateException("Código de operación desconocido: " + opcode);
+        }
+    }
+
+    static void unaryColumn(int opcode, double[] a, int n) {
+        switch (opcode) {
+            case NEG: for (int i = 0; i < n; i++) a[i] = -a[i]; break;
+            case SIN: for (int i = 0; i < n; i++) a[i] = Math.sin(a[i]); break;
+            case COS: for (int i = 0; i < n; i++) a[i] = Math.cos(a[i]); break;
+            case TAN: for (int i = 0; i < n; i++) a[i] = Math.tan(a[i]); break;
+            case SQRT: for (int i = 0; i < n; i++) a[i] = Math.sqrt(a[i]); break;
+            case LOG: for (int i = 0; i < n; i++) a[i] = Math.log(a[i]); break;
+            case EXP: for (int i = 0; i < n; i++) a[i] = Math.exp(a[i]); break;
+            default: throw new IllegalStateException("Código de operación desconocido: " + opcode);
+        }
+    }
+
+    static void fmaColumn(double[] a, double[] b, double[] c, int n) {
+        for (int i = 0; i < n; i++) a[i] = Math.fma(a[i], b[i], c[i]);
+    }
+
+    static void callColumn(FunctionRegistry.Definition function, double[] a, int n) {
+        for (int i = 0; i < n; i++) a[i] = function.apply(a[i]);
+    }
+
+    static void callColumns(FunctionRegistry.Definition function, double[] a, double[] b, int n) {
+        for (int i = 0; i < n; i++) a[i] = function.apply(a[i], b[i]);
+    }
+
+    /**
+     * Crea una pila de columnas para {@link #executeBatch}.
+     *
+     * @return Una pila nueva de {@link #getStackSize()} columnas de {@link #BATCH_SIZE} posiciones
+     */
+    public double[][] newBatchStack() {
+        return new double[getStackSize()][BATCH_SIZE];
+    }
+
+    /**
+     * Crea una pila del tamaño necesario para ejecutar este programa.
+     *
+     * @return Una pila nueva
+     */
+    public double[] newStack() {
+        return new double[getStackSize()];
+    }
+
+    /**
+     * Tamaño del arreglo de pila: las variables locales más la profundidad máxima de operandos.
+     */
+    public int getStackSize() {
+        return locals + maxStack;
+    }
+
+    /**
+     * Cantidad de variables locales (subexpresiones compartidas).
+     */
+    public int getLocals() {
+        return locals;
+    }
+
+    /**
+     * Profundidad máxima de la pila de operandos.
+     */
+    public int getMaxStack() {
+        return maxStack;
+    }
+
+    /**
+     * Los nombres de las variables, en orden de posición; la primera es la variable principal.
+     */
+    public List<String> getVariables() {
+        return variables;
+    }
+
+    /**
+     * Las opciones con que se compiló el programa.
+     */
+    public CompilerOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * Acceso directo al código para los compiladores de este paquete; no debe modificarse.
+     */
+    int[] code() {
+        return code;
+    }
+
+    /**
+     * Acceso directo al pool de constantes para los compiladores de este paquete; no debe modificarse.
+     */
+    double[] constants() {
+        return constants;
+    }
+
+    /**
+     * Acceso directo a la tabla de funciones llamadas con call1 y call2; no debe modificarse.
+     */
+    FunctionRegistry.Definition[] functions() {
+        return functions;
+    }
+
+    /**
+     * Cuenta las instrucciones del programa (sin contar operandos).
+     *
+     * @return La cantidad de instrucciones
+     */
+    public int getInstructionCount() {
+        int count = 0;
+        for (int pc = 0; pc < code.length; pc++, count++) {
+            if (hasOperand(code[pc])) pc++;
+        }
+        return count;
+    }
+
+    /**
+     * Devuelve el listado del programa, una instrucción por línea.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int pc = 0; pc < code.length; pc++) {
+            sb.append(MNEMONICS[code[pc]]);
+            if (code[pc] == CONST) {
+                sb.append(' ').append(constants[code[++pc]]);
+            } else if (code[pc] == CALL1 || code[pc] == CALL2) {
+                sb.append(' ').append(functions[code[++pc]]);
+            } else if (hasOperand(code[pc])) {
+                sb.append(' ').append(code[++pc]);
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    static boolean hasOperand(int opcode) {
+        return opcode == CONST || opcode == STORE || opcode == LOAD || opcode == LOAD_VAR
+                || opcode == CALL1 || opcode == CALL2;
+    }
+
+    /**
+     * Genera el código postfijo recorriendo el árbol en postorden.
+     */
+    private static final class Compiler {
+        // Referencias a cada nodo y variable local asignada a los nodos compartidos
+        private final Map<ExpressionNode, Integer> references = new IdentityHashMap<>();
+        private final Map<ExpressionNode, Integer> localSlots = new IdentityHashMap<>();
+        private int localCount;
+        private int[] code = new int[16];
+        private int length;
+        private double[] constants = new double[4];
+        private int constantCount;
+        private final List<FunctionRegistry.Definition> functions = new ArrayList<>();
+        private final boolean fused;
+        private final boolean fastMath;
+        private int depth;
+        private int maxDepth;
+
+        Compiler(CompilerOptions options) {
+            this.fused = options.isFusedMultiplyAdd();
+            this.fastMath = options.isFastMath();
+        }
+
+        /**
+         * Cuenta cuántas veces se referencia cada nodo del grafo, visitando cada nodo una sola vez.
+         */
+        void countReferences(ExpressionNode node) {
+            if (references.merge(node, 1, Integer::sum) > 1) return;
+            if (node instanceof ExpressionNode.Negate) {
+                countReferences(((ExpressionNode.Negate) node).getOperand());
+            } else if (node instanceof ExpressionNode.Binary) {
+                countReferences(((ExpressionNode.Binary) node).getLeft());
+                countReferences(((ExpressionNode.Binary) node).getRight());
+            } else if (node instanceof ExpressionNode.Function) {
+                ExpressionNode.Function function = (ExpressionNode.Function) node;
+                for (int i = 0; i < function.getArity(); i++) {
+                    countReferences(function.getArgument(i));
+                }
+            }
+        }
+
+        void emit(ExpressionNode node) {
+            boolean shared = references.get(node) > 1
+                    && !(node instanceof ExpressionNode.Constant || node instanceof ExpressionNode.Variable);
+            if (shared) {
+                Integer slot = localSlots.get(node);
+                if (slot != null) {
+                    push(LOAD);
+                    append(slot);
+                    return;
+                }
+            }
+
+            emitOperation(node);
+
+            if (shared) {
+                int slot = localCount++;
+                localSlots.put(node, slot);
+                append(STORE);
+                append(slot);
+            }
+        }
+
+        private void emitOperation(ExpressionNode node) {
+            if (node instanceof ExpressionNode.Constant) {
+                push(CONST);
+                append(constantIndex(((ExpressionNode.Constant) node).getValue()));
+            } else if (node instanceof ExpressionNode.Variable) {
+                int slot = ((ExpressionNode.Variable) node).getSlot();
+                if (slot == 0) {
+                    push(LOAD_X);
+                } else {
+                    push(LOAD_VAR);
+                    append(slot);
+                }
+            } else if (node instanceof ExpressionNode.Negate) {
+                emit(((ExpressionNode.Negate) node).getOperand());
+                append(NEG);
+            } else if (node instanceof ExpressionNode.Binary) {
+                ExpressionNode.Binary binary = (ExpressionNode.Binary) node;
+                if (fused && emitFused(binary)) return;
+                emit(binary.getLeft());
+                emit(binary.getRight());
+                append(binaryOpcode(binary.getOperator()));
+                depth--;
+            } else if (node instanceof ExpressionNode.Function) {
+                ExpressionNode.Function function = (ExpressionNode.Function) node;
+                for (int i = 0; i < function.getArity(); i++) {
+                    emit(function.getArgument(i));
+                }
+                emitCall(function.getDefinition());
+                depth -= function.getArity() - 1;
+            } else {
+                throw new IllegalArgumentException("Nodo no soportado: " + node);
+            }
+        }
+
+        /**
+         * Emite a*b + c y sus variantes como una instrucción fma, si uno de los operandos de la
+         * suma o resta es un producto no compartido.
+         *
+         * @return false si la operación no tiene esa forma
+         */
+        private boolean emitFused(ExpressionNode.Binary binary) {
+            char operator = binary.getOperator();
+            if (operator != '+' && operator != '-') return false;
+            if (isFusible(binary.getLeft())) {
+                // a*b + c, a*b - c = fma(a, b, -c)
+                ExpressionNode.Binary product = (ExpressionNode.Binary) binary.getLeft();
+                emit(product.getLeft());
+                emit(product.getRight());
+                ExpressionNode addend = binary.getRight();
+                if (operator == '-' && addend instanceof ExpressionNode.Constant) {
+                    push(CONST);
+                    append(constantIndex(-((ExpressionNode.Constant) addend).getValue()));
+                } else {
+                    emit(addend);
+                    if (operator == '-') append(NEG);
+                }
+            } else if (isFusible(binary.getRight())) {
+                // c + a*b, c - a*b = fma(-a, b, c)
+                ExpressionNode.Binary product = (ExpressionNode.Binary) binary.getRight();
+                emit(product.getLeft());
+                if (operator == '-') append(NEG);
+                emit(product.getRight());
+                emit(binary.getLeft());
+            } else {
+                return false;
+            }
+            append(FMA);
+            depth -= 2;
+            return true;
+        }
+
+        /**
+         * Un producto puede fusionarse con la suma que lo contiene si su valor no se usa en otra parte.
+         */
+        private boolean isFusible(ExpressionNode node) {
+            return node instanceof ExpressionNode.Binary
+                    && ((ExpressionNode.Binary) node).getOperator() == '*'
+                    && references.get(node) == 1;
+        }
+
+        private static int binaryOpcode(char operator) {
+            switch (operator) {
+                case '+': return ADD;
+                case '-': return SUB;
+                case '*': return MUL;
+                case '/': return DIV;
+                case '^': return POW;
+                default: throw new IllegalArgumentException("Operador desconocido: " + operator);
+            }
+        }
+
+        /**
+         * Emite la instrucción nativa de la función, o una llamada por su índice en la tabla.
+         */
+        private void emitCall(FunctionRegistry.Definition definition) {
+            if (fastMath) {
+                definition = FunctionRegistry.approximate(definition);
+            }
+            if (definition.getOpcode() >= 0) {
+                append(definition.getOpcode());
+                return;
+            }
+            int index = functions.indexOf(definition);
+            if (index < 0) {
+                index = functions.size();
+                functions.add(definition);
+            }
+            append(definition.getArity() == 1 ? CALL1 : CALL2);
+            append(index);
+        }
+
+        /**
+         * Agrega una instrucción que apila un valor.
+         */
+        private void push(int opcode) {
+            append(opcode);
+            depth++;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+
+        private void append(int value) {
+            if (length == code.length) {
+                code = Arrays.copyOf(code, length * 2);
+            }
+            code[length++] = value;
+        }
+
+        /**
+         * Busca la constante en el pool (comparando bits) o la agrega al final.
+         */
+        private int constantIndex(double value) {
+            long bits = Double.doubleToLongBits(value);
+            for (int i = 0; i < constantCount; i++) {
+                if (Double.doubleToLongBits(constants[i]) == bits) return i;
+            }
+            if (constantCount == constants.length) {
+                constants = Arrays.copyOf(constants, constantCount * 2);
+            }
+            constants[constantCount] = value;
+            return constantCount++;
+        }
+
+        int[] code() {
+            return Arrays.copyOf(code, length);
+        }
+
+        double[] constants() {
+            return Arrays.copyOf(constants, constantCount);
+        }
+
+        FunctionRegistry.Definition[] functions() {
+            return functions.toArray(new FunctionRegistry.Definition[0]);
+        }
+    }
+}
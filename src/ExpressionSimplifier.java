@@ -0,0 +1,256 @@
+/**
+ * Simplificación algebraica de árboles de expresión, aplicada una vez al compilar.
+ * <ul>
+ *   <li>Pliega subárboles constantes: 2*pi, exp(0), max(1, 2), -(3).</li>
+ *   <li>Elimina identidades: x+0, x-0, x*1, x/1, x^1, x^0, --x. No elimina 1^x, porque
+ *       Math.pow(1, b) es NaN si b es NaN o infinito.</li>
+ *   <li>Normaliza formas: la constante multiplicativa va a la izquierda (2*x) y la aditiva a
+ *       la derecha (x+2), y los cambios de signo se absorben en las operaciones
+ *       (x+(-y) = x-y, (-2)*(-x) = 2*x). No se agrupan las constantes de una cadena de sumas o
+ *       productos: x+1e20-1e20 no es x+0, y 1e300*(1e10*x) puede desbordar donde 1e310*x no.</li>
+ *   <li>La división por una potencia de dos se convierte en un producto por su recíproco,
+ *       que es exacto.</li>
+ *   <li>Las potencias con exponente entero constante pequeño se expanden en cadenas de
+ *       multiplicaciones por elevación al cuadrado (x^5 = (x*x)*(x*x)*x, con x*x calculado una
+ *       vez gracias a {@link CommonSubexpressions}); los exponentes negativos usan el recíproco.
+ *       Así se evita Math.pow en los polinomios. x^0.5 no se cambia por sqrt(x): difieren en
+ *       -Infinity (Math.pow da Infinity, sqrt NaN) y en -0.0.</li>
+ * </ul>
+ * Las reglas preservan el valor salvo el signo de los ceros y el redondeo al multiplicar en
+ * lugar de usar Math.pow (unos pocos ulp). No se aplican reglas como x*0 = 0 o x-x = 0, que
+ * fallan para infinitos y NaN.
+ */
+public final class ExpressionSimplifier {
+
+    // Mayor exponente entero que se expande en multiplicaciones (a lo sumo 2*log2 productos)
+    private static final int MAX_EXPANDED_EXPONENT = 64;
+
+    private ExpressionSimplifier() {
+    }
+
+    /**
+     * Simplifica un árbol de expresión.
+     *
+     * @param node La raíz del árbol
+     * @return Un árbol equivalente con la menor cantidad de operaciones posible
+     */
+    public static ExpressionNode simplify(ExpressionNode node) {
+        if (node instanceof ExpressionNode.Negate) {
+            return negate(simplify(((ExpressionNode.Negate) node).getOperand()));
+        }
+
+        if (node instanceof ExpressionNode.Binary) {
+            ExpressionNode.Binary binary = (ExpressionNode.Binary) node;
+            return binary(binary.getOperator(), simplify(binary.getLeft()), simplify(binary.getRight()));
+        }
+
+        if (node instanceof ExpressionNode.Function) {
+            ExpressionNode.Function function = (ExpressionNode.Function) node;
+            ExpressionNode[] arguments = new ExpressionNode[function.getArity()];
+            boolean changed = false;
+            boolean constant = true;
+            for (int i = 0; i < arguments.length; i++) {
+                arguments[i] = simplify(function.getArgument(i));
+                changed |= arguments[i] != function.getArgument(i);
+                constant &= isConstant(arguments[i]);
+            }
+            ExpressionNode simplified = changed
+                    ? new ExpressionNode.Function(function.getDefinition(), arguments) : function;
+            return constant ? fold(simplified) : simplified;
+        }
+
+        return node;
+    }
+
+    private static ExpressionNode binary(char operator, ExpressionNode left, ExpressionNode right) {
+        switch (operator) {
+            case '+': return add(left, right);
+            case '-': return subtract(left, right);
+            case '*': return multiply(left, right);
+            case '/': return divide(left, right);
+            case '^': return power(left, right);
+            default: throw new IllegalArgumentException("Operador desconocido: " + operator);
+        }
+    }
+
+    private static ExpressionNode negate(ExpressionNode operand) {
+        if (isConstant(operand)) {
+            return constant(-value(operand));
+        }
+        if (operand instanceof ExpressionNode.Negate) {
+            return ((ExpressionNode.Negate) operand).getOperand();
+        }
+        if (operand instanceof ExpressionNode.Binary) {
+            ExpressionNode.Binary binary = (ExpressionNode.Binary) operand;
+            // -(a-b) = b-a
+            if (binary.getOperator() == '-') {
+                return new ExpressionNode.Binary('-', binary.getRight(), binary.getLeft());
+            }
+            // -(c*a) = (-c)*a
+            if (binary.getOperator() == '*' && isConstant(binary.getLeft())) {
+                return multiply(constant(-value(binary.getLeft())), binary.getRight());
+            }
+        }
+        return new ExpressionNode.Negate(operand);
+    }
+
+    private static ExpressionNode add(ExpressionNode left, ExpressionNode right) {
+        if (isConstant(left) && isConstant(right)) {
+            return constant(value(left) + value(right));
+        }
+
+        // La constante aditiva va a la derecha
+        if (isConstant(left)) {
+            ExpressionNode swap = left;
+            left = right;
+            right = swap;
+        }
+
+        if (isConstant(right)) {
+            return addConstant(left, value(right));
+        }
+
+        if (right instanceof ExpressionNode.Negate) {
+            return subtract(left, ((ExpressionNode.Negate) right).getOperand());
+        }
+        if (left instanceof ExpressionNode.Negate) {
+            return subtract(right, ((ExpressionNode.Negate) left).getOperand());
+        }
+        return new ExpressionNode.Binary('+', left, right);
+    }
+
+    /**
+     * Construye a + c expresando una constante negativa como resta.
+     */
+    private static ExpressionNode addConstant(ExpressionNode left, double c) {
+        if (c == 0) return left;
+        if (c < 0) return new ExpressionNode.Binary('-', left, constant(-c));
+        return new ExpressionNode.Binary('+', left, constant(c));
+    }
+
+    private static ExpressionNode subtract(ExpressionNode left, ExpressionNode right) {
+        if (isConstant(left) && isConstant(right)) {
+            return constant(value(left) - value(right));
+        }
+        if (isConstant(right)) {
+            return add(left, constant(-value(right)));
+        }
+        if (isConstant(left) && value(left) == 0) {
+            return negate(right);
+        }
+        if (right instanceof ExpressionNode.Negate) {
+            return add(left, ((ExpressionNode.Negate) right).getOperand());
+        }
+        return new ExpressionNode.Binary('-', left, right);
+    }
+
+    private static ExpressionNode multiply(ExpressionNode left, ExpressionNode right) {
+        if (isConstant(left) && isConstant(right)) {
+            return constant(value(left) * value(right));
+        }
+
+        // La constante multiplicativa va a la izquierda
+        if (isConstant(right)) {
+            ExpressionNode swap = left;
+            left = right;
+            right = swap;
+        }
+
+        if (isConstant(left)) {
+            double c = value(left);
+            if (c == 1) return right;
+            if (c == -1) return negate(right);
+            if (right instanceof ExpressionNode.Negate) {
+                return multiply(constant(-c), ((ExpressionNode.Negate) right).getOperand());
+            }
+            return new ExpressionNode.Binary('*', left, right);
+        }
+
+        // Los cambios de signo salen del producto para que los absorba una constante o una resta
+        if (left instanceof ExpressionNode.Negate) {
+            return negate(multiply(((ExpressionNode.Negate) left).getOperand(), right));
+        }
+        if (right instanceof ExpressionNode.Negate) {
+            return negate(multiply(left, ((ExpressionNode.Negate) right).getOperand()));
+        }
+        return new ExpressionNode.Binary('*', left, right);
+    }
+
+    private static ExpressionNode divide(ExpressionNode left, ExpressionNode right) {
+        if (isConstant(left) && isConstant(right)) {
+            return constant(value(left) / value(right));
+        }
+        if (isConstant(right)) {
+            double c = value(right);
+            if (c == 1) return left;
+            if (c == -1) return negate(left);
+            if (hasExactReciprocal(c)) {
+                return multiply(constant(1 / c), left);
+            }
+        }
+        if (left instanceof ExpressionNode.Negate && right instanceof ExpressionNode.Negate) {
+            return divide(((ExpressionNode.Negate) left).getOperand(), ((ExpressionNode.Negate) right).getOperand());
+        }
+        return new ExpressionNode.Binary('/', left, right);
+    }
+
+    private static ExpressionNode power(ExpressionNode base, ExpressionNode exponent) {
+        if (isConstant(base) && isConstant(exponent)) {
+            return constant(Math.pow(value(base), value(exponent)));
+        }
+        if (isConstant(exponent)) {
+            double n = value(exponent);
+            if (n == 1) return base;
+            // Math.pow(a, 0) es 1 para cualquier a, incluso NaN
+            if (n == 0) return constant(1);
+            if (n == Math.rint(n) && Math.abs(n) <= MAX_EXPANDED_EXPONENT) {
+                ExpressionNode product = expandPower(base, (int) Math.abs(n));
+                return n > 0 ? product : divide(constant(1), product);
+            }
+        }
+        return new ExpressionNode.Binary('^', base, exponent);
+    }
+
+    /**
+     * Expande base^n (n >= 2) por elevación al cuadrado. Los cuadrados intermedios se repiten
+     * en el árbol y se calculan una sola vez al compartir subexpresiones.
+     */
+    private static ExpressionNode expandPower(ExpressionNode base, int n) {
+        ExpressionNode result = null;
+        ExpressionNode square = base;
+        while (true) {
+            if ((n & 1) != 0) {
+                result = result == null ? square : multiply(result, square);
+            }
+            n >>= 1;
+            if (n == 0) return result;
+            square = multiply(square, square);
+        }
+    }
+
+
+    /**
+     * Indica si 1/c es exacto, es decir, si c es una potencia de dos normal.
+     */
+    private static boolean hasExactReciprocal(double c) {
+        int exponent = Math.getExponent(c);
+        return c != 0 && exponent > Double.MIN_EXPONENT && exponent < Double.MAX_EXPONENT
+                && (Double.doubleToRawLongBits(c) & 0x000FFFFFFFFFFFFFL) == 0;
+    }
+
+    private static boolean isConstant(ExpressionNode node) {
+        return node instanceof ExpressionNode.Constant;
+    }
+
+    private static double value(ExpressionNode node) {
+        return ((ExpressionNode.Constant) node).getValue();
+    }
+
+    private static ExpressionNode fold(ExpressionNode node) {
+        return constant(node.evaluate(0));
+    }
+
+    private static ExpressionNode constant(double value) {
+        return new ExpressionNode.Constant(value);
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Aproximaciones rápidas de sin, cos, exp y log para el modo de matemática rápida (ver
+ * {@link CompilerOptions#withFastMath(boolean)}). Cada una reduce el argumento con una tabla
+ * pequeña, de modo que basta un polinomio de grado bajo sobre un resto diminuto:
+ * <ul>
+ *   <li>sin y cos: x = k*2π/256 + t con |t| &lt;= π/256; sin(x) = S[k]*cos(t) + C[k]*sin(t)
+ *       con polinomios de grado 5 y 6.</li>
+ *   <li>exp: x = k*ln(2)/64 + r con |r| &lt;= ln(2)/128; exp(x) = 2^(k/64)*exp(r), con la potencia
+ *       de una tabla de 64 valores y exp(r) de grado 4.</li>
+ *   <li>log: x = 2^e*m con m en [1, 2); log(x) = e*ln(2) - log(c) + log(1 + (m*c - 1)), con c el
+ *       inverso del centro de uno de 128 tramos de m y log(1 + r) de grado 5.</li>
+ * </ul>
+ * No se distinguen casos especiales dentro del rango rápido, ni se corrige el redondeo final:
+ * los argumentos fuera del rango (|x| &gt; 1e6 en sin y cos, |x| &gt; 708 en exp, x no
+ * normal positivo en log), los infinitos y NaN se delegan en Math.
+ * <p>
+ * Errores máximos frente a StrictMath, medidos con la sección {@code matematica} de Benchmark.
+ * El término siguiente de cada polinomio es menor que el error indicado; el resto es redondeo de
+ * las tablas y de la combinación final.
+ * <ul>
+ *   <li>sin y cos: error absoluto menor que 1e-15.</li>
+ *   <li>exp: error relativo menor que 1e-13.</li>
+ *   <li>log: error absoluto menor que 2e-15.</li>
+ * </ul>
+ * No hay versión rápida de sqrt: Math.sqrt ya es una única instrucción del procesador, exacta
+ * y más rápida que cualquier aproximación. Tampoco de tan: el cociente de sin y cos con una
+ * sola reducción costaba más que Math.tan (intrínseca en la JVM), con un error relativo de
+ * 1e-14.
+ */
+public final class FastMath {
+
+    // sin y cos: 2π/256 partido en tres partes; las dos primeras son la constante double
+    // cortada a 27 bits (k*TRIG_STEP_HI es exacto para |k| < 2^26) y la tercera el error de Math.PI
+    private static final int TRIG_STEPS = 256;
+    private static final double TRIG_STEP = 2 * Math.PI / TRIG_STEPS;
+    private static final double TRIG_STEP_HI =
+            Double.longBitsToDouble(Double.doubleToRawLongBits(TRIG_STEP) & 0xFFFFFFFFFC000000L);
+    private static final double TRIG_STEP_MID = TRIG_STEP - TRIG_STEP_HI;
+    private static final double TRIG_STEP_LO = 2 * 1.2246467991473532e-16 / TRIG_STEPS;
+    private static final double TRIG_STEPS_PER_RADIAN = TRIG_STEPS / (2 * Math.PI);
+    private static final double MAX_TRIGONOMETRIC = 1e6;
+    private static final double[] SINES = new double[TRIG_STEPS];
+    private static final double[] COSINES = new double[TRIG_STEPS];
+
+    // exp: ln(2)/64 partido como en fdlibm (parte alta de 32 bits) y 2^(j/64)
+    private static final int EXP_STEPS = 64;
+    private static final double EXP_STEP_HI = 6.93147180369123816490e-01 / EXP_STEPS;
+    private static final double EXP_STEP_LO = 1.90821492927058770002e-10 / EXP_STEPS;
+    private static final double EXP_STEPS_PER_UNIT = EXP_STEPS / Math.log(2);
+    private static final double MAX_EXPONENTIAL = 708;
+    private static final double[] POWERS_OF_TWO = new double[EXP_STEPS];
+
+    // log: ln(2) partido y, por cada tramo de la mantisa, el inverso de su centro y su logaritmo
+    private static final int LOG_STEPS = 128;
+    private static final double LN2_HI = 6.93147180369123816490e-01;
+    private static final double LN2_LO = 1.90821492927058770002e-10;
+    private static final double[] INVERSES = new double[LOG_STEPS];
+    private static final double[] LOG_INVERSES = new double[LOG_STEPS];
+
+    static {
+        for (int j = 0; j < TRIG_STEPS; j++) {
+            SINES[j] = StrictMath.sin(j * TRIG_STEP);
+            COSINES[j] = StrictMath.cos(j * TRIG_STEP);
+        }
+        for (int j = 0; j < EXP_STEPS; j++) {
+            POWERS_OF_TWO[j] = StrictMath.pow(2, (double) j / EXP_STEPS);
+        }
+        for (int j = 0; j < LOG_STEPS; j++) {
+            INVERSES[j] = 1 / (1 + (j + 0.5) / LOG_STEPS);
+            LOG_INVERSES[j] = StrictMath.log(INVERSES[j]);
+        }
+    }
+
+    private FastMath() {
+    }
+
+    public static double sin(double x) {
+        if (!(Math.abs(x) <= MAX_TRIGONOMETRIC)) return Math.sin(x);
+        double k = Math.rint(x * TRIG_STEPS_PER_RADIAN);
+        double t = reduce(x, k);
+        int j = (int) k & (TRIG_STEPS - 1);
+        double t2 = t * t;
+        return SINES[j] * cosKernel(t2) + COSINES[j] * sinKernel(t, t2);
+    }
+
+    public static double cos(double x) {
+        if (!(Math.abs(x) <= MAX_TRIGONOMETRIC)) return Math.cos(x);
+        double k = Math.rint(x * TRIG_STEPS_PER_RADIAN);
+        double t = reduce(x, k);
+        int j = (int) k & (TRIG_STEPS - 1);
+        double t2 = t * t;
+        return COSINES[j] * cosKernel(t2) - SINES[j] * sinKernel(t, t2);
+    }
+
+    /**
+     * t = x - k*2π/256, exacto salvo el último redondeo para |k| < 2^26.
+     */
+    private static double reduce(double x, double k) {
+        return ((x - k * TRIG_STEP_HI) - k * TRIG_STEP_MID) - k * TRIG_STEP_LO;
+    }
+
+    /**
+     * sin(t) para |t| <= π/256; el término siguiente, t^7/7!, es menor que 1e-17.
+     */
+    private static double sinKernel(double t, double t2) {
+        return t + t * t2 * (-1.0 / 6 + t2 * (1.0 / 120));
+    }
+
+    /**
+     * cos(t) para |t| <= π/256; el término siguiente, t^8/8!, es menor que 1e-20.
+     */
+    private static double cosKernel(double t2) {
+        return 1 + t2 * (-0.5 + t2 * (1.0 / 24 + t2 * (-1.0 / 720)));
+    }
+
+    public static double exp(double x) {
+        if (!(Math.abs(x) <= MAX_EXPONENTIAL)) return Math.exp(x);
+        double k = Math.rint(x * EXP_STEPS_PER_UNIT);
+        double r = (x - k * EXP_STEP_HI) - k * EXP_STEP_LO;
+        int steps = (int) k;
+        // exp(r) para |r| <= ln(2)/128; el término siguiente, r^5/5!, es menor que 4e-14
+        double p = 1 + r * (1 + r * (1.0 / 2 + r * (1.0 / 6 + r * (1.0 / 24))));
+        double scale = Double.longBitsToDouble((long) ((steps >> 6) + Double.MAX_EXPONENT) << 52);
+        return POWERS_OF_TWO[steps & (EXP_STEPS - 1)] * p * scale;
+    }
+
+    public static double log(double x) {
+        if (!(x >= Double.MIN_NORMAL && x <= Double.MAX_VALUE)) return Math.log(x);
+        long bits = Double.doubleToRawLongBits(x);
+        int e = Math.getExponent(x);
+        double m = Double.longBitsToDouble((bits & 0x000FFFFFFFFFFFFFL) | 0x3FF0000000000000L);
+        int j = (int) (bits >>> 45) & (LOG_STEPS - 1);
+        // log(1 + r) para |r| <= 1/256; el término siguiente, r^6/6, es menor que 1e-15
+        double r = m * INVERSES[j] - 1;
+        double p = r - r * r * (1.0 / 2 - r * (1.0 / 3 - r * (1.0 / 4 - r * (1.0 / 5))));
+        return e * LN2_HI + ((e * LN2_LO - LOG_INVERSES[j]) + p);
+    }
+}
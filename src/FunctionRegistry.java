@@ -0,0 +1,373 @@
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Registro de las constantes y funciones con nombre que aceptan las expresiones.
+ * Los nombres se resuelven al analizar la expresión: una constante se reemplaza por su valor y
+ * una función queda ligada a su definición, de modo que evaluar no busca nombres.
+ * <p>
+ * Además de las funciones nativas (sin, cos, tan, sqrt, log o ln, exp), que tienen
+ * instrucciones propias en {@link ExpressionProgram}, el registro trae sinh, cosh, tanh, atan,
+ * abs, min y max, y admite funciones propias escritas como lambdas de una o dos variables.
+ * {@link BytecodeCompiler} las llama directamente: las de Math con invokestatic y las lambdas a
+ * través de un campo static final de la clase generada, que el JIT trata como constante e
+ * inlinea igual que una llamada a Math. pow(a, b) es otra forma de escribir a^b.
+ * <p>
+ * Las definiciones no pueden reemplazarse, de modo que las expresiones ya compiladas (y las
+ * que guarda {@link ExpressionCache}) siguen siendo válidas. El registro es global al proceso
+ * y thread-safe.
+ */
+public final class FunctionRegistry {
+
+    private static final Map<String, Double> CONSTANTS = new ConcurrentHashMap<>();
+    private static final Map<String, Definition> FUNCTIONS = new ConcurrentHashMap<>();
+    // Las versiones de FastMath de las funciones nativas, por nombre (fuera del registro)
+    private static final Map<String, Definition> APPROXIMATIONS = new ConcurrentHashMap<>();
+
+    /**
+     * El escalón de Heaviside (1 en t >= 0, 0 en t < 0, NaN en NaN), fuera del registro: solo
+     * aparece en las derivadas de min y max, que eligen la derivada de uno de sus argumentos.
+     * Es no decreciente, de modo que se acota sobre intervalos por sus extremos.
+     */
+    static final Definition STEP = new Definition("step", t -> t >= 0 ? 1 : t < 0 ? 0 : Double.NaN, null, -1, null,
+            "0", true, null, 0);
+
+    static {
+        CONSTANTS.put("e", Math.E);
+        CONSTANTS.put("pi", Math.PI);
+
+        builtIn("sin", Math::sin, ExpressionProgram.SIN, "cos(x)");
+        builtIn("cos", Math::cos, ExpressionProgram.COS, "-sin(x)");
+        builtIn("tan", Math::tan, ExpressionProgram.TAN, "1/cos(x)^2");
+        builtIn("sqrt", Math::sqrt, ExpressionProgram.SQRT, "1/(2*sqrt(x))");
+        builtIn("log", Math::log, ExpressionProgram.LOG, "1/x");
+        builtIn("exp", Math::exp, ExpressionProgram.EXP, "exp(x)");
+        FUNCTIONS.put("ln", FUNCTIONS.get("log"));
+
+        approximation("sin", FastMath::sin);
+        approximation("cos", FastMath::cos);
+        approximation("exp", FastMath::exp);
+        approximation("log", FastMath::log);
+
+        math("sinh", Math::sinh, "cosh(x)", true);
+        math("cosh", Math::cosh, "sinh(x)", false);
+        math("tanh", Math::tanh, "1-tanh(x)^2", true);
+        math("atan", Math::atan, "1/(1+x^2)", true);
+        math("abs", Math::abs, "x/abs(x)", false);
+        math("min", Math::min, -1);
+        math("max", Math::max, 1);
+    }
+
+    private FunctionRegistry() {
+    }
+
+    /**
+     * Define una constante con nombre. Una variable con el mismo nombre (x, o una declarada al
+     * analizar) la oculta en las expresiones que la usan.
+     *
+     * @param name  El nombre, en minúsculas
+     * @param value El valor
+     * @throws IllegalArgumentException si el nombre no es válido o ya está definido
+     */
+    public static void defineConstant(String name, double value) {
+        checkName(name);
+        if (FUNCTIONS.containsKey(name) || CONSTANTS.putIfAbsent(name, value) != null) {
+            throw new IllegalArgumentException("El nombre ya está definido: " + name);
+        }
+    }
+
+    /**
+     * Define una función de una variable sin derivada conocida.
+     *
+     * @param name           El nombre, en minúsculas
+     * @param implementation La implementación
+     * @throws IllegalArgumentException si el nombre no es válido o ya está definido
+     */
+    public static void defineFunction(String name, DoubleUnaryOperator implementation) {
+        defineFunction(name, implementation, null, false);
+    }
+
+    /**
+     * Define una función de una variable.
+     *
+     * @param name           El nombre, en minúsculas
+     * @param implementation La implementación
+     * @param derivative     La derivada como expresión en x (por ejemplo "cosh(x)"), o null si no
+     *                       se conoce; se usa para derivar las expresiones que llaman a la función
+     * @param increasing     Si la función es no decreciente, lo que permite acotarla sobre
+     *                       intervalos por sus extremos
+     * @throws IllegalArgumentException si el nombre no es válido o ya está definido
+     */
+    public static void defineFunction(String name, DoubleUnaryOperator implementation, String derivative,
+                                      boolean increasing) {
+        register(new Definition(name, implementation, null, -1, null, derivative, increasing, null, 0));
+    }
+
+    /**
+     * Define una función de dos variables, que se llama como nombre(a, b). Estas funciones no
+     * tienen derivada ni se acotan sobre intervalos.
+     *
+     * @param name           El nombre, en minúsculas
+     * @param implementation La implementación
+     * @throws IllegalArgumentException si el nombre no es válido o ya está definido
+     */
+    public static void defineFunction(String name, DoubleBinaryOperator implementation) {
+        register(new Definition(name, null, implementation, -1, null, null, false, null, 0));
+    }
+
+    /**
+     * Busca el valor de una constante.
+     *
+     * @param name El nombre de la constante
+     * @return El valor, o null si la constante no existe
+     */
+    public static Double lookupConstant(String name) {
+        return CONSTANTS.get(name);
+    }
+
+    /**
+     * Busca la definición de una función.
+     *
+     * @param name El nombre de la función
+     * @return La definición, o null si la función no existe
+     */
+    public static Definition lookupFunction(String name) {
+        return FUNCTIONS.get(name);
+    }
+
+    /**
+     * Indica si el nombre está ocupado por una constante, una función o la forma pow(a, b).
+     */
+    public static boolean isDefined(String name) {
+        return CONSTANTS.containsKey(name) || FUNCTIONS.containsKey(name) || name.equals("pow");
+    }
+
+    /**
+     * Los nombres de las constantes definidas, en orden alfabético.
+     */
+    public static SortedSet<String> getConstantNames() {
+        return new TreeSet<>(CONSTANTS.keySet());
+    }
+
+    /**
+     * Los nombres de las funciones definidas (más pow), en orden alfabético.
+     */
+    public static SortedSet<String> getFunctionNames() {
+        SortedSet<String> names = new TreeSet<>(FUNCTIONS.keySet());
+        names.add("pow");
+        return names;
+    }
+
+    /**
+     * La versión de {@link FastMath} de una función nativa, que se llama con call1 en el modo
+     * de matemática rápida.
+     *
+     * @return La aproximación, o la misma definición si la función no tiene una
+     */
+    static Definition approximate(Definition definition) {
+        Definition approximation = definition.opcode >= 0 ? APPROXIMATIONS.get(definition.name) : null;
+        return approximation != null ? approximation : definition;
+    }
+
+    private static void register(Definition definition) {
+        checkName(definition.name);
+        if (CONSTANTS.containsKey(definition.name) || FUNCTIONS.putIfAbsent(definition.name, definition) != null) {
+            throw new IllegalArgumentException("El nombre ya está definido: " + definition.name);
+        }
+    }
+
+    /**
+     * Los nombres son letras minúsculas, porque el parser lee identificadores de letras y
+     * parseFunction pasa la expresión a minúsculas.
+     */
+    private static void checkName(String name) {
+        if (name.isEmpty() || !name.chars().allMatch(c -> c >= 'a' && c <= 'z')) {
+            throw new IllegalArgumentException("Nombre inválido: " + name);
+        }
+        if (name.equals("pow") || CONSTANTS.containsKey(name)) {
+            throw new IllegalArgumentException("El nombre ya está definido: " + name);
+        }
+    }
+
+    private static void builtIn(String name, DoubleUnaryOperator implementation, int opcode, String derivative) {
+        FUNCTIONS.put(name, new Definition(name, implementation, null, opcode, "java/lang/Math", derivative, false, null,
+                0));
+    }
+
+    private static void approximation(String name, DoubleUnaryOperator implementation) {
+        Definition exact = FUNCTIONS.get(name);
+        APPROXIMATIONS.put(name, new Definition(name, implementation, null, -1, "FastMath", exact.derivative, false,
+                exact, 0));
+    }
+
+    private static void math(String name, DoubleUnaryOperator implementation, String derivative, boolean increasing) {
+        FUNCTIONS.put(name, new Definition(name, implementation, null, -1, "java/lang/Math", derivative, increasing, null,
+                0));
+    }
+
+    /**
+     * Registra min o max: selection es 1 si la función devuelve el mayor de sus argumentos y -1
+     * si devuelve el menor.
+     */
+    private static void math(String name, DoubleBinaryOperator implementation, int selection) {
+        FUNCTIONS.put(name, new Definition(name, null, implementation, -1, "java/lang/Math", null, true, null,
+                selection));
+    }
+
+    /**
+     * La definición de una función de una o dos variables. Es inmutable salvo por la derivada,
+     * que se analiza la primera vez que se pide.
+     */
+    public static final class Definition {
+        private final String name;
+        private final DoubleUnaryOperator unary;
+        private final DoubleBinaryOperator binary;
+        private final int opcode;
+        private final String owner;
+        private final String derivative;
+        private final boolean increasing;
+        private final Definition approximated;
+        private final int selection;
+
+        private volatile ExpressionNode derivativeTree;
+        private volatile ExpressionEvaluator derivativeFunction;
+
+        private Definition(String name, DoubleUnaryOperator unary, DoubleBinaryOperator binary, int opcode,
+                           String owner, String derivative, boolean increasing, Definition approximated,
+                           int selection) {
+            this.name = name;
+            this.unary = unary;
+            this.binary = binary;
+            this.opcode = opcode;
+            this.owner = owner;
+            this.derivative = derivative;
+            this.increasing = increasing;
+            this.approximated = approximated;
+            this.selection = selection;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * La cantidad de argumentos: 1 o 2.
+         */
+        public int getArity() {
+            return unary != null ? 1 : 2;
+        }
+
+        public double apply(double a) {
+            return unary.applyAsDouble(a);
+        }
+
+        public double apply(double a, double b) {
+            return binary.applyAsDouble(a, b);
+        }
+
+        /**
+         * La implementación como lambda: DoubleUnaryOperator o DoubleBinaryOperator según la aridad.
+         */
+        Object getImplementation() {
+            return unary != null ? unary : binary;
+        }
+
+        /**
+         * El código de operación nativo de {@link ExpressionProgram}, o -1 si la función se llama.
+         */
+        int getOpcode() {
+            return opcode;
+        }
+
+        /**
+         * La clase (nombre interno) con un método estático del mismo nombre que la función, o null
+         * si la función es una lambda.
+         */
+        String getOwner() {
+            return owner;
+        }
+
+        /**
+         * La función nativa de la que esta es una aproximación de {@link FastMath}, o null.
+         */
+        Definition getApproximated() {
+            return approximated;
+        }
+
+        /**
+         * Indica si la función es no decreciente en cada argumento.
+         */
+        public boolean isIncreasing() {
+            return increasing;
+        }
+
+        /**
+         * Indica si se conoce la derivada: la declarada de una función de una variable, o la
+         * derivada por tramos de min y max.
+         */
+        public boolean hasDerivative() {
+            return derivative != null || selection != 0;
+        }
+
+        /**
+         * 1 si la función devuelve el mayor de sus dos argumentos (max), -1 si devuelve el menor
+         * (min) y 0 en otro caso. La derivada de estas funciones es la del argumento elegido.
+         */
+        int getSelection() {
+            return selection;
+        }
+
+        /**
+         * El peso de la derivada del primer argumento de min o max en (a, b): 1 si la función
+         * elige a (también en un empate), 0 si elige b, NaN si a - b es NaN. El del segundo
+         * argumento es 1 menos este.
+         */
+        double firstArgumentWeight(double a, double b) {
+            return STEP.apply(selection > 0 ? a - b : b - a);
+        }
+
+        /**
+         * La derivada como árbol en términos de x, analizada la primera vez que se pide.
+         *
+         * @throws IllegalArgumentException si la derivada no se conoce
+         */
+        ExpressionNode getDerivativeTree() {
+            ExpressionNode tree = derivativeTree;
+            if (tree == null) {
+                if (derivative == null) {
+                    throw new IllegalArgumentException("No se conoce la derivada de la función: " + name);
+                }
+                tree = ExpressionParser.parse(derivative);
+                derivativeTree = tree;
+            }
+            return tree;
+        }
+
+        /**
+         * Evalúa la derivada en un punto, compilándola la primera vez (lo usa la evaluación con
+         * números duales).
+         *
+         * @throws IllegalArgumentException si la derivada no se conoce
+         */
+        double derivativeAt(double a) {
+            ExpressionEvaluator function = derivativeFunction;
+            if (function == null) {
+                if (derivative == null) {
+                    throw new IllegalArgumentException("No se conoce la derivada de la función: " + name);
+                }
+                function = ExpressionEvaluator.compile(derivative);
+                derivativeFunction = function;
+            }
+            return function.applyAsDouble(a);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
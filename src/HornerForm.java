@@ -0,0 +1,243 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reescritura de polinomios en forma de Horner, aplicada al árbol recién analizado.
+ * Una suma de monomios en una variable con coeficientes constantes, como 3*x^4 - 2*x^3 + x - 7,
+ * se reemplaza por ((3*x - 2)*x^2 + 1)*x - 7: los coeficientes de los términos semejantes se
+ * acumulan y cada grado cuesta una multiplicación, en lugar de las potencias y los productos por
+ * coeficiente de la forma expandida. Los grados ausentes se saltan multiplicando por la potencia
+ * que falta, que {@link ExpressionSimplifier} expande por elevación al cuadrado.
+ * <p>
+ * Los términos que no son monomios de la variable (sin(x)/x, otras variables) se suman al final.
+ * Solo se reescriben las sumas de grado 2 o más con al menos dos monomios, y no se desarrollan
+ * productos ni potencias de sumas: (x - 1)^10 se mantiene, ya que su forma expandida pierde
+ * precisión cerca de la raíz.
+ * <p>
+ * Como toda reagrupación, la forma de Horner cambia el redondeo (en general lo mejora: cada paso
+ * redondea una vez, y con {@link CompilerOptions#withFusedMultiplyAdd(boolean)} cada paso es un
+ * único fma). No se reescribe una suma cuyos términos semejantes se cancelan (x^2 - x^2) o
+ * cuyos coeficientes no son finitos, ya que cambiaría el resultado para infinitos y NaN.
+ */
+public final class HornerForm {
+
+    // Mayor grado que se reescribe, el mismo límite que la expansión de potencias
+    private static final int MAX_DEGREE = 64;
+
+    private HornerForm() {
+    }
+
+    /**
+     * Reescribe en forma de Horner los polinomios de un árbol.
+     *
+     * @param node La raíz del árbol, tal como lo deja {@link ExpressionParser}
+     * @return Un árbol equivalente con los polinomios en forma de Horner
+     */
+    public static ExpressionNode rewrite(ExpressionNode node) {
+        if (node instanceof ExpressionNode.Negate) {
+            ExpressionNode.Negate negate = (ExpressionNode.Negate) node;
+            ExpressionNode operand = rewrite(negate.getOperand());
+            return operand != negate.getOperand() ? new ExpressionNode.Negate(operand) : node;
+        }
+
+        if (node instanceof ExpressionNode.Binary) {
+            ExpressionNode.Binary binary = (ExpressionNode.Binary) node;
+            if (binary.getOperator() == '+' || binary.getOperator() == '-') {
+                ExpressionNode polynomial = rewriteSum(binary);
+                if (polynomial != null) return polynomial;
+            }
+            ExpressionNode left = rewrite(binary.getLeft());
+            ExpressionNode right = rewrite(binary.getRight());
+            return left != binary.getLeft() || right != binary.getRight()
+                    ? new ExpressionNode.Binary(binary.getOperator(), left, right) : node;
+        }
+
+        if (node instanceof ExpressionNode.Function) {
+            ExpressionNode.Function function = (ExpressionNode.Function) node;
+            ExpressionNode[] arguments = new ExpressionNode[function.getArity()];
+            boolean changed = false;
+            for (int i = 0; i < arguments.length; i++) {
+                arguments[i] = rewrite(function.getArgument(i));
+                changed |= arguments[i] != function.getArgument(i);
+            }
+            return changed ? new ExpressionNode.Function(function.getDefinition(), arguments) : node;
+        }
+
+        return node;
+    }
+
+    /**
+     * Reescribe una cadena de sumas y restas si contiene un polinomio que valga la pena.
+     *
+     * @return La forma de Horner más los demás términos, o null si la suma se deja como está
+     */
+    private static ExpressionNode rewriteSum(ExpressionNode.Binary sum) {
+        List<ExpressionNode> terms = new ArrayList<>();
+        List<Boolean> subtracted = new ArrayList<>();
+        collectTerms(sum, false, terms, subtracted);
+
+        double[] coefficients = new double[MAX_DEGREE + 1];
+        int[] counts = new int[MAX_DEGREE + 1];
+        ExpressionNode.Variable variable = null;
+        int degree = 0;
+        int monomials = 0;
+        List<ExpressionNode> rest = new ArrayList<>();
+        List<Boolean> restSubtracted = new ArrayList<>();
+
+        for (int i = 0; i < terms.size(); i++) {
+            Monomial monomial = monomial(terms.get(i));
+            if (monomial != null && monomial.degree > 0 && variable == null) {
+                variable = monomial.variable;
+            }
+            if (monomial == null || (monomial.degree > 0 && monomial.variable.getSlot() != variable.getSlot())) {
+                rest.add(terms.get(i));
+                restSubtracted.add(subtracted.get(i));
+                continue;
+            }
+            coefficients[monomial.degree] += subtracted.get(i) ? -monomial.coefficient : monomial.coefficient;
+            counts[monomial.degree]++;
+            degree = Math.max(degree, monomial.degree);
+            monomials++;
+        }
+
+        if (degree < 2 || monomials < 2) return null;
+        for (int d = 0; d <= degree; d++) {
+            if (counts[d] > 0 && (coefficients[d] == 0 || !Double.isFinite(coefficients[d]))) return null;
+        }
+
+        ExpressionNode result = new ExpressionNode.Constant(coefficients[degree]);
+        int previous = degree;
+        for (int d = degree - 1; d >= 0; d--) {
+            if (counts[d] == 0) continue;
+            result = new ExpressionNode.Binary('+',
+                    new ExpressionNode.Binary('*', result, power(variable, previous - d)),
+                    new ExpressionNode.Constant(coefficients[d]));
+            previous = d;
+        }
+        if (previous > 0) {
+            result = new ExpressionNode.Binary('*', result, power(variable, previous));
+        }
+
+        for (int i = 0; i < rest.size(); i++) {
+            result = new ExpressionNode.Binary(restSubtracted.get(i) ? '-' : '+', result, rewrite(rest.get(i)));
+        }
+        return result;
+    }
+
+    /**
+     * Aplana una cadena de sumas, restas y cambios de signo en sus términos, indicando cuáles
+     * se restan.
+     */
+    private static void collectTerms(ExpressionNode node, boolean subtract, List<ExpressionNode> terms,
+                                     List<Boolean> subtracted) {
+        if (node instanceof ExpressionNode.Binary) {
+            ExpressionNode.Binary binary = (ExpressionNode.Binary) node;
+            if (binary.getOperator() == '+' || binary.getOperator() == '-') {
+                collectTerms(binary.getLeft(), subtract, terms, subtracted);
+                collectTerms(binary.getRight(), subtract ^ binary.getOperator() == '-', terms, subtracted);
+                return;
+            }
+        }
+        if (node instanceof ExpressionNode.Negate) {
+            collectTerms(((ExpressionNode.Negate) node).getOperand(), !subtract, terms, subtracted);
+            return;
+        }
+        terms.add(node);
+        subtracted.add(subtract);
+    }
+
+    /**
+     * Interpreta un término como c*v^n: productos, cocientes por constantes, potencias enteras
+     * no negativas y cambios de signo de constantes y de una única variable.
+     *
+     * @return El monomio, o null si el término no lo es
+     */
+    private static Monomial monomial(ExpressionNode node) {
+        if (node instanceof ExpressionNode.Constant) {
+            return new Monomial(((ExpressionNode.Constant) node).getValue(), null, 0);
+        }
+        if (node instanceof ExpressionNode.Variable) {
+            return new Monomial(1, (ExpressionNode.Variable) node, 1);
+        }
+        if (node instanceof ExpressionNode.Negate) {
+            Monomial operand = monomial(((ExpressionNode.Negate) node).getOperand());
+            return operand == null ? null : new Monomial(-operand.coefficient, operand.variable, operand.degree);
+        }
+
+        if (node instanceof ExpressionNode.Function) {
+            // Una llamada con argumentos constantes es un coeficiente: sqrt(2), exp(1)
+            return hasVariables(node) ? null : new Monomial(node.evaluate(0), null, 0);
+        }
+
+        if (!(node instanceof ExpressionNode.Binary)) return null;
+        ExpressionNode.Binary binary = (ExpressionNode.Binary) node;
+        // Solo se pliegan los subárboles sin variables: y^0*2 no se evalúa en 0 (leería y), sino
+        // que queda como un término más de la suma
+        if (!hasVariables(node)) {
+            return new Monomial(node.evaluate(0), null, 0);
+        }
+        Monomial left = monomial(binary.getLeft());
+        Monomial right = monomial(binary.getRight());
+        if (left == null || right == null || (left.degree == 0 && right.degree == 0)) return null;
+
+        switch (binary.getOperator()) {
+            case '*':
+                if (left.degree > 0 && right.degree > 0 && left.variable.getSlot() != right.variable.getSlot()) {
+                    return null;
+                }
+                int degree = left.degree + right.degree;
+                if (degree > MAX_DEGREE) return null;
+                return new Monomial(left.coefficient * right.coefficient,
+                        left.variable != null ? left.variable : right.variable, degree);
+            case '/':
+                if (right.degree > 0) return null;
+                return new Monomial(left.coefficient / right.coefficient, left.variable, left.degree);
+            case '^':
+                double n = right.coefficient;
+                if (right.degree > 0 || n != Math.rint(n) || n <= 0 || left.degree * n > MAX_DEGREE) return null;
+                return new Monomial(Math.pow(left.coefficient, n), left.variable, left.degree * (int) n);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Indica si el subárbol lee alguna variable.
+     */
+    private static boolean hasVariables(ExpressionNode node) {
+        if (node instanceof ExpressionNode.Variable) return true;
+        if (node instanceof ExpressionNode.Negate) {
+            return hasVariables(((ExpressionNode.Negate) node).getOperand());
+        }
+        if (node instanceof ExpressionNode.Binary) {
+            ExpressionNode.Binary binary = (ExpressionNode.Binary) node;
+            return hasVariables(binary.getLeft()) || hasVariables(binary.getRight());
+        }
+        if (node instanceof ExpressionNode.Function) {
+            ExpressionNode.Function function = (ExpressionNode.Function) node;
+            for (int i = 0; i < function.getArity(); i++) {
+                if (hasVariables(function.getArgument(i))) return true;
+            }
+        }
+        return false;
+    }
+
+    private static ExpressionNode power(ExpressionNode.Variable variable, int n) {
+        return n == 1 ? variable : new ExpressionNode.Binary('^', variable, new ExpressionNode.Constant(n));
+    }
+
+    /**
+     * Un término c*v^n; la variable es null si el grado es cero.
+     */
+    private static final class Monomial {
+        final double coefficient;
+        final ExpressionNode.Variable variable;
+        final int degree;
+
+        Monomial(double coefficient, ExpressionNode.Variable variable, int degree) {
+            this.coefficient = coefficient;
+            this.variable = variable;
+            this.degree = degree;
+        }
+    }
+}
@@ -0,0 +1,409 @@
+/**
+ * Evaluación de una expresión compilada sobre intervalos: dado [lo, hi] calcula un intervalo
+ * que contiene con seguridad todos los valores de f en [lo, hi]. Cada operación redondea sus
+ * extremos hacia afuera (un ulp, que cubre tanto el redondeo de la aritmética como el error de
+ * a lo sumo 1 ulp de Math.sin, Math.exp, etc.), de modo que la cota es válida a pesar del
+ * punto flotante. Si el resultado excluye el cero, f no tiene raíces en [lo, hi].
+ * <p>
+ * Donde la función no está definida en ningún punto del intervalo (sqrt o log de un intervalo
+ * negativo) el resultado es vacío y ambos extremos son NaN. Donde no es posible acotarla
+ * (división por un intervalo que contiene el cero, polos de tan) el resultado es
+ * [-Infinity, Infinity].
+ * <p>
+ * De las funciones de {@link FunctionRegistry} que no son nativas solo se acotan las que se
+ * declararon no decrecientes, por sus valores en los extremos y con un redondeo hacia afuera de
+ * {@value #REGISTERED_ULPS} ulp, ya que su precisión no es la de Math.sin; las demás dan
+ * [-Infinity, Infinity].
+ * <p>
+ * La aritmética de intervalos sobreestima cuando un mismo valor aparece varias veces; el caso
+ * más común, el cuadrado que deja la expansión de potencias (x*x), se reconoce al construir el
+ * evaluador y se acota exactamente.
+ * <p>
+ * No es thread-safe: las pilas de extremos pertenecen al evaluador. Se obtiene con
+ * {@link SymbolicFunction#interval()}.
+ */
+public final class IntervalEvaluator {
+
+    private static final double TWO_PI = 2 * Math.PI;
+    private static final double HALF_PI = Math.PI / 2;
+    private static final int REGISTERED_ULPS = 4;
+
+    private final ExpressionProgram program;
+    private final boolean[] squares;
+    private final double[] lower;
+    private final double[] upper;
+
+    IntervalEvaluator(ExpressionProgram program) {
+        this.program = program;
+        this.squares = findSquares(program.code());
+        this.lower = program.newStack();
+        this.upper = program.newStack();
+    }
+
+    /**
+     * Marca las multiplicaciones cuyos dos operandos son el mismo valor: x*x (load_x, load_x) o
+     * una subexpresión compartida por sí misma (store k o load k, seguido de load k).
+     */
+    private static boolean[] findSquares(int[] code) {
+        boolean[] squares = new boolean[code.length];
+        int previous = -1;
+        int beforePrevious = -1;
+        for (int pc = 0; pc < code.length; pc++) {
+            if (code[pc] == ExpressionProgram.MUL && beforePrevious >= 0) {
+                squares[pc] = sameValue(code, beforePrevious, previous);
+            }
+            beforePrevious = previous;
+            previous = pc;
+            if (ExpressionProgram.hasOperand(code[pc])) {
+                pc++;
+            }
+        }
+        return squares;
+    }
+
+    private static boolean sameValue(int[] code, int first, int second) {
+        if (code[second] == ExpressionProgram.LOAD_X) {
+            return code[first] == ExpressionProgram.LOAD_X;
+        }
+        return code[second] == ExpressionProgram.LOAD
+                && (code[first] == ExpressionProgram.STORE || code[first] == ExpressionProgram.LOAD)
+                && code[first + 1] == code[second + 1];
+    }
+
+    /**
+     * Acota la función sobre [lo, hi]. Los extremos quedan disponibles en {@link #getLower()} y
+     * {@link #getUpper()}.
+     *
+     * @param lo El extremo inferior del intervalo
+     * @param hi El extremo superior del intervalo
+     * @throws IllegalArgumentException si lo es mayor que hi
+     */
+    public void evaluate(double lo, double hi) {
+        if (!(lo <= hi)) {
+            throw new IllegalArgumentException("El intervalo no es válido: [" + lo + ", " + hi + "]");
+        }
+
+        final int[] code = program.code();
+        final double[] constants = program.constants();
+        final double[] lower = this.lower;
+        final double[] upper = this.upper;
+        int sp = program.getLocals() - 1;
+
+        for (int pc = 0; pc < code.length; pc++) {
+            switch (code[pc]) {
+                case ExpressionProgram.CONST:
+                    double c = constants[code[++pc]];
+                    lower[++sp] = c;
+                    upper[sp] = c;
+                    break;
+                case ExpressionProgram.LOAD_X:
+                    lower[++sp] = lo;
+                    upper[sp] = hi;
+                    break;
+                case ExpressionProgram.LOAD_VAR:
+                    ExpressionProgram.unboundVariable(code[pc + 1]);
+                    break;
+                case ExpressionProgram.CALL1: call(sp, program.functions()[code[++pc]]); break;
+                case ExpressionProgram.CALL2: sp--; call2(sp, program.functions()[code[++pc]]); break;
+                case ExpressionProgram.STORE:
+                    lower[code[pc + 1]] = lower[sp];
+                    upper[code[++pc]] = upper[sp];
+                    break;
+                case ExpressionProgram.LOAD:
+                    lower[++sp] = lower[code[pc + 1]];
+                    upper[sp] = upper[code[++pc]];
+                    break;
+                case ExpressionProgram.NEG:
+                    double negated = -upper[sp];
+                    upper[sp] = -lower[sp];
+                    lower[sp] = negated;
+                    break;
+                case ExpressionProgram.ADD: sp--; add(sp, lower[sp + 1], upper[sp + 1]); break;
+                case ExpressionProgram.SUB: sp--; add(sp, -upper[sp + 1], -lower[sp + 1]); break;
+                case ExpressionProgram.MUL:
+                    sp--;
+                    if (squares[pc]) {
+                        square(sp);
+                    } else {
+                        multiply(sp);
+                    }
+                    break;
+                case ExpressionProgram.FMA:
+                    // El producto y la suma redondeados hacia afuera contienen al resultado exacto
+                    sp -= 2;
+                    multiply(sp);
+                    add(sp, lower[sp + 2], upper[sp + 2]);
+                    break;
+                case ExpressionProgram.DIV: sp--; divide(sp); break;
+                case ExpressionProgram.POW: sp--; power(sp); break;
+                case ExpressionProgram.SIN: sine(sp, 0); break;
+                case ExpressionProgram.COS: sine(sp, HALF_PI); break;
+                case ExpressionProgram.TAN: tangent(sp); break;
+                case ExpressionProgram.SQRT:
+                    if (upper[sp] < 0) {
+                        setEmpty(sp);
+                    } else {
+                        setOutward(sp, Math.sqrt(Math.max(lower[sp], 0)), Math.sqrt(upper[sp]));
+                        lower[sp] = Math.max(lower[sp], 0);
+                    }
+                    break;
+                case ExpressionProgram.LOG:
+                    if (upper[sp] < 0) {
+                        setEmpty(sp);
+                    } else {
+                        setOutward(sp, Math.log(Math.max(lower[sp], 0)), Math.log(upper[sp]));
+                    }
+                    break;
+                case ExpressionProgram.EXP:
+                    setOutward(sp, Math.exp(lower[sp]), Math.exp(upper[sp]));
+                    lower[sp] = Math.max(lower[sp], 0);
+                    break;
+                default: throw new IllegalStateException("Código de operación desconocido: " + code[pc]);
+            }
+        }
+    }
+
+    /**
+     * Obtiene el extremo inferior calculado por la última llamada a evaluate.
+     */
+    public double getLower() {
+        return lower[program.getLocals()];
+    }
+
+    /**
+     * Obtiene el extremo superior calculado por la última llamada a evaluate.
+     */
+    public double getUpper() {
+        return upper[program.getLocals()];
+    }
+
+    /**
+     * Indica si la última cota calculada demuestra que la función no se anula en el intervalo:
+     * la cota no contiene el cero o es vacía.
+     */
+    public boolean excludesZero() {
+        double lo = getLower();
+        double hi = getUpper();
+        return lo > 0 || hi < 0 || (Double.isNaN(lo) && Double.isNaN(hi));
+    }
+
+    /**
+     * Suma [bl, bh] al intervalo de la posición sp. Infinito menos infinito no acota nada.
+     */
+    private void add(int sp, double bl, double bh) {
+        double al = lower[sp], ah = upper[sp];
+        if (isEmpty(al, ah) || isEmpty(bl, bh)) {
+            setEmpty(sp);
+            return;
+        }
+        double lo = al + bl, hi = ah + bh;
+        lower[sp] = Double.isNaN(lo) ? Double.NEGATIVE_INFINITY : Math.nextDown(lo);
+        upper[sp] = Double.isNaN(hi) ? Double.POSITIVE_INFINITY : Math.nextUp(hi);
+    }
+
+    private void multiply(int sp) {
+        double al = lower[sp], ah = upper[sp], bl = lower[sp + 1], bh = upper[sp + 1];
+        if (isEmpty(al, ah) || isEmpty(bl, bh)) {
+            setEmpty(sp);
+            return;
+        }
+        double p1 = product(al, bl), p2 = product(al, bh), p3 = product(ah, bl), p4 = product(ah, bh);
+        setOutward(sp, Math.min(Math.min(p1, p2), Math.min(p3, p4)), Math.max(Math.max(p1, p2), Math.max(p3, p4)));
+    }
+
+    private void square(int sp) {
+        double lo = lower[sp], hi = upper[sp];
+        if (lo >= 0) {
+            setOutward(sp, lo * lo, hi * hi);
+        } else if (hi <= 0) {
+            setOutward(sp, hi * hi, lo * lo);
+        } else {
+            setOutward(sp, 0, Math.max(lo * lo, hi * hi));
+        }
+        lower[sp] = Math.max(lower[sp], 0);
+    }
+
+    private void divide(int sp) {
+        double al = lower[sp], ah = upper[sp], bl = lower[sp + 1], bh = upper[sp + 1];
+        if (isEmpty(al, ah) || isEmpty(bl, bh)) {
+            setEmpty(sp);
+            return;
+        }
+        if (bl <= 0 && bh >= 0) {
+            setEntire(sp);
+            return;
+        }
+        // Con el divisor lejos del cero los extremos están en las esquinas; infinito/infinito
+        // no aporta nada que no den las otras esquinas
+        double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < 2; i++) {
+            double n = i == 0 ? al : ah;
+            for (int j = 0; j < 2; j++) {
+                double q = n / (j == 0 ? bl : bh);
+                if (!Double.isNaN(q)) {
+                    min = Math.min(min, q);
+                    max = Math.max(max, q);
+                }
+            }
+        }
+        if (min > max) {
+            setEntire(sp);
+        } else {
+            setOutward(sp, min, max);
+        }
+    }
+
+    private void power(int sp) {
+        double al = lower[sp], ah = upper[sp], bl = lower[sp + 1], bh = upper[sp + 1];
+        if (isEmpty(al, ah) || isEmpty(bl, bh)) {
+            setEmpty(sp);
+            return;
+        }
+        if (bl == bh && bl == Math.rint(bl) && Math.abs(bl) < 0x1p53) {
+            integerPower(sp, al, ah, bl);
+        } else if (al >= 0) {
+            // Con base no negativa, a^b es monótona en cada argumento: los extremos están en las esquinas
+            double p1 = Math.pow(al, bl), p2 = Math.pow(al, bh), p3 = Math.pow(ah, bl), p4 = Math.pow(ah, bh);
+            setOutward(sp, Math.min(Math.min(p1, p2), Math.min(p3, p4)), Math.max(Math.max(p1, p2), Math.max(p3, p4)));
+            lower[sp] = Math.max(lower[sp], 0);
+        } else {
+            // Base negativa con exponente no entero: el resultado es NaN en algunos puntos
+            setEntire(sp);
+        }
+    }
+
+    private void integerPower(int sp, double al, double ah, double n) {
+        boolean even = Math.abs(n % 2) == 0;
+        if (n < 0 && al <= 0 && ah >= 0) {
+            setEntire(sp);
+        } else if (even && al < 0 && ah > 0) {
+            // Potencia par de un intervalo que contiene el cero: el mínimo es 0
+            setOutward(sp, 0, Math.max(Math.pow(al, n), Math.pow(ah, n)));
+            lower[sp] = 0;
+        } else {
+            double p1 = Math.pow(al, n), p2 = Math.pow(ah, n);
+            setOutward(sp, Math.min(p1, p2), Math.max(p1, p2));
+            if (even) {
+                lower[sp] = Math.max(lower[sp], 0);
+            }
+        }
+    }
+
+    /**
+     * sin(x + shift) sobre el intervalo; cos(x) = sin(x + pi/2). Si el intervalo contiene un
+     * máximo o un mínimo de la función la cota incluye 1 o -1. La búsqueda de extremos usa un
+     * margen para que el redondeo de pi no haga perder uno cercano al borde.
+     */
+    private void sine(int sp, double shift) {
+        double lo = lower[sp], hi = upper[sp];
+        if (isEmpty(lo, hi)) {
+            setEmpty(sp);
+            return;
+        }
+        if (!(hi - lo < TWO_PI)) {
+            lower[sp] = -1;
+            upper[sp] = 1;
+            return;
+        }
+        double a = shift == 0 ? Math.sin(lo) : Math.cos(lo);
+        double b = shift == 0 ? Math.sin(hi) : Math.cos(hi);
+        setOutward(sp, Math.min(a, b), Math.max(a, b));
+
+        double margin = 1e-9 * (1 + Math.abs(lo) + Math.abs(hi));
+        if (containsPeriodicPoint(lo + shift - margin, hi + shift + margin, HALF_PI, TWO_PI)) {
+            upper[sp] = 1;
+        }
+        if (containsPeriodicPoint(lo + shift - margin, hi + shift + margin, -HALF_PI, TWO_PI)) {
+            lower[sp] = -1;
+        }
+        lower[sp] = Math.max(lower[sp], -1);
+        upper[sp] = Math.min(upper[sp], 1);
+    }
+
+    /**
+     * tan es creciente entre polos consecutivos; si el intervalo contiene un polo no se acota.
+     */
+    private void tangent(int sp) {
+        double lo = lower[sp], hi = upper[sp];
+        if (isEmpty(lo, hi)) {
+            setEmpty(sp);
+            return;
+        }
+        double margin = 1e-9 * (1 + Math.abs(lo) + Math.abs(hi));
+        if (!(hi - lo < Math.PI) || containsPeriodicPoint(lo - margin, hi + margin, HALF_PI, Math.PI)) {
+            setEntire(sp);
+            return;
+        }
+        setOutward(sp, Math.tan(lo), Math.tan(hi));
+    }
+
+    /**
+     * Indica si algún punto de la forma offset + k*period está en [lo, hi].
+     */
+    private static boolean containsPeriodicPoint(double lo, double hi, double offset, double period) {
+        double k = Math.ceil((lo - offset) / period);
+        return offset + k * period <= hi;
+    }
+
+    /**
+     * Producto de extremos en el que 0 * infinito vale 0 (el cero es un extremo alcanzado).
+     */
+    private static double product(double a, double b) {
+        return a == 0 || b == 0 ? 0 : a * b;
+    }
+
+    private void call(int sp, FunctionRegistry.Definition function) {
+        if (isEmpty(lower[sp], upper[sp])) {
+            return;
+        }
+        if (!function.isIncreasing()) {
+            setEntire(sp);
+            return;
+        }
+        setRegistered(sp, function.apply(lower[sp]), function.apply(upper[sp]));
+    }
+
+    private void call2(int sp, FunctionRegistry.Definition function) {
+        if (isEmpty(lower[sp], upper[sp]) || isEmpty(lower[sp + 1], upper[sp + 1])) {
+            setEmpty(sp);
+            return;
+        }
+        if (!function.isIncreasing()) {
+            setEntire(sp);
+            return;
+        }
+        setRegistered(sp, function.apply(lower[sp], lower[sp + 1]), function.apply(upper[sp], upper[sp + 1]));
+    }
+
+    /**
+     * Fija el resultado de una función registrada no decreciente; si no está definida en algún
+     * extremo no se puede acotar.
+     */
+    private void setRegistered(int sp, double lo, double hi) {
+        if (isEmpty(lo, hi)) {
+            setEntire(sp);
+        } else {
+            lower[sp] = lo - REGISTERED_ULPS * Math.ulp(lo);
+            upper[sp] = hi + REGISTERED_ULPS * Math.ulp(hi);
+        }
+    }
+
+    private void setOutward(int sp, double lo, double hi) {
+        lower[sp] = Math.nextDown(lo);
+        upper[sp] = Math.nextUp(hi);
+    }
+
+    private void setEntire(int sp) {
+        lower[sp] = Double.NEGATIVE_INFINITY;
+        upper[sp] = Double.POSITIVE_INFINITY;
+    }
+
+    private void setEmpty(int sp) {
+        lower[sp] = Double.NaN;
+        upper[sp] = Double.NaN;
+    }
+
+    private static boolean isEmpty(double lo, double hi) {
+        return Double.isNaN(lo) || Double.isNaN(hi);
+    }
+}
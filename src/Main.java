@@ -57,8 +57,8 @@ public class Main {
         System.out.println("\nIngrese una función matemática en términos de x (o 'volver' para regresar al menú principal):");
         System.out.println("Ejemplos: x^3 - x - 2, cos(x), cos(x) - x, x^2 - 4, sin(x), exp(x) - 5");
         System.out.println("Operaciones soportadas: +, -, *, /, ^");
-        System.out.println("Funciones soportadas: sin, cos, tan, exp, log, sqrt");
-        System.out.println("Constantes soportadas: e, pi");
+        System.out.println("Funciones soportadas: " + String.join(", ", FunctionRegistry.getFunctionNames()));
+        System.out.println("Constantes soportadas: " + String.join(", ", FunctionRegistry.getConstantNames()));
 
         System.out.print("\nFunción: ");
         String customFunction = scanner.nextLine();
@@ -224,8 +224,8 @@ public class Main {
         System.out.println("Esta debe ser la función iterativa, es decir, la funcion encontrada a partir de la funcion original f(x)");
         System.out.println("Ejemplos: (x^2 + 2)/3, cos(x), (x + 5/x)/2, sqrt(10-x^2)");
         System.out.println("Operaciones soportadas: +, -, *, /, ^");
-        System.out.println("Funciones soportadas: sin, cos, tan, exp, log, sqrt");
-        System.out.println("Constantes soportadas: e, pi");
+        System.out.println("Funciones soportadas: " + String.join(", ", FunctionRegistry.getFunctionNames()));
+        System.out.println("Constantes soportadas: " + String.join(", ", FunctionRegistry.getConstantNames()));
 
         System.out.print("\nFunción g(x): ");
         String customFunction = scanner.nextLine();
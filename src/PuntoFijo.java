@@ -1,7 +1,6 @@
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 import java.util.function.DoubleUnaryOperator;
 
 /**
@@ -10,15 +9,32 @@ import java.util.function.DoubleUnaryOperator;
  */
 public class PuntoFijo {
 
-    // Caché para evaluaciones de función para evitar cálculos redundantes
-    private final Map<Double, Double> evaluationCache = new HashMap<>();
-    private final DoubleUnaryOperator function;
+    /**
+     * Cantidad máxima de evaluaciones guardadas por omisión. Una corrida más larga descarta las
+     * evaluaciones que no se volvieron a pedir en lugar de guardar cada x visitado.
+     */
+    public static final int DEFAULT_CACHE_CAPACITY = 4096;
+
+    // Cantidad de iteraciones para las que se reserva memoria de antemano; las corridas más
+    // largas hacen crecer la caché (hasta su capacidad) y el historial al duplicar su tamaño
+    private static final int PREALLOCATED_ITERATIONS = 4096;
+
+    // Cómo se evalúa la función: por omisión, una caché acotada y cuantizada propia para evitar
+    // cálculos redundantes
+    private final EvaluationCache evaluationCache;
+    // Contadores de la caché al empezar la última resolución, para informar solo los suyos
+    private long lookupsAtSolve;
+    private long missesAtSolve;
+    private long evictionsAtSolve;
     private final double initialGuess;
     private final int maxIterations;
     private final double tolerance;
 
-    // Para almacenar los datos de las iteraciones
-    private final List<IterationData> iterationHistory = new ArrayList<>();
+    // Para almacenar los datos de las iteraciones, en columnas reservadas de antemano para que
+    // el ciclo de iteración no reserve memoria
+    private double[] historyX;
+    private double[] historyGx;
+    private int historySize;
 
     /**
      * Clase para almacenar los datos de cada iteración
@@ -63,6 +79,46 @@ public class PuntoFijo {
      * @throws IllegalArgumentException si el número de iteraciones no es positivo o la tolerancia no es positiva
      */
     public PuntoFijo(DoubleUnaryOperator function, double initialGuess, int maxIterations, double tolerance) {
+        this(function, initialGuess, maxIterations, tolerance, DEFAULT_CACHE_CAPACITY);
+    }
+
+    /**
+     * Construye un FixedPointRootFinder con los parámetros especificados y una caché de
+     * evaluaciones de la capacidad indicada.
+     *
+     * @param function      La función g(x) cuyo punto fijo se debe encontrar
+     * @param initialGuess  El valor inicial de x
+     * @param maxIterations El número máximo de iteraciones
+     * @param tolerance     La tolerancia de error para la aproximación
+     * @param cacheCapacity La cantidad máxima de evaluaciones guardadas; al superarla se
+     *                      descartan las menos usadas (CLOCK)
+     * @throws IllegalArgumentException si el número de iteraciones, la tolerancia o la capacidad
+     *                                  no son positivos
+     */
+    public PuntoFijo(DoubleUnaryOperator function, double initialGuess, int maxIterations, double tolerance,
+                     int cacheCapacity) {
+        this(function, null, initialGuess, maxIterations, tolerance, cacheCapacity);
+    }
+
+    /**
+     * Construye un FixedPointRootFinder que evalúa la función con la estrategia indicada: sin
+     * caché, con una caché exacta o cuantizada, o con una caché compartida por otras búsquedas
+     * sobre la misma función (también en otros hilos).
+     *
+     * @param cache         La estrategia de evaluación de la función g(x) cuyo punto fijo se
+     *                      debe encontrar (ver {@link EvaluationCache} y
+     *                      {@link SymbolicFunction#sharedCache()})
+     * @param initialGuess  El valor inicial de x
+     * @param maxIterations El número máximo de iteraciones
+     * @param tolerance     La tolerancia de error para la aproximación
+     * @throws IllegalArgumentException si el número de iteraciones o la tolerancia no son positivos
+     */
+    public PuntoFijo(EvaluationCache cache, double initialGuess, int maxIterations, double tolerance) {
+        this(cache.getFunction(), cache, initialGuess, maxIterations, tolerance, DEFAULT_CACHE_CAPACITY);
+    }
+
+    private PuntoFijo(DoubleUnaryOperator function, EvaluationCache cache, double initialGuess,
+                      int maxIterations, double tolerance, int cacheCapacity) {
         if (maxIterations <= 0) {
             throw new IllegalArgumentException("El número de iteraciones debe ser positivo");
         }
@@ -71,10 +127,16 @@ public class PuntoFijo {
             throw new IllegalArgumentException("La tolerancia debe ser positiva");
         }
 
-        this.function = function;
         this.initialGuess = initialGuess;
         this.maxIterations = maxIterations;
         this.tolerance = tolerance;
+
+        int capacity = Math.min(maxIterations, PREALLOCATED_ITERATIONS);
+        // Redondear a una centésima de la tolerancia para mejorar los aciertos de caché
+        this.evaluationCache = cache != null ? cache
+                : new EvaluationCache.Quantized(function, tolerance * 0.01, cacheCapacity, capacity);
+        this.historyX = new double[capacity];
+        this.historyGx = new double[capacity];
     }
 
     /**
@@ -84,29 +146,23 @@ public class PuntoFijo {
      * @return El valor de la función en x
      */
     private double evaluateFunction(double x) {
-        // Redondear a una precisión razonable para mejorar los aciertos de caché
-        double roundedX = Math.round(x / (tolerance * 0.01)) * (tolerance * 0.01);
-
-        // Verificar si ya calculamos este valor
-        if (evaluationCache.containsKey(roundedX)) {
-            return evaluationCache.get(roundedX);
-        }
-
-        // Calcular el valor y almacenarlo en caché
-        double result = function.applyAsDouble(roundedX);
-        evaluationCache.put(roundedX, result);
-        return result;
+        return evaluationCache.evaluate(x);
     }
 
     /**
      * Encuentra un punto fijo de la función g(x) comenzando desde el valor inicial.
      * Un punto fijo es un valor x tal que x = g(x).
+     * Hasta 4096 iteraciones el ciclo no reserva memoria; cada llamada reemplaza el historial anterior.
      *
      * @return El punto fijo aproximado de la función
      */
     public double findFixedPoint() {
+        lookupsAtSolve = evaluationCache.getLookups();
+        missesAtSolve = evaluationCache.getMisses();
+        evictionsAtSolve = evaluationCache.getEvictions();
         double x = initialGuess;
         double nextX;
+        historySize = 0;
 
         for (int i = 1; i <= maxIterations; i++) {
             nextX = evaluateFunction(x);
@@ -114,8 +170,14 @@ public class PuntoFijo {
             // Calcular error como la diferencia entre x y g(x)
             double error = Math.abs(nextX - x);
 
-            // Registrar esta iteración
-            iterationHistory.add(new IterationData(i, x, nextX, error));
+            // Registrar esta iteración (el error se recalcula al leer el historial)
+            if (historySize == historyX.length) {
+                historyX = Arrays.copyOf(historyX, historySize * 2);
+                historyGx = Arrays.copyOf(historyGx, historySize * 2);
+            }
+            historyX[historySize] = x;
+            historyGx[historySize] = nextX;
+            historySize++;
 
             // Verificar convergencia
             if (error < tolerance) {
@@ -130,23 +192,74 @@ public class PuntoFijo {
     }
 
     /**
-     * Obtiene el historial de iteraciones.
+     * Obtiene el historial de iteraciones. La lista se construye en cada llamada a partir de las
+     * columnas registradas por findFixedPoint.
      *
      * @return Una lista con los datos de cada iteración
      */
     public List<IterationData> getIterationHistory() {
+        List<IterationData> iterationHistory = new ArrayList<>(historySize);
+        for (int i = 0; i < historySize; i++) {
+            iterationHistory.add(new IterationData(i + 1, historyX[i], historyGx[i],
+                    Math.abs(historyGx[i] - historyX[i])));
+        }
         return iterationHistory;
     }
 
+    /**
+     * Obtiene la cantidad de iteraciones realizadas por la última llamada a findFixedPoint.
+     */
+    public int getIterationCount() {
+        return historySize;
+    }
+
+    /**
+     * Obtiene la estrategia con la que se evalúa la función.
+     */
+    public EvaluationCache getEvaluationCache() {
+        return evaluationCache;
+    }
+
+    /**
+     * Obtiene las estadísticas de la caché durante la última llamada a findFixedPoint: cuántas
+     * evaluaciones pidió, cuántas encontró guardadas y cuántas calculó, junto con las
+     * evaluaciones guardadas y la memoria que ocupan al terminar. Con una caché compartida, las
+     * consultas de otras búsquedas simultáneas también se cuentan.
+     *
+     * @return Las estadísticas de la última resolución
+     */
+    public EvaluationCache.Statistics getSolveStatistics() {
+        EvaluationCache.Statistics now = evaluationCache.getStatistics();
+        long misses = now.getMisses() - missesAtSolve;
+        return new EvaluationCache.Statistics(now.getLookups() - lookupsAtSolve - misses, misses,
+                now.getEvictions() - evictionsAtSolve, now.getSize(), now.getCapacity(), now.getBytes());
+    }
+
+    /**
+     * Obtiene la cantidad de evaluaciones guardadas en la caché (la compartida, si se usa una).
+     */
+    public int getCacheSize() {
+        return evaluationCache.size();
+    }
+
+    /**
+     * Obtiene la cantidad de evaluaciones descartadas de la caché por falta de lugar (de la
+     * compartida, si se usa una).
+     */
+    public long getCacheEvictions() {
+        return evaluationCache.getEvictions();
+    }
+
     /**
      * Crea una función a partir de una expresión matemática proporcionada por el usuario.
      * Soporta operaciones aritméticas básicas y funciones matemáticas comunes.
      *
      * @param expression La expresión matemática en términos de x
-     * @return Un DoubleUnaryOperator que representa la función
+     * @return Una SymbolicFunction que representa la función; además de evaluarse punto a punto
+     *         puede evaluar lotes de puntos en una sola llamada y obtener su derivada exacta
      * @throws IllegalArgumentException si la expresión no puede ser analizada
      */
-    public static DoubleUnaryOperator parseFunction(String expression) {
+    public static SymbolicFunction parseFunction(String expression) {
         // Utilizar el mismo parser que BinarySearchRootFinder
         return Biseccion.parseFunction(expression);
     }
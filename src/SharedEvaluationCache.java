@@ -0,0 +1,224 @@
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Caché de evaluaciones de una función compartida por muchos métodos numéricos, posiblemente
+ * en hilos distintos. Al biseccionar la misma función sobre cientos de intervalos vecinos, o al
+ * repetir la misma resolución desde varios hilos, cada búsqueda reutiliza los valores que ya
+ * calcularon las demás (los extremos compartidos, los puntos medios repetidos) en lugar de
+ * empezar con una caché propia vacía.
+ * <p>
+ * La caché se divide en franjas, cada una un {@link DoubleMap} acotado con su propio candado;
+ * la franja de una clave se elige por los bits altos de su hash, de modo que hilos que
+ * consultan puntos distintos casi nunca compiten por el mismo candado. La función se evalúa
+ * fuera del candado: si dos hilos piden a la vez un punto ausente, ambos lo calculan y se
+ * guarda el mismo valor, lo que es más barato que hacer esperar a uno mientras el otro evalúa.
+ * <p>
+ * Se obtiene con {@link SymbolicFunction#sharedCache()}, que devuelve siempre la misma caché
+ * para la misma función (y parseFunction devuelve la misma función para la misma expresión),
+ * o se construye para una función cualquiera. Los métodos numéricos la reciben como su
+ * {@link EvaluationCache}. Las claves son exactas: cada búsqueda evalúa la función en los puntos
+ * que pide, sin redondearlos a una grilla.
+ */
+public final class SharedEvaluationCache implements EvaluationCache {
+
+    /**
+     * Cantidad máxima de evaluaciones guardadas por omisión, entre todas las franjas.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private final DoubleUnaryOperator function;
+    private final Stripe[] stripes;
+    private final int shift;
+    private final int capacity;
+    // Contadores de toda la caché, fuera de los candados de las franjas: leerlos no toma candados
+    // ni compite con las consultas de otros hilos
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Construye una caché compartida de la capacidad por omisión.
+     *
+     * @param function La función cuyas evaluaciones se guardan
+     */
+    public SharedEvaluationCache(DoubleUnaryOperator function) {
+        this(function, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Construye una caché compartida con la capacidad indicada, repartida en franjas (una
+     * potencia de dos, al menos cuatro por procesador).
+     *
+     * @param function La función cuyas evaluaciones se guardan
+     * @param capacity La cantidad máxima de evaluaciones guardadas; cada franja descarta las
+     *                 menos usadas (CLOCK) al llenarse
+     * @throws IllegalArgumentException si la capacidad no es positiva
+     */
+    public SharedEvaluationCache(DoubleUnaryOperator function, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("La capacidad de la caché debe ser positiva");
+        }
+        int count = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 4 - 1) << 1;
+        count = Math.max(1, Math.min(count, Integer.highestOneBit(capacity)));
+        this.function = function;
+        this.stripes = new Stripe[count];
+        this.shift = 32 - Integer.numberOfTrailingZeros(count);
+        int perStripe = Math.max(1, capacity / count);
+        this.capacity = perStripe * count;
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe(perStripe);
+        }
+    }
+
+    /**
+     * Devuelve el valor guardado de la función en x o, si no está, lo calcula y lo guarda.
+     *
+     * @param x El punto en el que evaluar la función
+     * @return El valor de la función en x
+     */
+    @Override
+    public double evaluate(double x) {
+        Stripe stripe = stripeOf(x);
+        synchronized (stripe) {
+            int entry = stripe.entries.find(x);
+            if (entry >= 0) {
+                hits.increment();
+                return stripe.entries.valueAt(entry);
+            }
+        }
+        misses.increment();
+        double value = function.applyAsDouble(x);
+        boolean evicted;
+        synchronized (stripe) {
+            long before = stripe.entries.evictions();
+            stripe.entries.put(x, value);
+            evicted = stripe.entries.evictions() != before;
+        }
+        if (evicted) {
+            evictions.increment();
+        }
+        return value;
+    }
+
+    @Override
+    public DoubleUnaryOperator getFunction() {
+        return function;
+    }
+
+    /**
+     * La cantidad de evaluaciones guardadas; recorre las franjas tomando sus candados.
+     */
+    @Override
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.entries.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * La cantidad de consultas desde el último {@link #clear()}. Se lee sin tomar candados.
+     */
+    @Override
+    public long getLookups() {
+        return hits.sum() + misses.sum();
+    }
+
+    /**
+     * La cantidad de fallos desde el último {@link #clear()}. Se lee sin tomar candados.
+     */
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * La cantidad de evaluaciones descartadas desde el último {@link #clear()}. Se lee sin tomar
+     * candados.
+     */
+    @Override
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * La memoria ocupada por las franjas; las recorre tomando sus candados.
+     */
+    @Override
+    public long getBytes() {
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                bytes += stripe.entries.bytes();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * La cantidad de franjas, cada una con su propio candado.
+     */
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    /**
+     * Descarta todas las evaluaciones guardadas y reinicia las estadísticas. Las consultas
+     * simultáneas con el vaciado pueden contarse antes o después de reiniciarlas.
+     */
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.entries.clear();
+            }
+        }
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+
+    /**
+     * Obtiene una instantánea de las estadísticas. Los contadores se leen sin candados; el
+     * tamaño y la memoria, en una única pasada por las franjas.
+     *
+     * @return Aciertos, fallos, descartes, evaluaciones guardadas y memoria
+     */
+    @Override
+    public Statistics getStatistics() {
+        int size = 0;
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.entries.size();
+                bytes += stripe.entries.bytes();
+            }
+        }
+        return new Statistics(hits.sum(), misses.sum(), evictions.sum(), size, capacity, bytes);
+    }
+
+    private Stripe stripeOf(double x) {
+        // Mezcla distinta de la de DoubleMap, para que la franja no determine la celda
+        long h = Double.doubleToLongBits(x) * 0xC2B2AE3D27D4EB4FL;
+        return stripes[(int) (h >>> 32) >>> shift & (stripes.length - 1)];
+    }
+
+    /**
+     * Una parte de la caché con su propio candado (el propio objeto).
+     */
+    private static final class Stripe {
+        final DoubleMap entries;
+
+        Stripe(int capacity) {
+            this.entries = new DoubleMap(Math.min(capacity, 64), capacity);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Una clase de utilidad para encontrar todas las raíces de una función en un intervalo amplio.
+ * Divide el intervalo recursivamente y acota la función en cada parte con aritmética de
+ * intervalos ({@link IntervalEvaluator}): las partes cuya cota excluye el cero se descartan con
+ * una sola evaluación. Cuando la cota de la derivada muestra que la función es monótona en una
+ * parte, esta tiene a lo sumo una raíz, que se refina con {@link Biseccion}. Si la función usa
+ * alguna función registrada sin derivada, se omite esa prueba y cada parte que puede contener
+ * raíces se divide hasta el ancho de la tolerancia.
+ * <p>
+ * Las raíces de multiplicidad par (donde la función toca el cero sin cambiar de signo) solo se
+ * informan si |f| es menor que la tolerancia en el punto medio de una parte del ancho de la
+ * tolerancia.
+ */
+public class Subdivision {
+
+    private final SymbolicFunction function;
+    private final double a;
+    private final double b;
+    private final double tolerance;
+
+    // Estadísticas de la última búsqueda
+    private int intervalEvaluations;
+    private int discardedIntervals;
+
+    /**
+     * Construye un buscador de raíces por subdivisión con los parámetros especificados.
+     *
+     * @param function  La función cuyas raíces se deben encontrar, creada por parseFunction
+     * @param a         El límite inferior del intervalo
+     * @param b         El límite superior del intervalo
+     * @param tolerance La tolerancia de error para las raíces
+     * @throws IllegalArgumentException si la tolerancia no es positiva o a no es menor que b
+     */
+    public Subdivision(SymbolicFunction function, double a, double b, double tolerance) {
+        if (tolerance <= 0) {
+            throw new IllegalArgumentException("La tolerancia debe ser positiva");
+        }
+
+        if (!(a < b)) {
+            throw new IllegalArgumentException("El límite inferior debe ser menor que el superior");
+        }
+
+        this.function = function;
+        this.a = a;
+        this.b = b;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Encuentra las raíces de la función dentro del intervalo [a, b].
+     *
+     * @return Las raíces aproximadas, en orden creciente
+     */
+    public List<Double> findRoots() {
+        IntervalEvaluator values = function.interval();
+        IntervalEvaluator slopes = slopes();
+        List<Double> roots = new ArrayList<>();
+        intervalEvaluations = 0;
+        discardedIntervals = 0;
+
+        // Pila de partes pendientes; se recorre de izquierda a derecha para que las raíces salgan ordenadas
+        double[] pendingLo = new double[64];
+        double[] pendingHi = new double[64];
+        int pending = 0;
+        pendingLo[pending] = a;
+        pendingHi[pending++] = b;
+
+        while (pending > 0) {
+            pending--;
+            double lo = pendingLo[pending];
+            double hi = pendingHi[pending];
+
+            intervalEvaluations++;
+            values.evaluate(lo, hi);
+            if (values.excludesZero()) {
+                discardedIntervals++;
+                continue;
+            }
+
+            if (slopes != null) {
+                intervalEvaluations++;
+                slopes.evaluate(lo, hi);
+                if (slopes.getLower() > 0 || slopes.getUpper() < 0) {
+                    // Monótona: a lo sumo una raíz, que existe si hay cambio de signo
+                    refineMonotonic(lo, hi, roots);
+                    continue;
+                }
+            }
+
+            double mid = lo + (hi - lo) / 2;
+            if (hi - lo <= tolerance || mid <= lo || mid >= hi) {
+                double fLo = function.applyAsDouble(lo);
+                double fHi = function.applyAsDouble(hi);
+                if (fLo * fHi <= 0 || Math.abs(function.applyAsDouble(mid)) < tolerance) {
+                    addRoot(roots, mid);
+                }
+                continue;
+            }
+
+            if (pending + 2 > pendingLo.length) {
+                pendingLo = Arrays.copyOf(pendingLo, pendingLo.length * 2);
+                pendingHi = Arrays.copyOf(pendingHi, pendingHi.length * 2);
+            }
+            pendingLo[pending] = mid;
+            pendingHi[pending++] = hi;
+            pendingLo[pending] = lo;
+            pendingHi[pending++] = mid;
+        }
+
+        return roots;
+    }
+
+    /**
+     * Acota la derivada de la función, o devuelve null si la función usa alguna función sin
+     * derivada conocida.
+     */
+    private IntervalEvaluator slopes() {
+        try {
+            return function.derivative().interval();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private void refineMonotonic(double lo, double hi, List<Double> roots) {
+        double fLo = function.applyAsDouble(lo);
+        double fHi = function.applyAsDouble(hi);
+        if (fLo == 0) {
+            addRoot(roots, lo);
+        } else if (fHi == 0) {
+            addRoot(roots, hi);
+        } else if (fLo * fHi < 0) {
+            addRoot(roots, new Biseccion(function, lo, hi, tolerance).findRoot());
+        } else {
+            discardedIntervals++;
+        }
+    }
+
+    /**
+     * Agrega una raíz salvo que esté a menos de la tolerancia de la anterior (la misma raíz
+     * encontrada desde dos partes vecinas).
+     */
+    private void addRoot(List<Double> roots, double root) {
+        if (roots.isEmpty() || Math.abs(root - roots.get(roots.size() - 1)) > tolerance) {
+            roots.add(root);
+        }
+    }
+
+    /**
+     * Obtiene la cantidad de evaluaciones sobre intervalos (de la función y, si se conoce, de su
+     * derivada) realizadas por la última llamada a findRoots.
+     */
+    public int getIntervalEvaluations() {
+        return intervalEvaluations;
+    }
+
+    /**
+     * Obtiene la cantidad de partes descartadas sin raíces por la última llamada a findRoots.
+     */
+    public int getDiscardedIntervals() {
+        return discardedIntervals;
+    }
+}
@@ -0,0 +1,43 @@
+/**
+ * Una función que conserva su expresión simbólica, como las que devuelve
+ * {@link Biseccion#parseFunction(String)}. Además de derivarse puede evaluarse con números
+ * duales y con aritmética de intervalos, y guarda una caché de evaluaciones compartida. Las
+ * funciones que solo se conocen por su implementación (una lambda cualquiera) no tienen estas
+ * operaciones, por lo que los métodos que las necesitan reciben una SymbolicFunction.
+ */
+public interface SymbolicFunction extends DifferentiableFunction {
+
+    /**
+     * Devuelve la derivada exacta de la función respecto de x, compilada.
+     *
+     * @return La derivada de la función, que también conserva su expresión
+     * @throws IllegalArgumentException si la expresión usa una función sin derivada conocida
+     */
+    @Override
+    SymbolicFunction derivative();
+
+    /**
+     * Devuelve un evaluador que calcula el valor y la derivada de la función en una sola pasada,
+     * sin construir la derivada simbólica.
+     *
+     * @return Un evaluador con números duales (no thread-safe)
+     * @throws IllegalArgumentException si la expresión usa una función sin derivada conocida
+     */
+    DualEvaluator dual();
+
+    /**
+     * Devuelve un evaluador que acota la función sobre intervalos con redondeo hacia afuera.
+     *
+     * @return Un evaluador de intervalos (no thread-safe)
+     */
+    IntervalEvaluator interval();
+
+    /**
+     * Devuelve la caché de evaluaciones compartida de la función, siempre la misma, para que
+     * varios métodos numéricos (en uno o varios hilos) reutilicen los valores ya calculados.
+     * Para otra función se construye un {@link SharedEvaluationCache} propio.
+     *
+     * @return La caché compartida de la función (thread-safe)
+     */
+    SharedEvaluationCache sharedCache();
+}